@@ -0,0 +1,268 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limiter for Champion requests whose limit adapts to the
+ * observed behaviour of the runner (additive increase, multiplicative
+ * decrease).
+ *
+ * <p>
+ * The limit grows by one after a full limit's worth of successful
+ * requests, provided the short-term latency average has stayed close to
+ * the long-term baseline. It is halved when the runner reports overload
+ * (HTTP 502 / 504 or a timeout), at most once per cool-down period so
+ * that a burst of failures from requests already in flight does not
+ * collapse the limit to the floor. The limit always stays within the
+ * configured floor and ceiling.
+ * </p>
+ *
+ * <p>
+ * Waiting is done on a {@link ReentrantLock} condition rather than
+ * {@code synchronized}/{@code wait()}, which would pin the carrier
+ * threads of the virtual threads that call {@link #acquire()}.
+ * </p>
+ */
+final class AdaptiveConcurrencyLimiter {
+
+    /** Weight of a new sample in the short-term latency average. */
+    private static final double SHORT_ALPHA = 0.3;
+
+    /** Weight of a new sample in the long-term latency baseline. */
+    private static final double LONG_ALPHA = 0.05;
+
+    /**
+     * Short-term latency may exceed the baseline by this factor before
+     * the limit stops growing.
+     */
+    private static final double LATENCY_TOLERANCE = 1.5;
+
+    /** Factor applied to the limit on overload. */
+    private static final double BACKOFF_RATIO = 0.5;
+
+    /** Minimum time between two consecutive decreases. */
+    private static final long MIN_DECREASE_INTERVAL_MS = 1_000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+
+    private final String name;
+    private int minLimit;
+    private int maxLimit;
+    private int limit;
+    private int inFlight;
+    private int successesSinceChange;
+    private double shortLatencyMs;
+    private double longLatencyMs;
+    private long lastDecreaseMs;
+
+    /**
+     * Creates a limiter.
+     *
+     * @param minLimit     floor for the limit (at least 1)
+     * @param maxLimit     ceiling for the limit
+     * @param initialLimit starting limit, clamped to the floor/ceiling
+     */
+    AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, int initialLimit) {
+        this(null, minLimit, maxLimit, initialLimit);
+    }
+
+    /**
+     * Creates a limiter for one runner, named in its log messages.
+     *
+     * @param name         what the limit applies to, e.g. the runner URI;
+     *                     {@code null} for none
+     * @param minLimit     floor for the limit (at least 1)
+     * @param maxLimit     ceiling for the limit
+     * @param initialLimit starting limit, clamped to the floor/ceiling
+     */
+    AdaptiveConcurrencyLimiter(String name, int minLimit, int maxLimit, int initialLimit) {
+        this.name = name;
+        reconfigure(minLimit, maxLimit, initialLimit);
+    }
+
+    /**
+     * Replaces the floor, ceiling and current limit. Requests already in
+     * flight are unaffected.
+     *
+     * @param minLimit     floor for the limit (at least 1)
+     * @param maxLimit     ceiling for the limit
+     * @param initialLimit new current limit, clamped to the floor/ceiling
+     */
+    void reconfigure(int minLimit, int maxLimit, int initialLimit) {
+        lock.lock();
+        try {
+            this.minLimit = Math.max(1, minLimit);
+            this.maxLimit = Math.max(this.minLimit, maxLimit);
+            this.limit = clamp(initialLimit);
+            this.successesSinceChange = 0;
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the number of requests in flight is below the current
+     * limit, then reserves a slot.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= limit) {
+                slotFreed.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a slot reserved by {@link #acquire()}.
+     */
+    void release() {
+        lock.lock();
+        try {
+            inFlight = Math.max(0, inFlight - 1);
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a request that completed without signs of overload.
+     *
+     * @param latencyMs wall-clock time of the request in milliseconds
+     */
+    void onSuccess(long latencyMs) {
+        lock.lock();
+        try {
+            if (longLatencyMs == 0) {
+                shortLatencyMs = latencyMs;
+                longLatencyMs = latencyMs;
+            } else {
+                shortLatencyMs += SHORT_ALPHA * (latencyMs - shortLatencyMs);
+                longLatencyMs += LONG_ALPHA * (latencyMs - longLatencyMs);
+            }
+
+            if (++successesSinceChange < limit) {
+                return;
+            }
+            successesSinceChange = 0;
+            if (limit < maxLimit && shortLatencyMs <= longLatencyMs * LATENCY_TOLERANCE) {
+                limit++;
+                RunBenchmarkAssessment.logInfo(
+                        "Concurrency limit%s raised to %d (in flight: %d, latency: %.0fms, baseline: %.0fms)",
+                        of(), limit, inFlight, shortLatencyMs, longLatencyMs);
+                slotFreed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a request that failed because the runner is overloaded
+     * (gateway error or timeout) and backs the limit off.
+     *
+     * @param reason short description for the log, e.g. {@code "HTTP 504"}
+     */
+    void onOverload(String reason) {
+        lock.lock();
+        try {
+            successesSinceChange = 0;
+            long now = System.currentTimeMillis();
+            if (now - lastDecreaseMs < MIN_DECREASE_INTERVAL_MS) {
+                return;
+            }
+            lastDecreaseMs = now;
+            int reduced = clamp((int) (limit * BACKOFF_RATIO));
+            if (reduced != limit) {
+                limit = reduced;
+                RunBenchmarkAssessment.logSevere(
+                        "Concurrency limit%s lowered to %d after %s (in flight: %d)",
+                        of(), limit, reason, inFlight);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the current concurrency limit
+     */
+    int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} if a slot is free, i.e. {@link #acquire()}
+     *         would not block right now
+     */
+    boolean hasRoom() {
+        lock.lock();
+        try {
+            return inFlight < limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of requests currently holding a slot
+     */
+    int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the configured ceiling
+     */
+    int getMaxLimit() {
+        lock.lock();
+        try {
+            return maxLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String of() {
+        return name != null ? " of " + name : "";
+    }
+
+    private int clamp(int value) {
+        return Math.min(maxLimit, Math.max(minLimit, value));
+    }
+}
@@ -0,0 +1,470 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tuning settings of {@link RunBenchmarkAssessment}, bound from the
+ * {@code benchmark.*} application properties.
+ *
+ * <p>
+ * Spring fills the bean in through the {@code configure} methods and
+ * injects it into the assessment bean, which hands it on to every
+ * instance derived from it. An instance created with {@code new} holds
+ * the defaults, which match those of the properties. The limits shared
+ * by all runs in the JVM (concurrency, retry and hedge budgets, circuit
+ * breaker) are applied to them by the assessment bean when it is
+ * created.
+ * </p>
+ */
+@Component
+public class AssessmentSettings {
+
+    private int minConcurrency = 1;
+    private int maxConcurrency = 16;
+    private int initialConcurrency = 2;
+    private int queueCapacity = 100;
+
+    private double retryRatio = 0.1;
+    private int retryReserve = 10;
+
+    private int circuitFailures = 5;
+    private double circuitErrorRate = 0.5;
+    private int circuitWindow = 20;
+    private long circuitOpenMs = 30_000;
+    private int circuitProbes = 1;
+    private long circuitMaxHoldMs = 600_000;
+
+    private double runnerRate = 0;
+    private int runnerBurst = 1;
+
+    private RunnerPool.Policy runnerBalancing = RunnerPool.Policy.LEAST_OUTSTANDING;
+    private int runnerFailureThreshold = 3;
+    private long runnerCooldownMs = 30_000;
+
+    private boolean adaptiveTimeouts;
+    private double timeoutFactor = 3;
+    private long minTimeoutMs = 10_000;
+
+    private boolean hedgeEnabled = false;
+    private double hedgePercentile = 95;
+    private double hedgeRatio = 0.05;
+    private int hedgeReserve = 5;
+
+    private Duration resultTtl = Duration.ZERO;
+
+    private int canarySize;
+    private double abortErrorRate = 0.5;
+    private int errorWindow;
+
+    private Duration shutdownGrace = Duration.ofSeconds(20);
+
+    private RunBenchmarkAssessment.ExecutionMode executionMode =
+            RunBenchmarkAssessment.ExecutionMode.VIRTUAL_THREADS;
+
+    private FairQueue.Policy fairnessPolicy = FairQueue.Policy.ROUND_ROBIN;
+    private Map<String, Integer> setWeights = Map.of();
+
+    /**
+     * Binds the concurrency bounds and the pipeline capacity.
+     *
+     * @param min      floor for the adaptive limit, bound to
+     *                 {@code benchmark.concurrency.min}
+     * @param max      ceiling for the adaptive limit, bound to
+     *                 {@code benchmark.concurrency.max}
+     * @param initial  starting limit, bound to
+     *                 {@code benchmark.concurrency.initial}
+     * @param capacity GUIDs admitted to a run at once, bound to
+     *                 {@code benchmark.queue.capacity}
+     */
+    @Autowired
+    void configureConcurrency(
+            @Value("${benchmark.concurrency.min:1}") int min,
+            @Value("${benchmark.concurrency.max:16}") int max,
+            @Value("${benchmark.concurrency.initial:2}") int initial,
+            @Value("${benchmark.queue.capacity:100}") int capacity) {
+        minConcurrency = min;
+        maxConcurrency = max;
+        initialConcurrency = initial;
+        queueCapacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Binds the retry budget.
+     *
+     * @param ratio   retries allowed per first attempt, bound to
+     *                {@code benchmark.retry.budget.ratio}
+     * @param reserve retries available before the ratio applies, bound
+     *                to {@code benchmark.retry.budget.reserve}
+     */
+    @Autowired
+    void configureRetries(
+            @Value("${benchmark.retry.budget.ratio:0.1}") double ratio,
+            @Value("${benchmark.retry.budget.reserve:10}") int reserve) {
+        retryRatio = ratio;
+        retryReserve = reserve;
+    }
+
+    /**
+     * Binds the circuit breaker thresholds.
+     *
+     * @param failures    consecutive failures that open the circuit, bound
+     *                    to {@code benchmark.circuit.failures}
+     * @param errorRate   share of failed requests in the window that opens
+     *                    the circuit, bound to
+     *                    {@code benchmark.circuit.error.rate}
+     * @param window      requests the error rate is measured over, bound
+     *                    to {@code benchmark.circuit.window}
+     * @param openSeconds pause before probing the runner, bound to
+     *                    {@code benchmark.circuit.open.seconds}
+     * @param probes      probe requests sent at once while half-open,
+     *                    bound to {@code benchmark.circuit.probes}
+     * @param holdSeconds longest time a GUID is held back while the
+     *                    circuit is not closed before its attempts count
+     *                    again, bound to
+     *                    {@code benchmark.circuit.max-hold.seconds}
+     */
+    @Autowired
+    void configureCircuitBreaker(
+            @Value("${benchmark.circuit.failures:5}") int failures,
+            @Value("${benchmark.circuit.error.rate:0.5}") double errorRate,
+            @Value("${benchmark.circuit.window:20}") int window,
+            @Value("${benchmark.circuit.open.seconds:30}") int openSeconds,
+            @Value("${benchmark.circuit.probes:1}") int probes,
+            @Value("${benchmark.circuit.max-hold.seconds:600}") int holdSeconds) {
+        circuitFailures = failures;
+        circuitErrorRate = errorRate;
+        circuitWindow = window;
+        circuitOpenMs = TimeUnit.SECONDS.toMillis(openSeconds);
+        circuitProbes = probes;
+        circuitMaxHoldMs = TimeUnit.SECONDS.toMillis(Math.max(0, holdSeconds));
+    }
+
+    /**
+     * Binds the per-runner request rate, or sets it from the
+     * {@code --rate-limit} / {@code --burst} command-line options.
+     *
+     * @param rate  requests per second sent to each runner URI, zero for
+     *              no limit, bound to {@code benchmark.runner.rate}
+     * @param burst requests that may be sent at once after an idle
+     *              period, bound to {@code benchmark.runner.burst}
+     */
+    @Autowired
+    void configureRateLimit(
+            @Value("${benchmark.runner.rate:0}") double rate,
+            @Value("${benchmark.runner.burst:1}") int burst) {
+        runnerRate = rate;
+        runnerBurst = Math.max(1, burst);
+    }
+
+    /**
+     * Binds the runner balancing and health settings.
+     *
+     * @param balancing       {@code least-outstanding} or
+     *                        {@code latency-weighted}, bound to
+     *                        {@code benchmark.runner.balancing}
+     * @param failures        consecutive failures that take a runner out
+     *                        of rotation, bound to
+     *                        {@code benchmark.runner.unhealthy.failures}
+     * @param cooldownSeconds time before such a runner is tried again,
+     *                        bound to
+     *                        {@code benchmark.runner.unhealthy.seconds}
+     * @throws IllegalArgumentException if the policy is not recognised
+     */
+    @Autowired
+    void configureRunnerBalancing(
+            @Value("${benchmark.runner.balancing:least-outstanding}") String balancing,
+            @Value("${benchmark.runner.unhealthy.failures:3}") int failures,
+            @Value("${benchmark.runner.unhealthy.seconds:30}") int cooldownSeconds) {
+        runnerBalancing = RunnerPool.Policy.parse(balancing);
+        runnerFailureThreshold = failures;
+        runnerCooldownMs = TimeUnit.SECONDS.toMillis(cooldownSeconds);
+    }
+
+    /**
+     * Binds the adaptive timeout settings. The upper bound is
+     * {@code benchmark.request.timeout.seconds}.
+     *
+     * @param adaptive   whether attempt timeouts follow recent response
+     *                   times, bound to
+     *                   {@code benchmark.request.timeout.adaptive}
+     * @param factor     multiple of the p99 response time a first
+     *                   attempt may take, bound to
+     *                   {@code benchmark.request.timeout.factor}
+     * @param minSeconds lower bound for adaptive timeouts, bound to
+     *                   {@code benchmark.request.timeout.min.seconds}
+     */
+    @Autowired
+    void configureTimeouts(
+            @Value("${benchmark.request.timeout.adaptive:false}") boolean adaptive,
+            @Value("${benchmark.request.timeout.factor:3}") double factor,
+            @Value("${benchmark.request.timeout.min.seconds:10}") int minSeconds) {
+        adaptiveTimeouts = adaptive;
+        timeoutFactor = factor;
+        minTimeoutMs = TimeUnit.SECONDS.toMillis(minSeconds);
+    }
+
+    /**
+     * Binds the request hedging settings.
+     *
+     * @param enabled    whether slow requests are hedged, bound to
+     *                   {@code benchmark.hedge.enabled}
+     * @param percentile percentile of recent response times after which
+     *                   a request is hedged, bound to
+     *                   {@code benchmark.hedge.percentile}
+     * @param ratio      hedges allowed per first attempt, bound to
+     *                   {@code benchmark.hedge.budget.ratio}
+     * @param reserve    hedges available before the ratio applies, bound
+     *                   to {@code benchmark.hedge.budget.reserve}
+     */
+    @Autowired
+    void configureHedging(
+            @Value("${benchmark.hedge.enabled:false}") boolean enabled,
+            @Value("${benchmark.hedge.percentile:95}") double percentile,
+            @Value("${benchmark.hedge.budget.ratio:0.05}") double ratio,
+            @Value("${benchmark.hedge.budget.reserve:5}") int reserve) {
+        hedgeEnabled = enabled;
+        hedgePercentile = percentile;
+        hedgeRatio = ratio;
+        hedgeReserve = reserve;
+    }
+
+    /**
+     * Binds the result freshness policy, or sets it from the
+     * {@code --ttl-days} command-line option.
+     *
+     * @param days age in days below which a result saved with the same
+     *             algorithm is not re-assessed, zero to always
+     *             re-assess, bound to {@code benchmark.results.ttl.days}
+     */
+    @Autowired
+    void configureResultTtl(@Value("${benchmark.results.ttl.days:0}") double days) {
+        resultTtl = Duration.ofSeconds((long) (Math.max(0, days) * 86_400));
+    }
+
+    /**
+     * Binds the canary and error-rate abort settings.
+     *
+     * @param size      GUIDs of each set assessed before the rest is
+     *                  dispatched, zero for no canary, bound to
+     *                  {@code benchmark.canary.size}
+     * @param errorRate share of failed GUIDs that aborts a set, bound to
+     *                  {@code benchmark.canary.error.rate}
+     * @param window    recent GUIDs the error rate is checked over after
+     *                  the canary, zero for none, bound to
+     *                  {@code benchmark.canary.window}
+     */
+    @Autowired
+    void configureCanary(
+            @Value("${benchmark.canary.size:0}") int size,
+            @Value("${benchmark.canary.error.rate:0.5}") double errorRate,
+            @Value("${benchmark.canary.window:0}") int window) {
+        canarySize = Math.max(0, size);
+        abortErrorRate = errorRate;
+        errorWindow = Math.max(0, window);
+    }
+
+    /**
+     * Binds the shutdown grace period.
+     *
+     * @param graceSeconds time the GUIDs in flight are given to finish
+     *                     on shutdown, bound to
+     *                     {@code benchmark.shutdown.grace.seconds}
+     */
+    @Autowired
+    void configureShutdown(@Value("${benchmark.shutdown.grace.seconds:20}") int graceSeconds) {
+        shutdownGrace = Duration.ofSeconds(Math.max(0, graceSeconds));
+    }
+
+    /**
+     * Binds the request execution mode.
+     *
+     * @param mode {@code virtual-threads} or {@code async}, bound to
+     *             {@code benchmark.execution.mode}
+     * @throws IllegalArgumentException if the mode is not recognised
+     */
+    @Autowired
+    void configureExecution(
+            @Value("${benchmark.execution.mode:virtual-threads}") String mode) {
+        executionMode = RunBenchmarkAssessment.ExecutionMode.parse(mode);
+    }
+
+    /**
+     * Binds the set fairness policy.
+     *
+     * @param policy  {@code round-robin} or {@code smallest-first}, bound
+     *                to {@code benchmark.sets.fairness}
+     * @param weights comma-separated {@code set=weight} pairs, e.g.
+     *                {@code en=4,de=2}, bound to
+     *                {@code benchmark.sets.weights}
+     * @throws IllegalArgumentException if either value cannot be parsed
+     */
+    @Autowired
+    void configureFairness(
+            @Value("${benchmark.sets.fairness:round-robin}") String policy,
+            @Value("${benchmark.sets.weights:}") String weights) {
+        Map<String, Integer> parsed = new HashMap<>();
+        for (String pair : weights.split(",")) {
+            if (pair.isBlank()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Invalid set weight: " + pair.trim());
+            }
+            parsed.put(pair.substring(0, eq).trim(), Integer.parseInt(pair.substring(eq + 1).trim()));
+        }
+        fairnessPolicy = FairQueue.Policy.parse(policy);
+        setWeights = Map.copyOf(parsed);
+    }
+
+    int minConcurrency() {
+        return minConcurrency;
+    }
+
+    int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    int initialConcurrency() {
+        return initialConcurrency;
+    }
+
+    int queueCapacity() {
+        return queueCapacity;
+    }
+
+    double retryRatio() {
+        return retryRatio;
+    }
+
+    int retryReserve() {
+        return retryReserve;
+    }
+
+    int circuitFailures() {
+        return circuitFailures;
+    }
+
+    double circuitErrorRate() {
+        return circuitErrorRate;
+    }
+
+    int circuitWindow() {
+        return circuitWindow;
+    }
+
+    long circuitOpenMs() {
+        return circuitOpenMs;
+    }
+
+    int circuitProbes() {
+        return circuitProbes;
+    }
+
+    long circuitMaxHoldMs() {
+        return circuitMaxHoldMs;
+    }
+
+    double runnerRate() {
+        return runnerRate;
+    }
+
+    int runnerBurst() {
+        return runnerBurst;
+    }
+
+    RunnerPool.Policy runnerBalancing() {
+        return runnerBalancing;
+    }
+
+    int runnerFailureThreshold() {
+        return runnerFailureThreshold;
+    }
+
+    long runnerCooldownMs() {
+        return runnerCooldownMs;
+    }
+
+    boolean adaptiveTimeouts() {
+        return adaptiveTimeouts;
+    }
+
+    double timeoutFactor() {
+        return timeoutFactor;
+    }
+
+    long minTimeoutMs() {
+        return minTimeoutMs;
+    }
+
+    boolean hedgeEnabled() {
+        return hedgeEnabled;
+    }
+
+    double hedgePercentile() {
+        return hedgePercentile;
+    }
+
+    double hedgeRatio() {
+        return hedgeRatio;
+    }
+
+    int hedgeReserve() {
+        return hedgeReserve;
+    }
+
+    Duration resultTtl() {
+        return resultTtl;
+    }
+
+    int canarySize() {
+        return canarySize;
+    }
+
+    double abortErrorRate() {
+        return abortErrorRate;
+    }
+
+    int errorWindow() {
+        return errorWindow;
+    }
+
+    Duration shutdownGrace() {
+        return shutdownGrace;
+    }
+
+    RunBenchmarkAssessment.ExecutionMode executionMode() {
+        return executionMode;
+    }
+
+    FairQueue.Policy fairnessPolicy() {
+        return fairnessPolicy;
+    }
+
+    Map<String, Integer> setWeights() {
+        return setWeights;
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker for the FAIR Champion runner.
+ *
+ * <p>
+ * While {@link State#CLOSED closed}, every request may go ahead and its
+ * outcome is recorded. The circuit opens after a number of consecutive
+ * failures, or when the share of failures among the most recent
+ * requests reaches a threshold. While {@link State#OPEN open},
+ * {@link #acquirePermission()} blocks, pausing dispatch. After the open
+ * period the circuit turns {@link State#HALF_OPEN half-open} and lets a
+ * small number of probe requests through: a success closes it again, a
+ * failure re-opens it for another period.
+ * </p>
+ *
+ * <p>
+ * Waiting is done on a {@link ReentrantLock} condition so that virtual
+ * threads blocked here do not pin their carriers.
+ * </p>
+ */
+final class CircuitBreaker {
+
+    /** State of the circuit. */
+    enum State {
+        /** Requests flow normally. */
+        CLOSED,
+        /** Requests are held back. */
+        OPEN,
+        /** Probe requests test whether the runner has recovered. */
+        HALF_OPEN
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+
+    private int failureThreshold;
+    private double errorRateThreshold;
+    private boolean[] window;
+    private long openNanos;
+    private int probes;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int windowNext;
+    private int windowCount;
+    private int windowFailures;
+    private long openedAt;
+    private long openUntil;
+    private int probesInFlight;
+
+    /**
+     * Creates a closed circuit breaker.
+     *
+     * @param failureThreshold   consecutive failures that open the circuit
+     * @param errorRateThreshold share of failures in the window (0–1) that
+     *                           opens the circuit
+     * @param windowSize         number of recent requests the error rate
+     *                           is taken over; the rate only applies once
+     *                           the window is full
+     * @param openMillis         time the circuit stays open before probing
+     * @param probes             probe requests allowed at once while
+     *                           half-open
+     */
+    CircuitBreaker(int failureThreshold, double errorRateThreshold, int windowSize,
+            long openMillis, int probes) {
+        reconfigure(failureThreshold, errorRateThreshold, windowSize, openMillis, probes);
+    }
+
+    /**
+     * Replaces the thresholds and closes the circuit.
+     *
+     * @param failureThreshold   consecutive failures that open the circuit
+     * @param errorRateThreshold share of failures in the window that opens
+     *                           the circuit
+     * @param windowSize         number of recent requests in the window
+     * @param openMillis         time the circuit stays open before probing
+     * @param probes             probe requests allowed at once while
+     *                           half-open
+     */
+    void reconfigure(int failureThreshold, double errorRateThreshold, int windowSize,
+            long openMillis, int probes) {
+        lock.lock();
+        try {
+            this.failureThreshold = Math.max(1, failureThreshold);
+            this.errorRateThreshold = errorRateThreshold;
+            this.window = new boolean[Math.max(1, windowSize)];
+            this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, openMillis));
+            this.probes = Math.max(1, probes);
+            this.state = State.CLOSED;
+            this.consecutiveFailures = 0;
+            resetWindow();
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks while the circuit is open, or while it is half-open and all
+     * probe slots are taken.
+     *
+     * @return {@code true} if the caller was admitted as a probe; the
+     *         value must be passed back to {@link #onSuccess(boolean)},
+     *         {@link #onFailure(boolean, String)} or
+     *         {@link #onCancelled(boolean)}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean acquirePermission() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                if (state == State.CLOSED) {
+                    return false;
+                }
+                if (state == State.OPEN) {
+                    long remaining = openUntil - System.nanoTime();
+                    if (remaining > 0) {
+                        stateChanged.awaitNanos(remaining);
+                        continue;
+                    }
+                    state = State.HALF_OPEN;
+                    probesInFlight = 0;
+                    RunBenchmarkAssessment.logInfo("Circuit half-open: probing the runner");
+                }
+                if (probesInFlight < probes) {
+                    probesInFlight++;
+                    return true;
+                }
+                stateChanged.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a request the runner answered normally. Closes a half-open
+     * circuit.
+     *
+     * @param probe value returned by {@link #acquirePermission()}
+     */
+    void onSuccess(boolean probe) {
+        lock.lock();
+        try {
+            releaseProbe(probe);
+            consecutiveFailures = 0;
+            if (state == State.HALF_OPEN) {
+                state = State.CLOSED;
+                resetWindow();
+                RunBenchmarkAssessment.logInfo("Circuit closed: runner recovered after %ds open",
+                        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - openedAt));
+                stateChanged.signalAll();
+            } else if (state == State.CLOSED) {
+                record(false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a request that failed because of the runner (gateway
+     * error, timeout, connection failure). May open the circuit.
+     *
+     * @param probe  value returned by {@link #acquirePermission()}
+     * @param reason short description for the log, e.g. {@code "HTTP 504"}
+     */
+    void onFailure(boolean probe, String reason) {
+        lock.lock();
+        try {
+            releaseProbe(probe);
+            if (state == State.HALF_OPEN) {
+                openUntil = System.nanoTime() + openNanos;
+                state = State.OPEN;
+                RunBenchmarkAssessment.logSevere(
+                        "Circuit re-opened: probe failed (%s); open for %ds so far",
+                        reason, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - openedAt));
+                stateChanged.signalAll();
+                return;
+            }
+            if (state == State.OPEN) {
+                return;
+            }
+
+            consecutiveFailures++;
+            record(true);
+            boolean tooMany = consecutiveFailures >= failureThreshold;
+            boolean rateTooHigh = windowCount == window.length
+                    && windowFailures >= errorRateThreshold * windowCount;
+            if (tooMany || rateTooHigh) {
+                openedAt = System.nanoTime();
+                openUntil = openedAt + openNanos;
+                state = State.OPEN;
+                RunBenchmarkAssessment.logSevere(
+                        "Circuit opened after %s (%d consecutive failure(s), %d of last %d failed); "
+                                + "pausing dispatch for %ds",
+                        reason, consecutiveFailures, windowFailures, windowCount,
+                        TimeUnit.NANOSECONDS.toSeconds(openNanos));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a request that ended without a verdict on the runner, e.g.
+     * because it was interrupted.
+     *
+     * @param probe value returned by {@link #acquirePermission()}
+     */
+    void onCancelled(boolean probe) {
+        lock.lock();
+        try {
+            releaseProbe(probe);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} if requests currently flow normally
+     */
+    boolean isClosed() {
+        return getState() == State.CLOSED;
+    }
+
+    /**
+     * @return the current state
+     */
+    State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseProbe(boolean probe) {
+        if (probe && probesInFlight > 0) {
+            probesInFlight--;
+            stateChanged.signalAll();
+        }
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowNext]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowNext] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowNext = (windowNext + 1) % window.length;
+    }
+
+    private void resetWindow() {
+        windowNext = 0;
+        windowCount = 0;
+        windowFailures = 0;
+        consecutiveFailures = 0;
+    }
+}
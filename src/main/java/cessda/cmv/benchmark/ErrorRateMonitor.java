@@ -0,0 +1,143 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+/**
+ * Watches the outcomes of one set's GUIDs and trips when too many of
+ * them fail, so that a broken configuration is noticed after a few
+ * GUIDs rather than after the whole set.
+ *
+ * <p>
+ * The first {@code canarySize} outcomes form the canary: once the share
+ * of failures among them reaches the threshold, or is bound to, the
+ * monitor trips. After that, the share of failures among the most
+ * recent {@code windowSize} outcomes is checked on every outcome once
+ * the window is full. A tripped monitor stays tripped.
+ * </p>
+ */
+final class ErrorRateMonitor {
+
+    private final int canarySize;
+    private final double threshold;
+    private final boolean[] window;
+
+    private int recorded;
+    private int canaryFailures;
+    private int windowNext;
+    private int windowCount;
+    private int windowFailures;
+    private boolean tripped;
+
+    /**
+     * Creates a monitor.
+     *
+     * @param canarySize outcomes in the canary; zero for no canary
+     * @param threshold  share of failures (0–1) that trips the monitor
+     * @param windowSize number of recent outcomes the rate is taken over
+     *                   after the canary; zero to stop checking after
+     *                   the canary
+     */
+    ErrorRateMonitor(int canarySize, double threshold, int windowSize) {
+        this.canarySize = Math.max(0, canarySize);
+        this.threshold = threshold;
+        this.window = new boolean[Math.max(0, windowSize)];
+    }
+
+    /**
+     * Records the outcome of a GUID.
+     *
+     * @param failed {@code true} if the GUID failed or its result is an
+     *               error response
+     * @return {@code true} if this outcome tripped the monitor;
+     *         {@code false} if it did not, or it was already tripped
+     */
+    synchronized boolean record(boolean failed) {
+        if (tripped) {
+            return false;
+        }
+        recorded++;
+        if (failed && recorded <= canarySize) {
+            canaryFailures++;
+        }
+        if (window.length > 0) {
+            if (windowCount == window.length) {
+                if (window[windowNext]) {
+                    windowFailures--;
+                }
+            } else {
+                windowCount++;
+            }
+            window[windowNext] = failed;
+            windowNext = (windowNext + 1) % window.length;
+            if (failed) {
+                windowFailures++;
+            }
+        }
+        tripped = failed && (canaryFails() || windowFails());
+        return tripped;
+    }
+
+    /**
+     * The canary fails as soon as enough of it has failed, without
+     * waiting for the rest of it.
+     */
+    private boolean canaryFails() {
+        return recorded <= canarySize && canaryFailures >= threshold * canarySize;
+    }
+
+    private boolean windowFails() {
+        return recorded > canarySize && window.length > 0 && windowCount == window.length
+                && windowFailures >= threshold * windowCount;
+    }
+
+    /**
+     * @return {@code true} once too many outcomes have failed
+     */
+    synchronized boolean isTripped() {
+        return tripped;
+    }
+
+    /**
+     * @return {@code true} if the monitor was tripped by the canary
+     *         rather than by the window
+     */
+    synchronized boolean isCanaryFailed() {
+        return tripped && recorded <= canarySize;
+    }
+
+    /**
+     * @return outcomes in the canary; zero if there is none
+     */
+    int canarySize() {
+        return canarySize;
+    }
+
+    /**
+     * @return failed outcomes among the canary so far
+     */
+    synchronized int canaryFailures() {
+        return canaryFailures;
+    }
+
+    /**
+     * @return share of failed outcomes in the window so far; zero if
+     *         nothing has been recorded in it
+     */
+    synchronized double windowErrorRate() {
+        return windowCount == 0 ? 0 : (double) windowFailures / windowCount;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blocking queue made of several lanes (one per GUID set) that decides
+ * which lane the next element is taken from according to a
+ * {@link Policy}.
+ *
+ * @param <T> element type
+ */
+final class FairQueue<T> {
+
+    /**
+     * How the next lane is chosen.
+     */
+    enum Policy {
+        /**
+         * Smooth weighted round-robin: over time each non-empty lane is
+         * served in proportion to its weight, without long runs of one
+         * lane.
+         */
+        ROUND_ROBIN,
+        /**
+         * Strict priority to the non-empty lane with the smallest size,
+         * so small sets finish first.
+         */
+        SMALLEST_FIRST;
+
+        /**
+         * Parses a policy name such as {@code "round-robin"} or
+         * {@code "smallest-first"} (case-insensitive, {@code -} or
+         * {@code _}).
+         *
+         * @param name policy name
+         * @return the policy
+         * @throws IllegalArgumentException if the name is not recognised
+         */
+        static Policy parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * One lane of the queue.
+     *
+     * @param <T> element type
+     */
+    static final class Lane<T> {
+        private final int weight;
+        private final long size;
+        private final ArrayDeque<T> items = new ArrayDeque<>();
+        private int currentWeight;
+
+        private Lane(int weight, long size) {
+            this.weight = weight;
+            this.size = size;
+        }
+    }
+
+    private final Policy policy;
+    private final List<Lane<T>> lanes = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * @param policy lane selection policy
+     */
+    FairQueue(Policy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Adds a lane.
+     *
+     * @param weight share of the lane under {@link Policy#ROUND_ROBIN}
+     *               (at least 1)
+     * @param size   ordering key under {@link Policy#SMALLEST_FIRST}
+     * @return the new lane
+     */
+    Lane<T> addLane(int weight, long size) {
+        Lane<T> lane = new Lane<>(Math.max(1, weight), size);
+        lock.lock();
+        try {
+            lanes.add(lane);
+        } finally {
+            lock.unlock();
+        }
+        return lane;
+    }
+
+    /**
+     * Removes a lane that is no longer used.
+     *
+     * @param lane the lane
+     * @return the elements still queued in the lane
+     */
+    List<T> removeLane(Lane<T> lane) {
+        lock.lock();
+        try {
+            lanes.remove(lane);
+            List<T> remaining = new ArrayList<>(lane.items);
+            lane.items.clear();
+            return remaining;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends an element to a lane.
+     *
+     * @param lane the lane
+     * @param item the element
+     */
+    void put(Lane<T> lane, T item) {
+        lock.lock();
+        try {
+            lane.items.addLast(item);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the next element, waiting until one is available.
+     *
+     * @return the element
+     * @throws InterruptedException if interrupted while waiting
+     */
+    T take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Lane<T> lane;
+            while ((lane = select()) == null) {
+                notEmpty.await();
+            }
+            return lane.items.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes and returns every queued element.
+     *
+     * @return the elements, lane by lane
+     */
+    List<T> drain() {
+        lock.lock();
+        try {
+            List<T> all = new ArrayList<>();
+            for (Lane<T> lane : lanes) {
+                all.addAll(lane.items);
+                lane.items.clear();
+            }
+            return all;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Lane<T> select() {
+        Lane<T> best = null;
+        if (policy == Policy.SMALLEST_FIRST) {
+            for (Lane<T> lane : lanes) {
+                if (!lane.items.isEmpty() && (best == null || lane.size < best.size)) {
+                    best = lane;
+                }
+            }
+            return best;
+        }
+
+        int total = 0;
+        for (Lane<T> lane : lanes) {
+            if (lane.items.isEmpty()) {
+                continue;
+            }
+            lane.currentWeight += lane.weight;
+            total += lane.weight;
+            if (best == null || lane.currentWeight > best.currentWeight) {
+                best = lane;
+            }
+        }
+        if (best != null) {
+            best.currentWeight -= total;
+        }
+        return best;
+    }
+}
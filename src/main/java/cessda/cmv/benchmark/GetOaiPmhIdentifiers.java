@@ -17,7 +17,10 @@
 
 package cessda.cmv.benchmark;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
@@ -28,34 +31,38 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 /**
  * Fetches identifier lists from an OAI-PMH endpoint and writes them as full
  * GetRecord URLs to {@code guids_<set>.txt} files.
  *
- * <p>Each output line is a complete, ready-to-use OAI-PMH GetRecord URL, e.g.:
+ * <p>Each output line starts with a complete, ready-to-use OAI-PMH GetRecord
+ * URL, followed by the record's header datestamp and, for records the
+ * repository reports as deleted, the word {@code deleted}, separated by tabs:
  * <pre>
- *   https://datacatalogue.cessda.eu/oai-pmh/v0/oai?verb=GetRecord&amp;metadataPrefix=oai_ddi25&amp;identifier=abc123
+ *   https://datacatalogue.cessda.eu/oai-pmh/v0/oai?verb=GetRecord&amp;metadataPrefix=oai_ddi25&amp;identifier=abc123&lt;TAB&gt;2024-05-01T12:00:00Z
  * </pre>
  *
  * <h2>Command-line options</h2>
@@ -70,6 +77,14 @@ import org.xml.sax.SAXException;
  *                                       (default: de,el,en,fi,fr,hr,nl,sl,sl-SI,sv)
  *   -F, --fetch-all-sets               Fetch identifiers for all sets (default behaviour)
  *   -s, --fetch-set <set>              Fetch identifiers for a single set only
+ *   -c, --max-connections <n>          Concurrent requests to the endpoint (default: 4)
+ *   -d, --request-delay-ms <ms>        Minimum time between request starts (default: 0)
+ *   -P, --single-pass                  Fetch all sets in one unfiltered pass, routing
+ *                                       records by setSpec
+ *   -i, --incremental                  Fetch only records changed since the previous
+ *                                       harvest and merge them into the existing files
+ *       --from <datestamp>             Fetch only records changed since this datestamp
+ *       --until <datestamp>            Fetch only records changed up to this datestamp
  *   -h, --help                         Show this help message
  * </pre>
  */
@@ -90,8 +105,24 @@ public class GetOaiPmhIdentifiers {
     public static final String[] DEFAULT_SETS =
             {"de", "el", "en", "fi", "fr", "hr", "nl", "sl", "sl-SI", "sv"};
 
+    /** Default cap on concurrent requests to the OAI-PMH endpoint. */
+    public static final int DEFAULT_MAX_CONNECTIONS = 4;
+
     private static final String RESOURCES_DIR = "src/main/resources";
 
+    /** Prefix of the {@code setSpec} of a language set, e.g. {@code language:de}. */
+    static final String SET_SPEC_PREFIX = "language:";
+
+    /** Value of the header {@code status} attribute for deleted records. */
+    static final String STATUS_DELETED = "deleted";
+
+    /** Length of an OAI-PMH datestamp of day granularity. */
+    private static final int DAY_LENGTH = "YYYY-MM-DD".length();
+
+    /** An OAI-PMH datestamp of day or seconds granularity. */
+    private static final Pattern DATESTAMP =
+            Pattern.compile("\\d{4}-\\d{2}-\\d{2}(T\\d{2}:\\d{2}:\\d{2}Z)?");
+
     // -----------------------------------------------------------------------
     // CLI option names
     // -----------------------------------------------------------------------
@@ -102,6 +133,12 @@ public class GetOaiPmhIdentifiers {
     private static final String SETS_ARG          = "sets";
     private static final String FETCH_ALL_ARG     = "fetch-all-sets";
     private static final String FETCH_SET_ARG     = "fetch-set";
+    private static final String CONNECTIONS_ARG   = "max-connections";
+    private static final String DELAY_ARG         = "request-delay-ms";
+    private static final String SINGLE_PASS_ARG   = "single-pass";
+    private static final String INCREMENTAL_ARG   = "incremental";
+    private static final String FROM_ARG          = "from";
+    private static final String UNTIL_ARG         = "until";
 
     // -----------------------------------------------------------------------
     // Instance state
@@ -112,9 +149,81 @@ public class GetOaiPmhIdentifiers {
     private final String verb;
     private final String metadataPrefix;
 
+    /**
+     * Requests to the endpoint in progress, including reading the page.
+     * Shared by every client of the same endpoint (see {@link #CONNECTIONS}).
+     */
+    private final ConnectionCap connections;
+
+    /**
+     * Spaces request starts by the configured delay; unlimited by default.
+     * Shared by every client of the same endpoint (see {@link #PACING}).
+     */
+    private final TokenBucket pacing;
+
+    /** Whether each set continues from its file's {@code # Harvested-Until:}. */
+    private boolean incremental;
+
+    /** Explicit {@code from} bound of a selective harvest, or {@code null}. */
+    private String from;
+
+    /** Explicit {@code until} bound of a selective harvest, or {@code null}. */
+    private String until;
+
     private static final Logger logger =
             Logger.getLogger(GetOaiPmhIdentifiers.class.getName());
 
+    /**
+     * Connection cap of each endpoint, keyed by base URL. Clients are
+     * created per harvest (the API creates one per call), so the cap is
+     * kept here for it to hold across all harvests of the endpoint.
+     */
+    private static final Map<String, ConnectionCap> CONNECTIONS = new ConcurrentHashMap<>();
+
+    /** Request pacing of each endpoint, keyed by base URL, like {@link #CONNECTIONS}. */
+    private static final Map<String, TokenBucket> PACING = new ConcurrentHashMap<>();
+
+    /**
+     * A semaphore whose number of permits can be changed while permits
+     * are held. Lowering the limit takes effect as held permits are
+     * released.
+     */
+    private static final class ConnectionCap extends Semaphore {
+
+        private int limit;
+
+        ConnectionCap(int limit) {
+            super(limit);
+            this.limit = limit;
+        }
+
+        synchronized int limit() {
+            return limit;
+        }
+
+        synchronized void resize(int newLimit) {
+            if (newLimit > limit) {
+                release(newLimit - limit);
+            } else if (newLimit < limit) {
+                reducePermits(limit - newLimit);
+            }
+            limit = newLimit;
+        }
+    }
+
+    /**
+     * One record header from a ListIdentifiers response.
+     *
+     * @param identifier the record identifier
+     * @param datestamp  the header datestamp as sent by the repository, or
+     *                   {@code null} if absent
+     * @param deleted    {@code true} if the header has {@code status="deleted"}
+     * @param setSpecs   the header's {@code setSpec} values, in document order
+     */
+    record RecordHeader(String identifier, String datestamp, boolean deleted,
+            List<String> setSpecs) {
+    }
+
     // -----------------------------------------------------------------------
     // Constructor
     // -----------------------------------------------------------------------
@@ -130,11 +239,87 @@ public class GetOaiPmhIdentifiers {
         this.oaiPmhBaseUrl  = oaiPmhBaseUrl;
         this.verb           = verb;
         this.metadataPrefix = metadataPrefix;
+        this.connections = CONNECTIONS.computeIfAbsent(oaiPmhBaseUrl,
+                url -> new ConnectionCap(DEFAULT_MAX_CONNECTIONS));
+        this.pacing = PACING.computeIfAbsent(oaiPmhBaseUrl, url -> new TokenBucket(0, 1));
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(30))
                 .build();
     }
 
+    /**
+     * Sets how many requests are sent to the endpoint at the same time,
+     * across all sets being harvested and all clients of the endpoint in
+     * this JVM. The cap stays in force for clients created later.
+     *
+     * @param maxConnections concurrent requests (at least 1)
+     */
+    public void setMaxConnections(int maxConnections) {
+        connections.resize(Math.max(1, maxConnections));
+    }
+
+    /**
+     * Sets the minimum time between the starts of two requests to the
+     * endpoint, across all sets being harvested and all clients of the
+     * endpoint in this JVM.
+     *
+     * @param delay minimum delay; zero for none
+     */
+    public void setRequestDelay(Duration delay) {
+        pacing.reconfigure(delay.isZero() || delay.isNegative() ? 0 : 1e9 / delay.toNanos(), 1);
+    }
+
+    /**
+     * Makes each harvest list only the records changed since the previous
+     * one, as recorded in the {@code # Harvested-Until:} header of the
+     * set's GUID file, and merge them into that file. A set whose file
+     * has no such header is harvested in full.
+     *
+     * @param incremental {@code true} for incremental harvests
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Sets an explicit {@code from} bound; the records changed since then
+     * are merged into the existing GUID files. Overrides the bound of an
+     * incremental harvest. A set without a GUID file is harvested in full.
+     *
+     * @param from an OAI-PMH datestamp ({@code YYYY-MM-DD} or
+     *             {@code YYYY-MM-DDThh:mm:ssZ}), or {@code null} for none
+     * @throws IllegalArgumentException if the value is not a datestamp
+     */
+    public void setFrom(String from) {
+        this.from = checkDatestamp(from);
+    }
+
+    /**
+     * Sets an explicit {@code until} bound, and the next incremental
+     * harvest continues from it. With a {@code from} bound the records
+     * changed in between are merged into the existing GUID files; without
+     * one every record up to the bound is listed and written as in a full
+     * harvest.
+     *
+     * @param until an OAI-PMH datestamp ({@code YYYY-MM-DD} or
+     *              {@code YYYY-MM-DDThh:mm:ssZ}), or {@code null} for none
+     * @throws IllegalArgumentException if the value is not a datestamp
+     */
+    public void setUntil(String until) {
+        this.until = checkDatestamp(until);
+    }
+
+    private static String checkDatestamp(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String datestamp = value.trim();
+        if (!DATESTAMP.matcher(datestamp).matches()) {
+            throw new IllegalArgumentException("Not an OAI-PMH datestamp: " + value);
+        }
+        return datestamp;
+    }
+
     // -----------------------------------------------------------------------
     // main
     // -----------------------------------------------------------------------
@@ -161,6 +346,22 @@ public class GetOaiPmhIdentifiers {
 
         GetOaiPmhIdentifiers client = new GetOaiPmhIdentifiers(baseUrl, verb, prefix);
 
+        try {
+            client.setMaxConnections(Integer.parseInt(
+                    cmd.getOptionValue(CONNECTIONS_ARG, String.valueOf(DEFAULT_MAX_CONNECTIONS))));
+            client.setRequestDelay(Duration.ofMillis(
+                    Long.parseLong(cmd.getOptionValue(DELAY_ARG, "0"))));
+            client.setIncremental(cmd.hasOption(INCREMENTAL_ARG));
+            client.setFrom(cmd.getOptionValue(FROM_ARG));
+            client.setUntil(cmd.getOptionValue(UNTIL_ARG));
+        } catch (NumberFormatException e) {
+            logSevere("Invalid number: %s", e.getMessage());
+            return;
+        } catch (IllegalArgumentException e) {
+            logSevere("Invalid option: %s", e.getMessage());
+            return;
+        }
+
         try {
             if (cmd.hasOption(FETCH_SET_ARG)) {
                 String lang = cmd.getOptionValue(FETCH_SET_ARG);
@@ -175,7 +376,11 @@ public class GetOaiPmhIdentifiers {
                 if (cmd.hasOption(SETS_ARG)) {
                     sets = cmd.getOptionValue(SETS_ARG).split(",");
                 }
-                client.fetchAllLanguageIdentifiers(sets);
+                if (cmd.hasOption(SINGLE_PASS_ARG)) {
+                    client.fetchAllSetsInOnePass(sets);
+                } else {
+                    client.fetchAllLanguageIdentifiers(sets);
+                }
             }
         } catch (IOException | InterruptedException e) {
             logSevere("Error: %s", e.getMessage());
@@ -192,56 +397,319 @@ public class GetOaiPmhIdentifiers {
     /**
      * Fetches identifier lists for every set in the supplied array.
      *
+     * <p>The sets are harvested at the same time, each following its own
+     * resumption chain, so the harvest takes about as long as the longest
+     * chain. Together they stay within the endpoint's connection cap and
+     * request delay (see {@link #setMaxConnections(int)} and
+     * {@link #setRequestDelay(Duration)}). A set that fails is logged and
+     * does not stop the others.
+     *
      * @param sets array of OAI-PMH set names (language codes)
-     * @throws IOException          if an I/O error occurs
-     * @throws InterruptedException if interrupted while waiting for HTTP responses
+     * @throws IOException          if a set could not be fetched; the other
+     *                              sets are finished first
+     * @throws InterruptedException if interrupted while waiting for HTTP
+     *                              responses; every set is interrupted
      */
     public void fetchAllLanguageIdentifiers(String[] sets)
             throws IOException, InterruptedException {
-        logInfo("Starting OAI-PMH identifier fetch for all sets...");
-        for (String set : sets) {
-            fetchIdentifiersForLanguage(set);
+        logInfo("Starting OAI-PMH identifier fetch for all sets (%d connection(s))...",
+                connections.limit());
+        IOException failure = null;
+        try (ExecutorService harvests = Executors.newVirtualThreadPerTaskExecutor()) {
+            Map<String, Future<?>> running = new LinkedHashMap<>();
+            for (String set : sets) {
+                running.put(set, harvests.submit(() -> {
+                    fetchIdentifiersForLanguage(set);
+                    return null;
+                }));
+            }
+            for (Map.Entry<String, Future<?>> entry : running.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (InterruptedException e) {
+                    harvests.shutdownNow();
+                    throw e;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException ioe) {
+                        logSevere("Error fetching set %s: %s", entry.getKey(), ioe.getMessage());
+                        if (failure == null) {
+                            failure = ioe;
+                        }
+                    } else if (e.getCause() instanceof InterruptedException ie) {
+                        harvests.shutdownNow();
+                        throw ie;
+                    } else {
+                        throw new IOException(e.getCause());
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
         }
         logInfo("Finished fetching identifiers for all sets.");
     }
 
     /**
      * Fetches all identifiers for one language set from the OAI-PMH endpoint,
-     * following resumption tokens until the full list has been retrieved, then
+     * following resumption tokens until the full list has been retrieved, and
      * writes them as full GetRecord URLs to {@code guids_<lang>.txt}.
      *
+     * <p>Lines are written page by page as they are parsed, through a
+     * {@link GuidFileWriter}, so memory use does not depend on the size of
+     * the set. The file only replaces the previous {@code guids_<lang>.txt}
+     * once the last page has been written; if the harvest fails, the pages
+     * fetched so far are left in {@code guids_<lang>.txt.part}.
+     *
+     * <p>In a selective harvest (see {@link #setIncremental(boolean)},
+     * {@link #setFrom(String)} and {@link #setUntil(String)}) with a
+     * {@code from} bound, only the headers changed within the range are
+     * listed, and they are merged into the existing file instead of
+     * replacing it. An {@code until} bound alone limits a full harvest.
+     *
      * @param set the set name, e.g. {@code "de"}
      * @throws IOException          if an I/O error occurs
      * @throws InterruptedException if interrupted
      */
     public void fetchIdentifiersForLanguage(String set)
             throws IOException, InterruptedException {
+        Path outputPath = resolveGuidsPath(set);
+        String since = from != null ? explicitFrom(Set.of(set))
+                : incremental ? continueFrom(outputPath) : null;
+        if (since != null) {
+            logInfo("Fetching changes for set %s (from=%s, until=%s)", set,
+                    since, until != null ? until : "-");
+            Map<String, RecordHeader> changes = new LinkedHashMap<>();
+            Harvest result = harvest(listUrl(set, since, until), "set=" + set,
+                    header -> changes.put(buildGetRecordUrl(header.identifier()), header),
+                    List.of());
+            merge(set, changes, Map.of(), nextFrom(result));
+            return;
+        }
+
         logInfo("Fetching identifiers for set: %s", set);
-        List<String> identifiers = new ArrayList<>();
-
-        /** ListIdentifiers with the specified set and metadata prefix.
-         * 
-         * @param set the set name, e.g. "de"
-         * @param verb the OAI-PMH verb to use (e.g. "ListIdentifiers")
-         * @param oaiPmhBaseUrl the base URL of the OAI-PMH endpoint
-         * 
-         * */
-        String url = oaiPmhBaseUrl
-                + "?verb=" + URLEncoder.encode(verb, StandardCharsets.UTF_8)
-                + "&metadataPrefix=" + DEFAULT_METADATA_PREFIX
-                + "&set=language:" + URLEncoder.encode(set, StandardCharsets.UTF_8);
+        try (GuidFileWriter out = GuidFileWriter.open(outputPath, set)) {
+            Harvest result = harvest(listUrl(set, null, until), "set=" + set,
+                    header -> append(out, header), List.of(out));
+            logInfo("Fetched %d identifier(s) for set: %s", out.count(), set);
+            out.harvestedUntil(nextFrom(result));
+            out.commit();
+            logInfo("✓ Written %d GetRecord URL(s) to %s (%d deleted)",
+                    out.count(), outputPath.toAbsolutePath(), out.deleted());
+        } catch (IOException | InterruptedException e) {
+            logSevere("Harvest of set %s failed; pages fetched so far are in %s",
+                    set, outputPath.toAbsolutePath() + GuidFileWriter.PART_SUFFIX);
+            throw e;
+        }
+    }
 
+    /**
+     * Fetches the identifiers of several language sets in one pass over
+     * the whole repository: {@code ListIdentifiers} is followed once,
+     * without a set filter, and each header is written to the
+     * {@code guids_<lang>.txt} file of every requested set named by its
+     * {@code <setSpec>} values. A record in several languages is thus
+     * transferred once instead of once per set. Headers without a
+     * matching {@code setSpec} are skipped.
+     *
+     * <p>All files are written page by page as in
+     * {@link #fetchIdentifiersForLanguage(String)} and only replace the
+     * previous files once the whole list has been read; if the harvest
+     * fails, every set keeps its {@code .part} file.
+     *
+     * <p>In an incremental harvest the pass starts from the earliest
+     * {@code # Harvested-Until:} of the sets, so that none of them misses
+     * a change; if any set has none, every set is harvested in full.
+     * Repositories often drop the setSpecs of deleted records, so a
+     * deleted header without a {@code language:} setSpec is applied to
+     * every requested set whose file lists the record.
+     *
+     * @param sets language codes of the sets to write
+     * @throws IOException          if an I/O error occurs
+     * @throws InterruptedException if interrupted
+     */
+    public void fetchAllSetsInOnePass(String[] sets)
+            throws IOException, InterruptedException {
+        Set<String> wanted = new LinkedHashSet<>(List.of(sets));
+        String since = from != null ? explicitFrom(wanted)
+                : incremental ? earliestContinueFrom(wanted) : null;
+        if (since != null) {
+            logInfo("Fetching changes for %d set(s) in one pass (from=%s, until=%s)...",
+                    wanted.size(), since, until != null ? until : "-");
+            Map<String, Map<String, RecordHeader>> changes = new LinkedHashMap<>();
+            for (String set : wanted) {
+                changes.put(set, new LinkedHashMap<>());
+            }
+            Map<String, RecordHeader> unrouted = new LinkedHashMap<>();
+            Harvest result = harvest(listUrl(null, since, until), "all sets", header -> {
+                if (header.deleted() && !hasLanguageSetSpec(header)) {
+                    unrouted.put(buildGetRecordUrl(header.identifier()), header);
+                }
+                for (String set : targetSets(header, wanted)) {
+                    changes.get(set).put(buildGetRecordUrl(header.identifier()), header);
+                }
+            }, List.of());
+            if (!unrouted.isEmpty()) {
+                logInfo("%d deleted record(s) have no language setSpec;"
+                        + " marking them deleted in every set that lists them", unrouted.size());
+            }
+            for (Map.Entry<String, Map<String, RecordHeader>> entry : changes.entrySet()) {
+                merge(entry.getKey(), entry.getValue(), unrouted, nextFrom(result));
+            }
+            return;
+        }
+
+        logInfo("Fetching identifiers for %d set(s) in one pass over the repository...",
+                wanted.size());
+        Map<String, GuidFileWriter> writers = new LinkedHashMap<>();
+        long[] unmatched = new long[1];
+        try {
+            for (String set : wanted) {
+                writers.put(set, GuidFileWriter.open(resolveGuidsPath(set), set));
+            }
+            Harvest result = harvest(listUrl(null, null, until), "all sets", header -> {
+                Set<String> targets = targetSets(header, wanted);
+                if (targets.isEmpty()) {
+                    unmatched[0]++;
+                }
+                for (String set : targets) {
+                    append(writers.get(set), header);
+                }
+            }, List.copyOf(writers.values()));
+
+            logInfo("Fetched %d identifier(s); %d in none of the requested sets",
+                    result.headers(), unmatched[0]);
+            for (Map.Entry<String, GuidFileWriter> entry : writers.entrySet()) {
+                GuidFileWriter out = entry.getValue();
+                out.harvestedUntil(nextFrom(result));
+                out.commit();
+                logInfo("✓ Written %d GetRecord URL(s) to %s (%d deleted)", out.count(),
+                        resolveGuidsPath(entry.getKey()).toAbsolutePath(), out.deleted());
+            }
+        } catch (IOException | InterruptedException e) {
+            logSevere("Single-pass harvest failed; pages fetched so far are in the"
+                    + " guids_<set>.txt%s files", GuidFileWriter.PART_SUFFIX);
+            throw e;
+        } finally {
+            for (GuidFileWriter out : writers.values()) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    logSevere("Could not close %s: %s", out.partFile(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the header has a {@code language:} setSpec
+     */
+    private static boolean hasLanguageSetSpec(RecordHeader header) {
+        for (String spec : header.setSpecs()) {
+            if (spec.startsWith(SET_SPEC_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the requested sets named by the header's {@code language:}
+     *         setSpecs, each once
+     */
+    private static Set<String> targetSets(RecordHeader header, Set<String> sets) {
+        Set<String> targets = new LinkedHashSet<>();
+        for (String spec : header.setSpecs()) {
+            if (spec.startsWith(SET_SPEC_PREFIX)) {
+                String set = spec.substring(SET_SPEC_PREFIX.length());
+                if (sets.contains(set)) {
+                    targets.add(set);
+                }
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Builds the URL of the first page of a list request.
+     *
+     * @param set   language set to list, or {@code null} for the whole
+     *              repository
+     * @param from  lower bound of the datestamps to list, or {@code null}
+     * @param until upper bound of the datestamps to list, or {@code null}
+     * @return the URL
+     */
+    private String listUrl(String set, String from, String until) {
+        StringBuilder url = new StringBuilder(oaiPmhBaseUrl)
+                .append("?verb=").append(URLEncoder.encode(verb, StandardCharsets.UTF_8))
+                .append("&metadataPrefix=").append(DEFAULT_METADATA_PREFIX);
+        if (set != null) {
+            url.append("&set=")
+                    .append(URLEncoder.encode(SET_SPEC_PREFIX + set, StandardCharsets.UTF_8));
+        }
+        if (from != null) {
+            url.append("&from=").append(URLEncoder.encode(from, StandardCharsets.UTF_8));
+        }
+        if (until != null) {
+            url.append("&until=").append(URLEncoder.encode(until, StandardCharsets.UTF_8));
+        }
+        return url.toString();
+    }
+
+    /**
+     * What a followed list request returned besides its headers.
+     *
+     * @param headers      number of headers read
+     * @param responseDate the repository's {@code <responseDate>} of the
+     *                     first page, or {@code null} if it sent none
+     */
+    private record Harvest(long headers, String responseDate) {
+    }
+
+    /**
+     * Follows a list request through its resumption tokens, passing every
+     * header to {@code onHeader} and flushing the given writers after each
+     * page.
+     *
+     * @param url      URL of the first page
+     * @param label    what is being harvested, for the log
+     * @param onHeader receives each header; may throw
+     *                 {@link UncheckedIOException}
+     * @param writers  writers to flush after each page
+     * @return the number of headers read and the first response date
+     * @throws IOException          if a page cannot be fetched or written
+     * @throws InterruptedException if interrupted
+     */
+    private Harvest harvest(String url, String label, Consumer<RecordHeader> onHeader,
+            List<GuidFileWriter> writers) throws IOException, InterruptedException {
+        long total = 0;
+        String responseDate = null;
         int page = 1;
         while (url != null) {
-            logInfo("  Fetching page %d (set=%s): %s", page, set, url);
-            String xml = fetchUrl(url);
-            List<String> pageIdentifiers = parseIdentifiers(xml);
-            identifiers.addAll(pageIdentifiers);
-            logInfo("  Page %d: retrieved %d identifier(s) (total so far: %d)",
-                    page, pageIdentifiers.size(), identifiers.size());
-
-            String resumptionToken = parseResumptionToken(xml);
-            if (resumptionToken != null && !resumptionToken.isBlank()) {
+            logInfo("  Fetching page %d (%s): %s", page, label, url);
+            OaiPmhPageParser.Page result;
+            try {
+                result = fetchPage(url, onHeader);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (GuidFileWriter out : writers) {
+                out.flush();
+            }
+            if (page == 1) {
+                responseDate = result.responseDate();
+            }
+            total += result.headers();
+            if (result.completeListSize() >= 0) {
+                logInfo("  Page %d (%s): retrieved %d identifier(s) (total so far: %d of %d)",
+                        page, label, result.headers(), total, result.completeListSize());
+            } else {
+                logInfo("  Page %d (%s): retrieved %d identifier(s) (total so far: %d)",
+                        page, label, result.headers(), total);
+            }
+
+            String resumptionToken = result.resumptionToken();
+            if (resumptionToken != null) {
                 url = oaiPmhBaseUrl
                         + "?verb=" + URLEncoder.encode(verb, StandardCharsets.UTF_8)
                         + "&resumptionToken="
@@ -251,108 +719,198 @@ public class GetOaiPmhIdentifiers {
                 url = null;
             }
         }
+        return new Harvest(total, responseDate);
+    }
 
-        logInfo("Fetched %d identifier(s) for set: %s", identifiers.size(), set);
-        writeGuidsFile(set, identifiers);
+    /**
+     * Appends a header to a GUID file from within a parser callback.
+     *
+     * @throws UncheckedIOException if writing fails
+     */
+    private void append(GuidFileWriter out, RecordHeader header) {
+        try {
+            out.append(formatGuidLine(header), header.deleted());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     // -----------------------------------------------------------------------
-    // HTTP
+    // Selective harvesting
     // -----------------------------------------------------------------------
 
     /**
-     * Performs a simple HTTP GET and returns the response body as a String.
+     * Merges changed headers into a set's GUID file: lines of changed
+     * records are replaced in place, deleted records keep their line with
+     * the {@code deleted} status, and new records are appended. The file
+     * is rewritten through a {@link GuidFileWriter}, so it is only
+     * replaced once the merge is complete.
      *
-     * @param url the URL to fetch
-     * @return response body
-     * @throws IOException          if the request fails or returns a non-2xx status
-     * @throws InterruptedException if interrupted
+     * @param set       the set name
+     * @param changes   changed headers by GetRecord URL
+     * @param unrouted  headers by GetRecord URL that replace the record's
+     *                  line only if the file already lists it
+     * @param nextFrom  value for the {@code # Harvested-Until:} header
+     * @throws IOException if the file cannot be read or written
      */
-    private String fetchUrl(String url) throws IOException, InterruptedException {
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("Accept", "application/xml, text/xml, */*")
-                .GET()
-                .timeout(Duration.ofSeconds(60))
-                .build();
-
-        HttpResponse<String> response = httpClient.send(request,
-                HttpResponse.BodyHandlers.ofString());
-
-        if (response.statusCode() < 200 || response.statusCode() >= 300) {
-            throw new IOException("HTTP " + response.statusCode() + " fetching " + url);
+    private void merge(String set, Map<String, RecordHeader> changes,
+            Map<String, RecordHeader> unrouted, String nextFrom) throws IOException {
+        Path outputPath = resolveGuidsPath(set);
+        int changed = changes.size();
+        try (GuidFileWriter out = GuidFileWriter.open(outputPath, set)) {
+            if (Files.exists(outputPath)) {
+                try (BufferedReader in = Files.newBufferedReader(outputPath, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (line.isBlank() || line.startsWith("#")) {
+                            continue;
+                        }
+                        int tab = line.indexOf('\t');
+                        String url = tab < 0 ? line : line.substring(0, tab);
+                        RecordHeader header = changes.remove(url);
+                        if (header == null && unrouted.containsKey(url)) {
+                            header = unrouted.get(url);
+                            changed++;
+                        }
+                        if (header != null) {
+                            out.append(formatGuidLine(header), header.deleted());
+                        } else {
+                            out.append(line, line.endsWith("\t" + STATUS_DELETED));
+                        }
+                    }
+                }
+            }
+            int added = changes.size();
+            for (RecordHeader header : changes.values()) {
+                out.append(formatGuidLine(header), header.deleted());
+            }
+            out.harvestedUntil(nextFrom);
+            out.commit();
+            logInfo("✓ Merged %d change(s) into %s (%d new; %d GetRecord URL(s), %d deleted)",
+                    changed, outputPath.toAbsolutePath(), added, out.count(), out.deleted());
         }
-        return response.body();
     }
 
-    // -----------------------------------------------------------------------
-    // XML parsing
-    // -----------------------------------------------------------------------
+    /**
+     * @return where the next incremental harvest continues from: the
+     *         {@code until} bound if one was given, otherwise the
+     *         repository's response date of this harvest
+     */
+    private String nextFrom(Harvest result) {
+        return until != null ? until : result.responseDate();
+    }
 
     /**
-     * Parses {@code <identifier>} values from OAI-PMH ListIdentifiers XML.
+     * Reads the {@code # Harvested-Until:} header of a GUID file and
+     * reduces it to day granularity, which every OAI-PMH repository
+     * accepts. The day is listed again on the next harvest; merging it a
+     * second time changes nothing.
      *
-     * @param xml the XML response body
-     * @return list of identifier strings
-     * @throws IOException if XML parsing fails
+     * @param file the GUID file
+     * @return the day to harvest from, or {@code null} if the file does
+     *         not exist or has no such header
+     * @throws IOException if the file cannot be read
      */
-    private List<String> parseIdentifiers(String xml) throws IOException {
-        List<String> ids = new ArrayList<>();
-        try {
-            Document doc = parseXml(xml);
-            NodeList nodes = doc.getElementsByTagNameNS("*", "identifier");
-            if (nodes.getLength() == 0) {
-                nodes = doc.getElementsByTagName("identifier");
-            }
-            for (int i = 0; i < nodes.getLength(); i++) {
-                String text = nodes.item(i).getTextContent().trim();
-                if (!text.isBlank()) {
-                    ids.add(text);
+    private static String continueFrom(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String prefix = "# " + GuidFileWriter.HARVESTED_UNTIL + ":";
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null && line.startsWith("#")) {
+                if (line.startsWith(prefix)) {
+                    String value = line.substring(prefix.length()).trim();
+                    return value.length() < DAY_LENGTH ? null : value.substring(0, DAY_LENGTH);
                 }
             }
-        } catch (ParserConfigurationException | SAXException e) {
-            throw new IOException("Failed to parse OAI-PMH XML: " + e.getMessage(), e);
         }
-        return ids;
+        return null;
     }
 
     /**
-     * Extracts the resumption token from OAI-PMH XML, or {@code null} if absent.
-     *
-     * @param xml the XML response body
-     * @return resumption token string, or {@code null}
-     * @throws IOException if XML parsing fails
+     * @return the explicit {@code from} bound, or {@code null} if any of
+     *         the sets has no GUID file yet, for there is nothing to merge
+     *         the changes into and the set must be harvested in full
      */
-    private String parseResumptionToken(String xml) throws IOException {
-        try {
-            Document doc = parseXml(xml);
-            NodeList nodes = doc.getElementsByTagNameNS("*", "resumptionToken");
-            if (nodes.getLength() == 0) {
-                nodes = doc.getElementsByTagName("resumptionToken");
+    private String explicitFrom(Set<String> sets) {
+        for (String set : sets) {
+            if (!Files.exists(resolveGuidsPath(set))) {
+                logInfo("No GUID file for set %s yet; ignoring from=%s and harvesting in full",
+                        set, from);
+                return null;
             }
-            if (nodes.getLength() > 0) {
-                Element el = (Element) nodes.item(0);
-                String token = el.getTextContent().trim();
-                return token.isBlank() ? null : token;
+        }
+        return from;
+    }
+
+    /**
+     * @return the earliest {@link #continueFrom(Path)} of the sets, or
+     *         {@code null} if any of them has none
+     */
+    private static String earliestContinueFrom(Set<String> sets) throws IOException {
+        String earliest = null;
+        for (String set : sets) {
+            String since = continueFrom(resolveGuidsPath(set));
+            if (since == null) {
+                return null;
+            }
+            if (earliest == null || since.compareTo(earliest) < 0) {
+                earliest = since;
             }
-        } catch (ParserConfigurationException | SAXException e) {
-            throw new IOException("Failed to parse resumption token: " + e.getMessage(), e);
         }
-        return null;
+        return earliest;
     }
 
+    // -----------------------------------------------------------------------
+    // HTTP and XML parsing
+    // -----------------------------------------------------------------------
+
     /**
-     * Parses an XML string into a {@link Document}.
-     */
-    private Document parseXml(String xml)
-            throws ParserConfigurationException, SAXException, IOException {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setNamespaceAware(true);
-        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", false);
-        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        return builder.parse(new InputSource(new java.io.StringReader(xml)));
+     * Fetches one page of a list response and parses it while it is
+     * being received, with {@link OaiPmhPageParser}; the body is neither
+     * buffered as a String nor built into a document tree. The request
+     * holds one of the endpoint's connection permits until the page has
+     * been read, and waits for the request delay before it is sent.
+     *
+     * @param url      the URL to fetch
+     * @param onHeader receives each record header of the page
+     * @return the page's resumption token and list size
+     * @throws IOException          if the request fails, returns a non-2xx
+     *                              status, is not well-formed XML or carries
+     *                              an OAI-PMH error other than
+     *                              {@code noRecordsMatch}
+     * @throws InterruptedException if interrupted
+     */
+    private OaiPmhPageParser.Page fetchPage(String url, Consumer<RecordHeader> onHeader)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Accept", "application/xml, text/xml, */*")
+                .GET()
+                .timeout(Duration.ofSeconds(60))
+                .build();
+
+        connections.acquire();
+        try {
+            pacing.acquire();
+            HttpResponse<InputStream> response = httpClient.send(request,
+                    HttpResponse.BodyHandlers.ofInputStream());
+
+            try (InputStream body = response.body()) {
+                if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                    throw new IOException("HTTP " + response.statusCode() + " fetching " + url);
+                }
+                OaiPmhPageParser.Page page = OaiPmhPageParser.parse(body, onHeader);
+                if (page.isError()) {
+                    throw new IOException("OAI-PMH error " + page.errorCode() + " fetching " + url
+                            + (page.errorMessage() != null ? ": " + page.errorMessage() : ""));
+                }
+                return page;
+            }
+        } finally {
+            connections.release();
+        }
     }
 
     // -----------------------------------------------------------------------
@@ -360,37 +918,41 @@ public class GetOaiPmhIdentifiers {
     // -----------------------------------------------------------------------
 
     /**
-     * Writes a list of identifiers to {@code guids_<lang>.txt} as full
-     * GetRecord URLs.
+     * Resolves the path of {@code guids_<set>.txt}.
      *
      * <p>The file is placed in {@value #RESOURCES_DIR} when that directory
      * exists (i.e. when running from source), otherwise in the current working
      * directory (e.g. when running from a JAR).
      *
-     * @param set        set name, e.g. "de", used in the output filename and log messages
-     * @param identifiers raw identifier strings returned by OAI-PMH
-     * @throws IOException if the file cannot be written
+     * @param set set name, e.g. "de", used in the filename
+     * @return path of the GUID file
      */
-    private void writeGuidsFile(String set, List<String> identifiers) throws IOException {
+    static Path resolveGuidsPath(String set) {
         String filename = "guids_" + set + ".txt";
-
         Path resourcesDir = Paths.get(RESOURCES_DIR);
-        Path outputPath = Files.isDirectory(resourcesDir)
+        return Files.isDirectory(resourcesDir)
                 ? resourcesDir.resolve(filename)
                 : Paths.get(filename);
+    }
 
-        List<String> lines = new ArrayList<>();
-        lines.add("# Identifiers for set: " + set);
-        lines.add("# Fetched: " + java.time.Instant.now());
-        lines.add("# Count: " + identifiers.size());
-
-        for (String identifier : identifiers) {
-            lines.add(buildGetRecordUrl(identifier));
+    /**
+     * Formats one line of a GUID file: the GetRecord URL, then a tab and
+     * the header datestamp (empty if the repository sent none), then a tab
+     * and {@code deleted} for deleted records. Readers that only need the
+     * URL can take everything before the first tab.
+     *
+     * @param header the record header
+     * @return the line, without a line terminator
+     */
+    String formatGuidLine(RecordHeader header) {
+        StringBuilder line = new StringBuilder(buildGetRecordUrl(header.identifier()));
+        if (header.datestamp() != null || header.deleted()) {
+            line.append('\t').append(header.datestamp() != null ? header.datestamp() : "");
         }
-
-        Files.write(outputPath, lines, StandardCharsets.UTF_8);
-        logInfo("✓ Written %d GetRecord URL(s) to %s",
-                identifiers.size(), outputPath.toAbsolutePath());
+        if (header.deleted()) {
+            line.append('\t').append(STATUS_DELETED);
+        }
+        return line.toString();
     }
 
     /**
@@ -431,6 +993,20 @@ public class GetOaiPmhIdentifiers {
                 "Fetch identifiers for all sets (default behaviour when no mode flag is given)");
         options.addOption("s", FETCH_SET_ARG, true,
                 "Fetch identifiers for a single set only");
+        options.addOption("c", CONNECTIONS_ARG, true,
+                "Concurrent requests to the OAI-PMH endpoint (default: "
+                        + DEFAULT_MAX_CONNECTIONS + ")");
+        options.addOption("d", DELAY_ARG, true,
+                "Minimum time in milliseconds between request starts (default: 0)");
+        options.addOption("P", SINGLE_PASS_ARG, false,
+                "Fetch all sets in one unfiltered pass, routing records by setSpec");
+        options.addOption("i", INCREMENTAL_ARG, false,
+                "Fetch only records changed since the previous harvest and merge them"
+                        + " into the existing files");
+        options.addOption(null, FROM_ARG, true,
+                "Fetch only records changed since this datestamp and merge them");
+        options.addOption(null, UNTIL_ARG, true,
+                "Fetch only records changed up to this datestamp and merge them");
         options.addOption("h", "help", false, "Show help");
 
         CommandLineParser parser = new DefaultParser();
@@ -0,0 +1,230 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Writes a {@code guids_<set>.txt} file while a harvest is running, one
+ * line at a time, so that memory use does not grow with the set.
+ *
+ * <p>
+ * Lines go to a {@value #PART_SUFFIX} file next to the target. Its
+ * header holds blank, fixed-width {@code # Count:} and
+ * {@code # Harvested-Until:} fields, which {@link #commit()} fills in
+ * before renaming the file over the target,
+ * atomically where the file system supports it. Until then the target
+ * keeps its previous content. {@link #flush()} is called after every
+ * page, so a harvest that fails part-way leaves the pages fetched so
+ * far in the {@value #PART_SUFFIX} file, readable as a GUID file with
+ * an undeclared count.
+ * </p>
+ */
+final class GuidFileWriter implements AutoCloseable {
+
+    /** Suffix of the file written to until the harvest completes. */
+    static final String PART_SUFFIX = ".part";
+
+    private static final String COUNT_PREFIX = "# Count: ";
+
+    /** Header key of the point an incremental harvest continues from. */
+    static final String HARVESTED_UNTIL = "Harvested-Until";
+
+    private static final String UNTIL_PREFIX = "# " + HARVESTED_UNTIL + ": ";
+
+    /**
+     * Wide enough for any {@code long} and for an OAI-PMH datestamp of
+     * seconds granularity.
+     */
+    private static final int FIELD_WIDTH = 20;
+
+    private final Path target;
+    private final Path part;
+    private final BufferedWriter writer;
+    private final long countOffset;
+    private final long untilOffset;
+
+    private long count;
+    private long deleted;
+    private String harvestedUntil;
+    private boolean closed;
+
+    private GuidFileWriter(Path target, Path part, BufferedWriter writer,
+            long countOffset, long untilOffset) {
+        this.target = target;
+        this.part = part;
+        this.writer = writer;
+        this.countOffset = countOffset;
+        this.untilOffset = untilOffset;
+    }
+
+    /**
+     * Starts a GUID file for a set, replacing a {@value #PART_SUFFIX}
+     * file left by an earlier harvest.
+     *
+     * @param target the GUID file to write
+     * @param set    set name for the header
+     * @return the writer
+     * @throws IOException if the file cannot be created
+     */
+    static GuidFileWriter open(Path target, String set) throws IOException {
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        String head = "# Identifiers for set: " + set + "\n"
+                + "# Fetched: " + Instant.now() + "\n";
+        String countLine = COUNT_PREFIX + " ".repeat(FIELD_WIDTH) + "\n";
+        BufferedWriter writer = Files.newBufferedWriter(part, StandardCharsets.UTF_8);
+        try {
+            writer.write(head);
+            writer.write(countLine);
+            writer.write(UNTIL_PREFIX + " ".repeat(FIELD_WIDTH) + "\n");
+            writer.write("# Columns: GetRecord URL, datestamp, status (tab-separated)\n");
+        } catch (IOException e) {
+            writer.close();
+            throw e;
+        }
+        long countOffset = (head + COUNT_PREFIX).getBytes(StandardCharsets.UTF_8).length;
+        long untilOffset = (head + countLine + UNTIL_PREFIX).getBytes(StandardCharsets.UTF_8).length;
+        return new GuidFileWriter(target, part, writer, countOffset, untilOffset);
+    }
+
+    /**
+     * Appends one line.
+     *
+     * @param line    the line, without a line terminator
+     * @param deleted {@code true} if the line is for a deleted record
+     * @throws IOException if writing fails
+     */
+    void append(String line, boolean deleted) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+        count++;
+        if (deleted) {
+            this.deleted++;
+        }
+    }
+
+    /**
+     * Writes the lines appended so far through to the file.
+     *
+     * @throws IOException if writing fails
+     */
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * @return lines appended so far
+     */
+    long count() {
+        return count;
+    }
+
+    /**
+     * @return lines appended so far for deleted records
+     */
+    long deleted() {
+        return deleted;
+    }
+
+    /**
+     * Sets the point up to which the repository's changes are in the
+     * file, for the {@code # Harvested-Until:} header; the next
+     * incremental harvest asks for changes from there.
+     *
+     * <p>A time more precise than seconds, such as a response date with
+     * fractional seconds or an offset, is reduced to the UTC second at
+     * or before it. A value that is not a time and does not fit the
+     * field leaves the field blank, so the next harvest is a full one.
+     *
+     * @param harvestedUntil an OAI-PMH datestamp or ISO-8601 time, or
+     *                       {@code null} to leave the field blank
+     */
+    void harvestedUntil(String harvestedUntil) {
+        if (harvestedUntil != null && harvestedUntil.length() > FIELD_WIDTH) {
+            try {
+                harvestedUntil = OffsetDateTime.parse(harvestedUntil).toInstant()
+                        .truncatedTo(ChronoUnit.SECONDS).toString();
+            } catch (DateTimeParseException e) {
+                harvestedUntil = null;
+            }
+        }
+        this.harvestedUntil = harvestedUntil;
+    }
+
+    /**
+     * @return the file written to until {@link #commit()}
+     */
+    Path partFile() {
+        return part;
+    }
+
+    /**
+     * Fills in the header fields and renames the file over the target.
+     *
+     * @throws IOException if the file cannot be completed or moved
+     */
+    void commit() throws IOException {
+        closed = true;
+        writer.close();
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            writeField(channel, countOffset, String.valueOf(count));
+            if (harvestedUntil != null) {
+                writeField(channel, untilOffset, harvestedUntil);
+            }
+            channel.force(false);
+        }
+        try {
+            Files.move(part, target,
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeField(FileChannel channel, long offset, String value)
+            throws IOException {
+        String padded = String.format("%-" + FIELD_WIDTH + "s", value);
+        channel.write(ByteBuffer.wrap(padded.getBytes(StandardCharsets.UTF_8)), offset);
+    }
+
+    /**
+     * Closes the file without committing it, if {@link #commit()} has not
+     * been called; the {@value #PART_SUFFIX} file is kept.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Recent Champion response times, kept as a log-scale histogram from
+ * which percentiles are estimated.
+ *
+ * <p>
+ * Bucket bounds grow by 10% from 1 ms to an hour, so an estimate is
+ * never more than 10% above the true value. The window is split into two
+ * halves: once the current half is full it replaces the previous one, so
+ * estimates follow changes in the runners' speed while always covering
+ * at least half a window. Until {@value #MIN_SAMPLES} samples have been
+ * recorded no estimate is given.
+ * </p>
+ */
+final class LatencyHistogram {
+
+    /** Samples needed before percentiles are estimated. */
+    static final int MIN_SAMPLES = 20;
+
+    /** Ratio between the upper bounds of neighbouring buckets. */
+    private static final double GROWTH = 1.1;
+
+    /** Upper bound of the last bucket; longer samples are counted there. */
+    private static final long MAX_MILLIS = 3_600_000;
+
+    private static final int BUCKETS =
+            (int) Math.ceil(Math.log(MAX_MILLIS) / Math.log(GROWTH)) + 1;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int halfWindow;
+    private long[] current = new long[BUCKETS];
+    private long[] previous = new long[BUCKETS];
+    private int currentCount;
+    private int previousCount;
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param window number of recent samples estimates are based on
+     *               (at least {@code 2 * MIN_SAMPLES})
+     */
+    LatencyHistogram(int window) {
+        this.halfWindow = Math.max(MIN_SAMPLES, window / 2);
+    }
+
+    /**
+     * Records the response time of one request.
+     *
+     * @param millis response time
+     */
+    void record(long millis) {
+        int bucket = bucketOf(millis);
+        lock.lock();
+        try {
+            if (currentCount == halfWindow) {
+                long[] emptied = previous;
+                Arrays.fill(emptied, 0);
+                previous = current;
+                previousCount = currentCount;
+                current = emptied;
+                currentCount = 0;
+            }
+            current[bucket]++;
+            currentCount++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Estimates a percentile of the recent response times.
+     *
+     * @param percentile the percentile, e.g. {@code 95}
+     * @return the upper bound of the bucket holding the percentile in
+     *         milliseconds, or zero if fewer than {@value #MIN_SAMPLES}
+     *         samples have been recorded
+     */
+    long percentile(double percentile) {
+        lock.lock();
+        try {
+            int total = currentCount + previousCount;
+            if (total < MIN_SAMPLES) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * total));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += current[bucket] + previous[bucket];
+                if (seen >= rank) {
+                    return upperBound(bucket);
+                }
+            }
+            return MAX_MILLIS;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int bucketOf(long millis) {
+        if (millis <= 1) {
+            return 0;
+        }
+        int bucket = (int) Math.ceil(Math.log(Math.min(millis, MAX_MILLIS)) / Math.log(GROWTH));
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    private static long upperBound(int bucket) {
+        return Math.min(MAX_MILLIS, (long) Math.ceil(Math.pow(GROWTH, bucket)));
+    }
+}
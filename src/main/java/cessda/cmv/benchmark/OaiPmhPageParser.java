@@ -0,0 +1,214 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import cessda.cmv.benchmark.GetOaiPmhIdentifiers.RecordHeader;
+
+/**
+ * Streaming parser for one page of an OAI-PMH list response
+ * ({@code ListIdentifiers}, or the headers of {@code ListRecords}).
+ *
+ * <p>
+ * The page is read once, straight from the response stream, with a StAX
+ * reader; no document tree is built. Each {@code <header>} is handed to
+ * a callback as soon as its end tag is read, so only one header is held
+ * at a time. The {@code <resumptionToken>} with its
+ * {@code completeListSize} and {@code cursor}, the
+ * {@code <responseDate>} and any OAI-PMH {@code <error>} are returned in a {@link Page} once the stream ends.
+ * Elements are matched by local name in any namespace. DTDs and
+ * external entities are not processed.
+ * </p>
+ */
+final class OaiPmhPageParser {
+
+    /** Error code a repository sends when a list is empty. */
+    static final String NO_RECORDS_MATCH = "noRecordsMatch";
+
+    /** Configured once; thread-safe for creating readers. */
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    /**
+     * What a page says beyond its headers.
+     *
+     * @param headers          number of headers with an identifier
+     * @param resumptionToken  token for the next page, or {@code null}
+     *                         on the last page
+     * @param completeListSize size of the whole list as announced by the
+     *                         repository, or {@code -1} if not sent
+     * @param cursor           position of this page's first header in
+     *                         the whole list, or {@code -1} if not sent
+     * @param responseDate     the repository's time of the response, or
+     *                         {@code null} if not sent
+     * @param errorCode        code of an OAI-PMH {@code <error>}, or
+     *                         {@code null}
+     * @param errorMessage     text of the error, or {@code null}
+     */
+    record Page(int headers, String resumptionToken, long completeListSize, long cursor,
+            String responseDate, String errorCode, String errorMessage) {
+
+        /**
+         * @return {@code true} if the repository answered with an error
+         *         other than {@value OaiPmhPageParser#NO_RECORDS_MATCH}
+         */
+        boolean isError() {
+            return errorCode != null && !NO_RECORDS_MATCH.equals(errorCode);
+        }
+    }
+
+    private OaiPmhPageParser() {
+    }
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Parses a page, passing each header with an identifier to
+     * {@code onHeader} in document order. The stream is read to the end
+     * but not closed.
+     *
+     * @param in       the response body
+     * @param onHeader receives each header
+     * @return the page's resumption token and error, if any
+     * @throws IOException if the stream cannot be read or is not
+     *                     well-formed XML
+     */
+    static Page parse(InputStream in, Consumer<RecordHeader> onHeader) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(in);
+            return read(reader, onHeader);
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to parse OAI-PMH XML: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // the stream itself is closed by the caller
+                }
+            }
+        }
+    }
+
+    private static Page read(XMLStreamReader reader, Consumer<RecordHeader> onHeader)
+            throws XMLStreamException {
+        int headers = 0;
+        String token = null;
+        long completeListSize = -1;
+        long cursor = -1;
+        String responseDate = null;
+        String errorCode = null;
+        String errorMessage = null;
+
+        boolean inHeader = false;
+        boolean deleted = false;
+        String identifier = null;
+        String datestamp = null;
+        List<String> setSpecs = new ArrayList<>();
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (inHeader) {
+                    switch (name) {
+                        case "identifier" -> identifier = text(reader);
+                        case "datestamp" -> datestamp = text(reader);
+                        case "setSpec" -> {
+                            String spec = text(reader);
+                            if (spec != null) {
+                                setSpecs.add(spec);
+                            }
+                        }
+                        default -> {
+                            // other header children are not used
+                        }
+                    }
+                } else if ("header".equals(name)) {
+                    inHeader = true;
+                    deleted = GetOaiPmhIdentifiers.STATUS_DELETED.equals(
+                            reader.getAttributeValue(null, "status"));
+                    identifier = null;
+                    datestamp = null;
+                    setSpecs = new ArrayList<>();
+                } else if ("resumptionToken".equals(name)) {
+                    completeListSize = longAttribute(reader, "completeListSize");
+                    cursor = longAttribute(reader, "cursor");
+                    token = text(reader);
+                } else if ("responseDate".equals(name)) {
+                    responseDate = text(reader);
+                } else if ("error".equals(name)) {
+                    errorCode = reader.getAttributeValue(null, "code");
+                    errorMessage = text(reader);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT
+                    && inHeader && "header".equals(reader.getLocalName())) {
+                inHeader = false;
+                if (identifier != null) {
+                    onHeader.accept(new RecordHeader(identifier, datestamp, deleted,
+                            List.copyOf(setSpecs)));
+                    headers++;
+                }
+            }
+        }
+        return new Page(headers, token, completeListSize, cursor, responseDate,
+                errorCode, errorMessage);
+    }
+
+    /**
+     * Reads the text of the current element, which must only hold text.
+     *
+     * @return the trimmed text, or {@code null} if it is blank
+     */
+    private static String text(XMLStreamReader reader) throws XMLStreamException {
+        String text = reader.getElementText().trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    /**
+     * @return the attribute as a number, or {@code -1} if it is missing
+     *         or not a number
+     */
+    private static long longAttribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
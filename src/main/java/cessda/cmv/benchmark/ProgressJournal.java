@@ -0,0 +1,160 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Append-only record of the GUIDs finished during an assessment run,
+ * kept next to the results as {@value #FILENAME}.
+ *
+ * <p>
+ * Each line holds a status ({@value #OK} or {@value #FAILED}), a tab
+ * and the GetRecord URL, and is flushed as soon as the GUID finishes,
+ * so the journal survives the JVM dying part-way through a run. When a
+ * run is resumed, GUIDs journalled as {@value #OK} are loaded into a
+ * hash set and skipped; failed GUIDs are tried again. A line cut short
+ * by a crash is ignored.
+ * </p>
+ */
+final class ProgressJournal implements AutoCloseable {
+
+    /** Name of the journal file inside a results directory. */
+    static final String FILENAME = ".journal";
+
+    static final String OK = "ok";
+    static final String FAILED = "failed";
+
+    private final Path path;
+    private final Set<String> completed;
+    private final BufferedWriter writer;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private ProgressJournal(Path path, Set<String> completed, BufferedWriter writer) {
+        this.path = path;
+        this.completed = completed;
+        this.writer = writer;
+    }
+
+    /**
+     * Opens the journal in the given results directory.
+     *
+     * @param dir    results directory of the run (created if absent)
+     * @param resume {@code true} to load and extend an existing journal;
+     *               {@code false} to start a new one
+     * @return the open journal
+     * @throws IOException if the journal cannot be read or opened
+     */
+    static ProgressJournal open(Path dir, boolean resume) throws IOException {
+        Files.createDirectories(dir);
+        Path path = dir.resolve(FILENAME);
+        Set<String> completed = new HashSet<>();
+
+        if (resume && Files.exists(path)) {
+            try (Stream<String> lines = Files.lines(path, StandardCharsets.UTF_8)) {
+                lines.forEach(line -> {
+                    int tab = line.indexOf('\t');
+                    if (tab > 0 && OK.equals(line.substring(0, tab))) {
+                        completed.add(line.substring(tab + 1));
+                    }
+                });
+            }
+        }
+
+        BufferedWriter writer = resume
+                ? Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                : Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        if (resume && endsMidLine(path)) {
+            // Terminate a line cut short by a crash so the next entry
+            // starts on a line of its own.
+            writer.newLine();
+        }
+        return new ProgressJournal(path, completed, writer);
+    }
+
+    /**
+     * @param guid GetRecord URL
+     * @return {@code true} if a previous run completed this GUID
+     */
+    boolean isCompleted(String guid) {
+        return completed.contains(guid);
+    }
+
+    /**
+     * @return the number of GUIDs completed by previous runs
+     */
+    int completedCount() {
+        return completed.size();
+    }
+
+    /**
+     * Appends and flushes an entry for a finished GUID. Write failures
+     * are logged; they cost at most a repeat request on resume.
+     *
+     * @param guid GetRecord URL
+     * @param ok   {@code true} if a 2xx response was saved; error bodies
+     *             are saved too but count as failed, so that a resumed
+     *             run sends them again
+     */
+    void record(String guid, boolean ok) {
+        lock.lock();
+        try {
+            writer.write(ok ? OK : FAILED);
+            writer.write('\t');
+            writer.write(guid);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            RunBenchmarkAssessment.logSevere("Could not write to %s: %s", path, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean endsMidLine(Path path) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+            if (channel.size() == 0) {
+                return false;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1).read(last);
+            return last.get(0) != '\n';
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            writer.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Append-only index of the results saved in a results directory, kept
+ * next to them as {@value #FILENAME}.
+ *
+ * <p>
+ * Each line holds the time a result was saved, the algorithm URI it was
+ * assessed with and the GetRecord URL, separated by tabs. Unlike the
+ * {@link ProgressJournal}, the index is kept across runs, so the age of
+ * every result can be looked up without opening the result files. On
+ * opening, only the latest entry per algorithm and GUID is kept in
+ * memory, and the file is rewritten if most of its lines are stale.
+ * Lines that cannot be read, e.g. one cut short by a crash, are
+ * ignored.
+ * </p>
+ *
+ * <p>
+ * Indexes open in this JVM are registered by directory, so a result
+ * linked into another set's directory can be recorded with
+ * {@link #recordIn(Path, String, String, Instant)} whether or not that
+ * set's run has the index open.
+ * </p>
+ */
+final class ResultIndex implements AutoCloseable {
+
+    /** Name of the index file inside a results directory. */
+    static final String FILENAME = ".index";
+
+    /** Stale lines tolerated before the file is compacted on opening. */
+    private static final int COMPACT_SLACK = 1_000;
+
+    /** Open indexes by real path of their directory. */
+    private static final Map<Path, ResultIndex> OPEN = new ConcurrentHashMap<>();
+
+    private final Path dir;
+    private final Path path;
+    private final Map<String, Instant> savedAt;
+    private final BufferedWriter writer;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private ResultIndex(Path dir, Path path, Map<String, Instant> savedAt, BufferedWriter writer) {
+        this.dir = dir;
+        this.path = path;
+        this.savedAt = savedAt;
+        this.writer = writer;
+    }
+
+    /**
+     * Opens, and if necessary compacts, the index in the given results
+     * directory.
+     *
+     * @param dir results directory (created if absent)
+     * @return the open index
+     * @throws IOException if the index cannot be read or opened, or is
+     *                     already open in this JVM
+     */
+    static ResultIndex open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        try {
+            return OPEN.compute(dir.toRealPath(), (key, open) -> {
+                if (open != null) {
+                    throw new UncheckedIOException(
+                            new IOException("Result index in " + dir + " is already open"));
+                }
+                try {
+                    return load(key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Records a result saved at the given time in the index of a results
+     * directory: through the index if it is open in this JVM, otherwise
+     * by appending a line to the file. Write failures are logged.
+     *
+     * @param dir       results directory
+     * @param algorithm algorithm URI the result was assessed with
+     * @param guid      GetRecord URL
+     * @param when      time the result was saved
+     */
+    static void recordIn(Path dir, String algorithm, String guid, Instant when) {
+        try {
+            OPEN.compute(dir.toRealPath(), (key, open) -> {
+                if (open != null) {
+                    open.record(algorithm, guid, when);
+                    return open;
+                }
+                try {
+                    Files.writeString(key.resolve(FILENAME),
+                            line(when, algorithm, guid) + System.lineSeparator(),
+                            StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        } catch (IOException | UncheckedIOException e) {
+            RunBenchmarkAssessment.logSevere("Could not record %s in the index of %s: %s",
+                    guid, dir, e.getMessage());
+        }
+    }
+
+    private static ResultIndex load(Path dir) throws IOException {
+        Path path = dir.resolve(FILENAME);
+        Map<String, Instant> savedAt = new HashMap<>();
+        long lines = 0;
+        boolean cutShort = false;
+
+        if (Files.exists(path)) {
+            try (Stream<String> stream = Files.lines(path, StandardCharsets.UTF_8)) {
+                for (String line : (Iterable<String>) stream::iterator) {
+                    lines++;
+                    cutShort = !parse(line, savedAt);
+                }
+            }
+        }
+
+        if (cutShort || lines > 2L * savedAt.size() + COMPACT_SLACK) {
+            compact(path, savedAt);
+        }
+        BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new ResultIndex(dir, path, savedAt, writer);
+    }
+
+    /**
+     * Returns when the result for a GUID was last saved with the given
+     * algorithm. Still answers after the index is closed, from the
+     * entries it held then.
+     *
+     * @param algorithm algorithm URI
+     * @param guid      GetRecord URL
+     * @return the save time, or {@code null} if the index has none
+     */
+    Instant savedAt(String algorithm, String guid) {
+        lock.lock();
+        try {
+            return savedAt.get(key(algorithm, guid));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends and flushes an entry for a result saved now. Write
+     * failures are logged; they cost at most a repeat request.
+     *
+     * @param algorithm algorithm URI the result was assessed with
+     * @param guid      GetRecord URL
+     */
+    void record(String algorithm, String guid) {
+        record(algorithm, guid, Instant.now());
+    }
+
+    private void record(String algorithm, String guid, Instant when) {
+        lock.lock();
+        try {
+            savedAt.merge(key(algorithm, guid), when, (a, b) -> a.isAfter(b) ? a : b);
+            writer.write(line(when, algorithm, guid));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            RunBenchmarkAssessment.logSevere("Could not write to %s: %s", path, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean parse(String line, Map<String, Instant> savedAt) {
+        String[] fields = line.split("\t", 3);
+        if (fields.length < 3 || fields[2].isEmpty()) {
+            return false;
+        }
+        try {
+            savedAt.merge(key(fields[1], fields[2]), Instant.parse(fields[0]),
+                    (a, b) -> a.isAfter(b) ? a : b);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static void compact(Path path, Map<String, Instant> savedAt) throws IOException {
+        Path tmp = RunBenchmarkAssessment.newTempFile(path.getParent(), "index");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Instant> entry : savedAt.entrySet()) {
+                int tab = entry.getKey().indexOf('\t');
+                out.write(line(entry.getValue(),
+                        entry.getKey().substring(0, tab), entry.getKey().substring(tab + 1)));
+                out.newLine();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String key(String algorithm, String guid) {
+        return algorithm + '\t' + guid;
+    }
+
+    private static String line(Instant when, String algorithm, String guid) {
+        return when + "\t" + algorithm + '\t' + guid;
+    }
+
+    @Override
+    public void close() throws IOException {
+        OPEN.remove(dir, this);
+        lock.lock();
+        try {
+            writer.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
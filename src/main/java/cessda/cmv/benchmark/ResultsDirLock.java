@@ -0,0 +1,128 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exclusive claim of a results directory by one run, held as a
+ * {@link FileLock} on {@value #FILENAME} inside it and registered in
+ * this JVM.
+ *
+ * <p>
+ * A run truncates the {@link ProgressJournal} unless it resumes, and
+ * the {@link ResultIndex} may be rewritten when it is opened, so two
+ * runs writing to the same directory would lose each other's entries.
+ * The lock is refused to a second run in this JVM as well as in any
+ * other process, and is released when the run closes it or its JVM
+ * dies. Claims within the JVM are checked against the registry before
+ * the lock file is opened, since closing a second channel on the file
+ * could release the first one's lock. The file itself is left in place.
+ * </p>
+ *
+ * <p>
+ * The thread holding the lock may claim it again, e.g. to resume the
+ * GUIDs left pending in a directory and delete the list under the same
+ * claim; the lock is released when the last claim is closed.
+ * </p>
+ */
+final class ResultsDirLock implements AutoCloseable {
+
+    /** Name of the lock file inside a results directory. */
+    static final String FILENAME = ".lock";
+
+    /** Directories claimed in this JVM. */
+    private static final Map<Path, ResultsDirLock> HELD = new ConcurrentHashMap<>();
+
+    private final Path dir;
+    private final Thread owner = Thread.currentThread();
+    private int claims = 1;
+    private FileChannel channel;
+    private FileLock lock;
+
+    private ResultsDirLock(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Claims the given results directory.
+     *
+     * @param dir results directory (created if absent)
+     * @return the held lock
+     * @throws IOException if another run holds the directory, or the
+     *                     lock file cannot be opened
+     */
+    static ResultsDirLock acquire(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Path key = dir.toRealPath();
+        ResultsDirLock claim = new ResultsDirLock(key);
+        ResultsDirLock held = HELD.putIfAbsent(key, claim);
+        if (held != null) {
+            if (held.owner != Thread.currentThread()) {
+                throw inUse(dir);
+            }
+            held.claims++;
+            return held;
+        }
+        try {
+            claim.channel = FileChannel.open(key.resolve(FILENAME),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                claim.lock = claim.channel.tryLock();
+            } catch (IOException | OverlappingFileLockException e) {
+                claim.channel.close();
+                throw e;
+            }
+            if (claim.lock == null) {
+                claim.channel.close();
+                throw inUse(dir);
+            }
+            return claim;
+        } catch (IOException | RuntimeException e) {
+            HELD.remove(key, claim);
+            throw e;
+        }
+    }
+
+    private static IOException inUse(Path dir) {
+        return new IOException("Results directory " + dir + " is in use by another run");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (--claims > 0) {
+            return;
+        }
+        try {
+            lock.release();
+        } finally {
+            try {
+                channel.close();
+            } finally {
+                HELD.remove(dir, this);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+/**
+ * Caps retries at a fraction of first attempts so that a runner outage
+ * does not turn into a retry storm.
+ *
+ * <p>
+ * Every first attempt deposits {@code ratio} of a retry into the
+ * budget and every retry withdraws one. The balance starts at, and is
+ * capped by, a small reserve so that a handful of retries are always
+ * available at the start of a run, while in the long run retries never
+ * exceed {@code ratio} times the number of requests.
+ * </p>
+ */
+final class RetryBudget {
+
+    /** Absorbs rounding error from adding up fractional deposits. */
+    private static final double EPSILON = 1e-9;
+
+    private double ratio;
+    private int reserve;
+    private double balance;
+
+    /**
+     * Creates a budget.
+     *
+     * @param ratio   retries allowed per first attempt, e.g. {@code 0.1}
+     * @param reserve retries available before any request has been made
+     *                and upper bound for the balance
+     */
+    RetryBudget(double ratio, int reserve) {
+        reconfigure(ratio, reserve);
+    }
+
+    /**
+     * Replaces the ratio and reserve and refills the balance.
+     *
+     * @param ratio   retries allowed per first attempt
+     * @param reserve retries available up front and balance ceiling
+     */
+    synchronized void reconfigure(double ratio, int reserve) {
+        this.ratio = Math.max(0, ratio);
+        this.reserve = Math.max(0, reserve);
+        this.balance = this.reserve;
+    }
+
+    /**
+     * Records a first attempt, crediting the budget.
+     */
+    synchronized void onRequest() {
+        balance = Math.min(reserve, balance + ratio);
+    }
+
+    /**
+     * Withdraws one retry from the budget if available.
+     *
+     * @return {@code true} if the retry may go ahead
+     */
+    synchronized boolean tryAcquireRetry() {
+        if (balance + EPSILON < 1) {
+            return false;
+        }
+        balance -= 1;
+        return true;
+    }
+
+    /**
+     * @return the retries currently available, rounded down
+     */
+    synchronized int available() {
+        return (int) (balance + EPSILON);
+    }
+}
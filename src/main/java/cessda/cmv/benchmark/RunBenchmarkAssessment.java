@@ -17,29 +17,61 @@
 package cessda.cmv.benchmark;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import javax.net.ssl.SSLHandshakeException;
 
@@ -54,8 +86,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -84,6 +121,13 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
  *   -g, --guid &lt;url&gt;          Process a single GetRecord URL supplied
  *                              on the command line
  *   -f, --filename &lt;file&gt;     GUIDs filename (legacy single-file mode)
+ *   -r, --resume              Skip GUIDs completed by a previous run
+ *   -i, --incremental         Skip records unchanged since their result
+ *                              file was written
+ *   -t, --ttl-days &lt;days&gt;     Skip GUIDs assessed with the same algorithm
+ *                              within this many days
+ *   -l, --rate-limit &lt;rps&gt;    Requests per second per runner
+ *   -b, --burst &lt;n&gt;           Rate limiter burst size
  *   -h, --help                Show this help message
  * </pre>
  *
@@ -92,9 +136,15 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
  * {@code -f} / {@code --filename} (default: {@value #DEFAULT_GUIDS_FILE})
  * is processed (legacy single-file mode).
  * </p>
+ *
+ * <p>
+ * As a {@link SmartLifecycle} bean, the service drains the sets being
+ * processed when the application context is closed, e.g. on SIGTERM;
+ * see {@link #stop()}.
+ * </p>
  */
 @Service
-public class RunBenchmarkAssessment {
+public class RunBenchmarkAssessment implements SmartLifecycle {
 
     // -----------------------------------------------------------------------
     // Constants
@@ -123,13 +173,13 @@ public class RunBenchmarkAssessment {
     // Log / status message templates
     private static final String NOGUIDS = "No GUIDs found to process. Exiting.";
     private static final String PROCCOMP = "Processing completed!";
-    private static final String FOUNDGUIDS = "Found %d GUID(s) to process";
+    private static final String SUBMITTED = "Processed %d GUID(s) from %s";
     private static final String PROCERROR = "Error processing GUID %s: %s";
     private static final String TASKWAIT = "Waiting for all tasks to complete...";
-    private static final String TASKTOOLONG = "Some tasks did not complete in time!";
     private static final String TASKSUCCESS = "All tasks completed successfully.";
     private static final String REQSEND = "Sending request to ";
     private static final String FILESAVEERR = "Could not save error file: ";
+    private static final String SHUTTING_DOWN = "Shutting down; not accepting new runs";
     private static final String PROCFAIL = "\u2717 Failed to process GUID ";
     private static final String RESPSAVED = "\u2713 Saved response for GUID ";
 
@@ -139,12 +189,118 @@ public class RunBenchmarkAssessment {
     private static final String PROCESS_FILE_ARG = "process-file";
     private static final String GUID_ARG = "guid";
     private static final String FILENAME_ARG = "filename";
+    private static final String RESUME_ARG = "resume";
+    private static final String INCREMENTAL_ARG = "incremental";
+    private static final String TTL_ARG = "ttl-days";
+    private static final String RATE_ARG = "rate-limit";
+    private static final String BURST_ARG = "burst";
 
     private final Duration requestTimeout;
 
     private static final Logger logger = Logger.getLogger(RunBenchmarkAssessment.class.getName());
 
-    private static final Semaphore REQUEST_SEMAPHORE = new Semaphore(2);
+    /**
+     * Caps retries across all runs at a fraction of first attempts,
+     * configured by {@link AssessmentSettings#configureRetries(double, int)}.
+     */
+    private static final RetryBudget RETRY_BUDGET = new RetryBudget(0.1, 10);
+
+    /**
+     * One request-rate limiter per runner URI, created on first use with
+     * the rate set by {@link AssessmentSettings#configureRateLimit(double, int)}.
+     */
+    private static final Map<String, TokenBucket> RATE_LIMITERS = new ConcurrentHashMap<>();
+
+    /**
+     * One runner pool per {@code benchmark.runner} value, shared by all
+     * runs that use it, configured by
+     * {@link AssessmentSettings#configureRunnerBalancing(String, int, int)}.
+     * Each runner of a pool limits the Champion requests in flight to it
+     * across all runs, adapting to its latency and gateway error rate
+     * within the bounds set by
+     * {@link AssessmentSettings#configureConcurrency(int, int, int, int)}.
+     */
+    private static final Map<String, RunnerPool> RUNNER_POOLS = new ConcurrentHashMap<>();
+
+    /** Successful responses the latency percentiles are taken over. */
+    private static final int LATENCY_WINDOW = 200;
+
+    /**
+     * Response times of successful Champion requests across all runs,
+     * from which the hedging delay and adaptive timeouts are taken.
+     */
+    private static final LatencyHistogram LATENCY = new LatencyHistogram(LATENCY_WINDOW);
+
+    /**
+     * Caps hedged requests across all runs at a fraction of first
+     * attempts, configured by
+     * {@link AssessmentSettings#configureHedging(boolean, double, double, int)}.
+     */
+    private static final RetryBudget HEDGE_BUDGET = new RetryBudget(0.05, 5);
+
+    /** Percentile of recent response times adaptive timeouts scale. */
+    private static final double TIMEOUT_PERCENTILE = 99;
+
+    /** Time sets are given to save their pending GUIDs after the grace period. */
+    private static final Duration PENDING_SAVE_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Name of the file in a results directory that lists the GUIDs a
+     * shutdown left unprocessed, in GUID file format.
+     */
+    private static final String PENDING_FILE = ".pending";
+
+    /**
+     * Set once shutdown has begun: runs stop reading GUIDs, queued GUIDs
+     * are not sent and new runs are refused.
+     */
+    private static volatile boolean shuttingDown;
+
+    /**
+     * Lanes of the sets being processed in this JVM, each with a future
+     * completed when its set has returned.
+     */
+    private static final Map<Pipeline.SetLane, CompletableFuture<Void>> ACTIVE_SETS =
+            new ConcurrentHashMap<>();
+
+    /** Upper bound for a runner's {@code Retry-After}. */
+    private static final long MAX_RETRY_AFTER_MS = 600_000;
+
+    /**
+     * Pauses dispatch across all runs while the runner is failing,
+     * configured by
+     * {@link AssessmentSettings#configureCircuitBreaker(int, double, int, int, int, int)}.
+     */
+    private static final CircuitBreaker CIRCUIT_BREAKER =
+            new CircuitBreaker(5, 0.5, 20, 30_000, 1);
+
+    /**
+     * Runs the response-handling stages of {@link ExecutionMode#ASYNC}
+     * requests (JSON check and file write) off the HTTP client's own
+     * threads.
+     */
+    private static final ExecutorService ASYNC_STAGE_EXECUTOR =
+            Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Tasks with a Champion request in flight, keyed by algorithm URI and
+     * GUID, across all runs in this JVM. A task submitted while another
+     * with the same key is in flight shares its request and result
+     * instead of sending its own.
+     */
+    private static final Map<String, GuidTask> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    /**
+     * Holds GUIDs waiting out their retry backoff. Waiting GUIDs hold
+     * no concurrency slot; when the delay expires they are put back on
+     * the queue of their run.
+     */
+    private static final ScheduledExecutorService RETRY_SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "benchmark-retry-scheduler");
+                t.setDaemon(true);
+                return t;
+            });
     // -----------------------------------------------------------------------
     // Instance state
     // -----------------------------------------------------------------------
@@ -156,26 +312,46 @@ public class RunBenchmarkAssessment {
     private String benchmarkAlgorithm;
 
     /**
-     * URI of the FAIR Champion runner instance, injected from
+     * URI of the FAIR Champion runner instance, or a comma-separated
+     * list of instances to balance over, injected from
      * {@code benchmark.runner}.
      */
     private final String benchmarkRunner;
 
     /**
-     * Name of the GUID file currently being processed; may be
-     * overridden temporarily by {@link #processSingleFile(String)}.
+     * Name of the GUID file processed in legacy single-file mode.
      */
     private String guidsFilename;
 
+    /**
+     * When {@code true}, GUIDs recorded as completed in a set's
+     * {@link ProgressJournal} are skipped instead of being assessed
+     * again.
+     */
+    private boolean resume;
+
+    /**
+     * When {@code true}, records whose header datestamp is not newer than
+     * their existing result file are skipped.
+     */
+    private boolean incremental;
+
     private final HttpClient httpClient;
 
+    /** Tuning settings, shared with every instance derived from this one. */
+    private final AssessmentSettings settings;
+
+    /** Whether this bean has been started by the application context. */
+    private volatile boolean running;
+
     // -----------------------------------------------------------------------
     // Constructor
     // -----------------------------------------------------------------------
 
     /**
      * Creates a service bean that posts GUIDs to the configured
-     * Champion API URIs.
+     * Champion API URIs, and applies the limits shared by all runs in
+     * the JVM from its settings.
      *
      * <p>
      * Both URIs are resolved from application properties but can be
@@ -188,29 +364,34 @@ public class RunBenchmarkAssessment {
      * @param benchmarkAlgorithm URI of the benchmark assessment
      *                           algorithm, bound to
      *                           {@code benchmark.algorithm}
-     * @param benchmarkRunner    URI of the FAIR Champion runner,
-     *                           bound to {@code benchmark.runner}
+     * @param benchmarkRunner    URI of the FAIR Champion runner, or a
+     *                           comma-separated list of runners, bound
+     *                           to {@code benchmark.runner}
+     * @param connectTimeout     connect timeout in seconds, bound to
+     *                           {@code benchmark.connect.timeout.seconds}
+     * @param requestTimeout     request timeout in seconds, bound to
+     *                           {@code benchmark.request.timeout.seconds}
+     * @param settings           tuning settings bound from the other
+     *                           {@code benchmark.*} properties
      */
     @Autowired
     public RunBenchmarkAssessment(
             @Value("${benchmark.algorithm}") String benchmarkAlgorithm,
             @Value("${benchmark.runner}") String benchmarkRunner,
             @Value("${benchmark.connect.timeout.seconds:30}") int connectTimeout,
-            @Value("${benchmark.request.timeout.seconds:120}") int requestTimeout) {
+            @Value("${benchmark.request.timeout.seconds:120}") int requestTimeout,
+            AssessmentSettings settings) {
 
-        this.requestTimeout = Duration.ofSeconds(requestTimeout);
-        this.benchmarkAlgorithm = benchmarkAlgorithm;
-        this.benchmarkRunner = benchmarkRunner;
-        this.guidsFilename = DEFAULT_GUIDS_FILE;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(connectTimeout))
-                .build();
+        this(settings, benchmarkAlgorithm, benchmarkRunner,
+                Duration.ofSeconds(connectTimeout), Duration.ofSeconds(requestTimeout));
+        applySharedSettings();
     }
 
     /**
      * Convenience constructor for direct instantiation outside of a
      * Spring context. Uses default timeout values of 30s (connect)
-     * and 120s (request).
+     * and 120s (request) and the default {@link AssessmentSettings},
+     * and leaves the limits shared by all runs as they are.
      *
      * @param benchmarkAlgorithm URI of the benchmark assessment algorithm
      * @param benchmarkRunner    URI of the FAIR Champion runner
@@ -218,7 +399,104 @@ public class RunBenchmarkAssessment {
     public RunBenchmarkAssessment(
             String benchmarkAlgorithm,
             String benchmarkRunner) {
-        this(benchmarkAlgorithm, benchmarkRunner, 30, 120);
+        this(new AssessmentSettings(), benchmarkAlgorithm, benchmarkRunner,
+                Duration.ofSeconds(30), Duration.ofSeconds(120));
+    }
+
+    private RunBenchmarkAssessment(AssessmentSettings settings, String benchmarkAlgorithm,
+            String benchmarkRunner, Duration connectTimeout, Duration requestTimeout) {
+        this.settings = settings;
+        this.requestTimeout = requestTimeout;
+        this.benchmarkAlgorithm = benchmarkAlgorithm;
+        this.benchmarkRunner = benchmarkRunner;
+        this.guidsFilename = DEFAULT_GUIDS_FILE;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    /**
+     * Creates an instance that shares the runner, HTTP client, timeouts
+     * and settings of another but uses a different algorithm URI.
+     *
+     * @param base               instance to copy
+     * @param benchmarkAlgorithm URI of the benchmark assessment algorithm
+     */
+    private RunBenchmarkAssessment(RunBenchmarkAssessment base, String benchmarkAlgorithm) {
+        this.settings = base.settings;
+        this.requestTimeout = base.requestTimeout;
+        this.benchmarkAlgorithm = benchmarkAlgorithm;
+        this.benchmarkRunner = base.benchmarkRunner;
+        this.guidsFilename = base.guidsFilename;
+        this.httpClient = base.httpClient;
+    }
+
+    /**
+     * Returns an instance for one run with the given algorithm URI that
+     * shares the runner, HTTP client, timeouts and settings of this one.
+     * Resume and incremental mode start off.
+     *
+     * @param benchmarkAlgorithm URI of the benchmark assessment algorithm
+     * @return the new instance
+     */
+    public RunBenchmarkAssessment withAlgorithm(String benchmarkAlgorithm) {
+        return new RunBenchmarkAssessment(this, benchmarkAlgorithm);
+    }
+
+    /**
+     * Applies the settings to the limiter, budgets, circuit breaker,
+     * rate limiters and runner pools shared by all runs in the JVM, and
+     * logs those in force.
+     */
+    private void applySharedSettings() {
+        RETRY_BUDGET.reconfigure(settings.retryRatio(), settings.retryReserve());
+        CIRCUIT_BREAKER.reconfigure(settings.circuitFailures(), settings.circuitErrorRate(),
+                settings.circuitWindow(), settings.circuitOpenMs(), settings.circuitProbes());
+        applyRateLimit();
+        runnerPool();
+        RUNNER_POOLS.values().forEach(pool -> {
+            pool.reconfigure(settings.runnerBalancing(),
+                    settings.runnerFailureThreshold(), settings.runnerCooldownMs());
+            pool.configureConcurrency(settings.minConcurrency(), settings.maxConcurrency(),
+                    settings.initialConcurrency());
+        });
+        logInfo("Concurrency limit per runner: %d (min %d, max %d)", settings.initialConcurrency(),
+                settings.minConcurrency(), settings.maxConcurrency());
+        if (runnerPool().size() > 1) {
+            logInfo("Balancing over %d runners (%s)", runnerPool().size(), settings.runnerBalancing());
+        }
+        if (settings.adaptiveTimeouts()) {
+            logInfo("Adaptive timeouts: p99 x %.1f, between %ds and %ds",
+                    settings.timeoutFactor(), TimeUnit.MILLISECONDS.toSeconds(settings.minTimeoutMs()),
+                    requestTimeout.toSeconds());
+        }
+        HEDGE_BUDGET.reconfigure(settings.hedgeRatio(), settings.hedgeReserve());
+        if (settings.hedgeEnabled()) {
+            logInfo("Hedging requests slower than p%.0f (up to %.0f%% extra requests)",
+                    settings.hedgePercentile(), settings.hedgeRatio() * 100);
+        }
+        logResultTtl();
+        logInfo("Execution mode: %s", settings.executionMode());
+    }
+
+    /**
+     * Applies the per-runner request rate of the settings to the rate
+     * limiters already created.
+     */
+    private void applyRateLimit() {
+        RATE_LIMITERS.values().forEach(bucket -> bucket.reconfigure(
+                settings.runnerRate(), settings.runnerBurst()));
+        if (settings.runnerRate() > 0) {
+            logInfo("Rate limit: %.2f request(s)/s per runner, burst %d",
+                    settings.runnerRate(), settings.runnerBurst());
+        }
+    }
+
+    private void logResultTtl() {
+        if (!settings.resultTtl().isZero()) {
+            logInfo("Skipping results younger than %.1f day(s)",
+                    settings.resultTtl().toSeconds() / 86_400.0);
+        }
     }
 
     // -----------------------------------------------------------------------
@@ -246,6 +524,171 @@ public class RunBenchmarkAssessment {
         return benchmarkRunner;
     }
 
+    /**
+     * Enables or disables resume mode. In resume mode each set's
+     * progress journal is extended rather than restarted, and GUIDs it
+     * records as completed are skipped.
+     *
+     * @param resume {@code true} to skip GUIDs completed by a previous run
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Enables or disables incremental mode. In incremental mode a record
+     * is only assessed if the datestamp stored next to it in the GUID
+     * file is newer than its existing result file; records without a
+     * datestamp or without a result file are always assessed.
+     *
+     * @param incremental {@code true} to skip records unchanged since
+     *                    their last assessment
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    // -----------------------------------------------------------------------
+    // Lifecycle
+    // -----------------------------------------------------------------------
+
+    /**
+     * Marks the bean as running and, after an earlier context in the same
+     * JVM was stopped, accepts runs again.
+     */
+    @Override
+    public void start() {
+        shuttingDown = false;
+        running = true;
+    }
+
+    /**
+     * Drains the sets being processed with the configured grace period;
+     * see {@link #drain(Duration)}. Runs at the default
+     * {@link SmartLifecycle} phase, so before the web server's graceful
+     * shutdown, and the API requests running the sets return with the
+     * shutdown reported as an error.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        drain(settings.shutdownGrace());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return {@code true} once shutdown has begun and new runs are
+     *         refused
+     */
+    public static boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
+    /**
+     * Stops all runs in this JVM. New runs are refused and every set
+     * stops reading GUIDs. Queued GUIDs and those waiting out a retry
+     * backoff are not sent; the requests in flight are given the grace
+     * period to finish and are then cancelled. Each set then writes the
+     * GUIDs it left unprocessed to {@value #PENDING_FILE} in its results
+     * directory, where {@link #resumePending()} finds them.
+     *
+     * @param grace time the requests in flight are given to finish
+     */
+    static void drain(Duration grace) {
+        shuttingDown = true;
+        if (ACTIVE_SETS.isEmpty()) {
+            return;
+        }
+        logInfo("Shutting down: waiting up to %ds for the GUIDs in flight of %d set(s)",
+                grace.toSeconds(), ACTIVE_SETS.size());
+        if (!awaitActiveSets(grace)) {
+            logInfo("Grace period over; cancelling the GUIDs still in flight");
+            ACTIVE_SETS.keySet().forEach(Pipeline.SetLane::cancel);
+            if (!awaitActiveSets(PENDING_SAVE_TIMEOUT)) {
+                logSevere("%d set(s) did not stop in time", ACTIVE_SETS.size());
+            }
+        }
+    }
+
+    /**
+     * Waits for the sets in {@link #ACTIVE_SETS} to return.
+     *
+     * @param timeout how long to wait
+     * @return {@code true} if they all returned in time
+     */
+    private static boolean awaitActiveSets(Duration timeout) {
+        try {
+            CompletableFuture.allOf(ACTIVE_SETS.values().toArray(CompletableFuture[]::new))
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            return ACTIVE_SETS.isEmpty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Processes the {@value #PENDING_FILE} lists left in the results
+     * directories by runs that a shutdown interrupted, one after the
+     * other. Each list is processed in resume mode with the algorithm and
+     * incremental setting recorded in its header, and deleted once it has
+     * been processed. Each directory is claimed with its
+     * {@link ResultsDirLock} for the whole time, so a directory that
+     * another run is writing to is left for later. A GUID left in
+     * several lists is assessed only once (see {@link SetGroup}).
+     * Failures are logged and do not stop the other lists.
+     *
+     * @return the number of lists processed
+     * @throws InterruptedException if processing is interrupted
+     */
+    public int resumePending() throws InterruptedException {
+        List<Path> pending = new ArrayList<>();
+        Path root = resolveOutputDir(null);
+        if (Files.exists(root.resolve(PENDING_FILE))) {
+            pending.add(root.resolve(PENDING_FILE));
+        }
+        if (Files.isDirectory(root)) {
+            try (Stream<Path> dirs = Files.list(root)) {
+                dirs.map(dir -> dir.resolve(PENDING_FILE)).filter(Files::exists).forEach(pending::add);
+            } catch (IOException | UncheckedIOException e) {
+                logSevere("Could not look for pending GUIDs in %s: %s", root, e.getMessage());
+            }
+        }
+
+        int processed = 0;
+        SetGroup group = new SetGroup();
+        for (Path file : pending) {
+            if (shuttingDown) {
+                break;
+            }
+            String subDir = root.equals(file.getParent()) ? null : file.getParent().getFileName().toString();
+            try (ResultsDirLock dirLock = ResultsDirLock.acquire(file.getParent())) {
+                String algorithm = readHeaderValue(file.toString(), "Algorithm");
+                RunBenchmarkAssessment run = new RunBenchmarkAssessment(this,
+                        algorithm != null ? algorithm : benchmarkAlgorithm);
+                run.resume = true;
+                run.incremental = Boolean.parseBoolean(readHeaderValue(file.toString(), "Incremental"));
+                logInfo("Resuming GUIDs left pending by shutdown in %s", file);
+                try (Pipeline pipeline = run.new Pipeline()) {
+                    run.processFile(file.toString(),
+                            subDir != null ? extractLangFromFilename(subDir + ".txt") : null,
+                            subDir, pipeline, group);
+                }
+                Files.deleteIfExists(file);
+                processed++;
+            } catch (IOException e) {
+                logSevere("Could not resume %s: %s", file, e.getMessage());
+            }
+        }
+        return processed;
+    }
+
     // -----------------------------------------------------------------------
     // Entry point
     // -----------------------------------------------------------------------
@@ -265,7 +708,7 @@ public class RunBenchmarkAssessment {
         // Boot Spring without a web server so application.properties
         // is loaded and @Value fields are injected correctly.
         ApplicationContext ctx = new SpringApplicationBuilder(
-                RunBenchmarkAssessment.class)
+                RunBenchmarkAssessment.class, AssessmentSettings.class)
                 .web(WebApplicationType.NONE)
                 .run(args);
 
@@ -285,6 +728,32 @@ public class RunBenchmarkAssessment {
         }
         logInfo("Using algorithm URI:  %s", client.benchmarkAlgorithm);
         logInfo("Using runner URI:     %s", client.benchmarkRunner);
+        client.resume = cmd.hasOption(RESUME_ARG);
+        client.incremental = cmd.hasOption(INCREMENTAL_ARG);
+        if (cmd.hasOption(TTL_ARG)) {
+            try {
+                client.settings.configureResultTtl(Double.parseDouble(cmd.getOptionValue(TTL_ARG)));
+                client.logResultTtl();
+            } catch (NumberFormatException e) {
+                logSevere("Invalid TTL: %s", e.getMessage());
+                return;
+            }
+        }
+        if (cmd.hasOption(RATE_ARG) || cmd.hasOption(BURST_ARG)) {
+            try {
+                client.settings.configureRateLimit(
+                        cmd.hasOption(RATE_ARG)
+                                ? Double.parseDouble(cmd.getOptionValue(RATE_ARG))
+                                : client.settings.runnerRate(),
+                        cmd.hasOption(BURST_ARG)
+                                ? Integer.parseInt(cmd.getOptionValue(BURST_ARG))
+                                : client.settings.runnerBurst());
+                client.applyRateLimit();
+            } catch (NumberFormatException e) {
+                logSevere("Invalid rate limit: %s", e.getMessage());
+                return;
+            }
+        }
 
         try {
             Files.createDirectories(Paths.get(OUTPUT_DIR));
@@ -305,12 +774,11 @@ public class RunBenchmarkAssessment {
                 if (cmd.hasOption(FILENAME_ARG)) {
                     client.guidsFilename = cmd.getOptionValue(FILENAME_ARG);
                 }
-                List<String> guids = client.readGuidsFromResource(client.guidsFilename);
-                if (guids.isEmpty()) {
+                int submitted = client.processFile(client.guidsFilename, null, null);
+                if (submitted == 0) {
                     logInfo(NOGUIDS);
                 } else {
-                    logInfo(FOUNDGUIDS, guids.size());
-                    client.processGuids(guids, null, null);
+                    logInfo(SUBMITTED, submitted, client.guidsFilename);
                     logInfo(PROCCOMP);
                 }
             }
@@ -330,29 +798,83 @@ public class RunBenchmarkAssessment {
     // -----------------------------------------------------------------------
 
     /**
-     * Iterates over every set in {@link #DEFAULT_SETS}, resolves the
-     * corresponding {@code guids_XX.txt} file, and processes it if
-     * found. Missing files are logged and skipped rather than causing
-     * a hard failure.
+     * Processes the {@code guids_XX.txt} file of every set in
+     * {@link #DEFAULT_SETS} at the same time. All sets feed one shared
+     * {@link Pipeline}, so together they stay within the runners'
+     * concurrency limits, and the pipeline serves them according to
+     * {@code benchmark.sets.fairness}: weighted round-robin, or smallest
+     * set first so that small sets finish early instead of queueing
+     * behind large ones. Missing files are logged and skipped rather
+     * than causing a hard failure.
      *
-     * @throws IOException          if a file operation fails
-     * @throws InterruptedException if processing is interrupted
+     * <p>
+     * A GUID listed by several sets is assessed once, by whichever set
+     * reaches it first, and its result is linked into the results
+     * directories of the other sets (see {@link SetGroup}).
+     * </p>
+     *
+     * @throws IOException          if a file operation fails; the other
+     *                              sets are finished first
+     * @throws InterruptedException if processing is interrupted; every
+     *                              set is cancelled
      */
     public void processAllSetFiles()
             throws IOException, InterruptedException {
 
-        logInfo("Processing GUID files for all sets...");
-        for (String lang : DEFAULT_SETS) {
-            String filename = "guids_" + lang + ".txt";
-            logInfo("--- Processing file: %s ---", filename);
-            try {
-                processSingleFile(filename);
-            } catch (FileNotFoundException fnfe) {
-                logSevere("Skipping %s — file not found: %s",
-                        filename, fnfe.getMessage());
+        logInfo("Processing GUID files for all sets (fairness: %s)...", settings.fairnessPolicy());
+        processSetFiles(Stream.of(DEFAULT_SETS).map(lang -> "guids_" + lang + ".txt").toList());
+        logInfo("Finished processing all set files.");
+    }
+
+    /**
+     * Processes several sets' GUID files at the same time on one shared
+     * {@link Pipeline}, as described for {@link #processAllSetFiles()}.
+     *
+     * @param filenames GUID files
+     * @throws IOException          if a file operation fails; the other
+     *                              sets are finished first
+     * @throws InterruptedException if processing is interrupted; every
+     *                              set is cancelled
+     */
+    void processSetFiles(List<String> filenames) throws IOException, InterruptedException {
+        SetGroup group = new SetGroup();
+        IOException failure = null;
+        try (Pipeline pipeline = new Pipeline();
+                ExecutorService sets = Executors.newVirtualThreadPerTaskExecutor()) {
+            Map<String, Future<?>> running = new LinkedHashMap<>();
+            for (String filename : filenames) {
+                running.put(filename, sets.submit(() -> {
+                    processSetFile(filename, pipeline, group);
+                    return null;
+                }));
+            }
+            for (Map.Entry<String, Future<?>> entry : running.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (InterruptedException e) {
+                    // Interrupts every set, which cancels its lane.
+                    sets.shutdownNow();
+                    throw e;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof FileNotFoundException fnfe) {
+                        logSevere("Skipping %s — file not found: %s",
+                                entry.getKey(), fnfe.getMessage());
+                    } else if (e.getCause() instanceof IOException ioe) {
+                        logSevere("Error processing %s: %s", entry.getKey(), ioe.getMessage());
+                        if (failure == null) {
+                            failure = ioe;
+                        }
+                    } else if (e.getCause() instanceof InterruptedException ie) {
+                        throw ie;
+                    } else {
+                        throw new IOException(e.getCause());
+                    }
+                }
             }
         }
-        logInfo("Finished processing all set files.");
+        if (failure != null) {
+            throw failure;
+        }
     }
 
     /**
@@ -360,7 +882,9 @@ public class RunBenchmarkAssessment {
      *
      * <p>
      * Each non-blank, non-comment line is treated as a full
-     * GetRecord URL as produced by {@link GetOaiPmhIdentifiers}.
+     * GetRecord URL as produced by {@link GetOaiPmhIdentifiers}. The
+     * file is streamed: the first GUIDs are dispatched while the rest
+     * of the file is still being read.
      * </p>
      *
      * @param filename name of the file to read (classpath resources
@@ -371,21 +895,134 @@ public class RunBenchmarkAssessment {
     public void processSingleFile(String filename)
             throws IOException, InterruptedException {
 
-        String previousFilename = guidsFilename;
-        guidsFilename = filename;
-        try {
-            List<String> guids = readGuidsFromResource(filename);
-            if (guids.isEmpty()) {
-                logInfo("No GUIDs found in %s. Skipping.", filename);
-                return;
+        try (Pipeline pipeline = new Pipeline()) {
+            processSetFile(filename, pipeline, null);
+        }
+    }
+
+    /**
+     * Processes one set's GUID file on a pipeline that may be shared
+     * with other sets, writing results to a subdirectory named after
+     * the file.
+     *
+     * @param filename name of the {@code guids_XX.txt} file
+     * @param pipeline pipeline to submit the GUIDs to
+     * @param group    sets processed together with this one (may be
+     *                 {@code null})
+     * @throws IOException          if a file operation fails
+     * @throws InterruptedException if processing is interrupted
+     */
+    private void processSetFile(String filename, Pipeline pipeline, SetGroup group)
+            throws IOException, InterruptedException {
+
+        logInfo("--- Processing file: %s ---", filename);
+        int submitted = processFile(filename,
+                extractLangFromFilename(filename), deriveSubdirectory(filename), pipeline, group);
+        if (submitted == 0) {
+            logInfo("No GUIDs found in %s. Skipping.", filename);
+            return;
+        }
+        logInfo(SUBMITTED, submitted, filename);
+        logInfo(PROCCOMP + " (" + filename + ")");
+    }
+
+    /**
+     * Processes a GUID file on a pipeline of its own.
+     *
+     * @param filename name of the file to read
+     * @param set      language / set name (may be {@code null})
+     * @param subDir   subdirectory inside {@value #OUTPUT_DIR} for
+     *                 results (may be {@code null})
+     * @return the number of GUIDs submitted
+     * @throws IOException          if a file operation fails
+     * @throws InterruptedException if processing is interrupted
+     */
+    private int processFile(String filename, String set, String subDir)
+            throws IOException, InterruptedException {
+
+        try (Pipeline pipeline = new Pipeline()) {
+            return processFile(filename, set, subDir, pipeline, null);
+        }
+    }
+
+    /**
+     * Streams a GUID file into its own lane of the given pipeline. The
+     * lane is named after the set (or the file when there is no set) and
+     * ordered by the GUID count declared in the file header.
+     *
+     * @param filename name of the file to read
+     * @param set      language / set name (may be {@code null})
+     * @param subDir   subdirectory inside {@value #OUTPUT_DIR} for
+     *                 results (may be {@code null})
+     * @param pipeline pipeline to submit the GUIDs to
+     * @param group    sets processed together with this one (may be
+     *                 {@code null})
+     * @return the number of GUIDs submitted
+     * @throws IOException          if a file operation fails
+     * @throws InterruptedException if processing is interrupted
+     */
+    private int processFile(String filename, String set, String subDir, Pipeline pipeline,
+            SetGroup group) throws IOException, InterruptedException {
+
+        long declared = readDeclaredCount(filename);
+        try (Stream<GuidEntry> entries = openEntries(filename);
+                Pipeline.SetLane lane = pipeline.openLane(set != null ? set : filename, declared)) {
+            return processGuids(entries, set, subDir, lane, group);
+        }
+    }
+
+    /**
+     * The sets of one {@link #processSetFiles(List)} run, so that a GUID
+     * listed by several of them is assessed only once.
+     *
+     * <p>
+     * Each set adds its {@link ResultIndex} as it starts. A set reaching
+     * a GUID that another set of the group has saved a result for since
+     * the group started links that result instead of sending the request
+     * again; a GUID two sets reach at the same time shares one request
+     * (see {@link #follow(GuidTask, GuidTask)}). Which set assesses a
+     * GUID is thus decided when the sets reach it, so a set that is
+     * aborted or cancelled leaves its GUIDs to the others. The indexes of
+     * sets that have finished are still consulted until the whole group
+     * has.
+     * </p>
+     */
+    static final class SetGroup {
+
+        private final Instant startedAt = Instant.now();
+        private final Map<Path, ResultIndex> indexes = new ConcurrentHashMap<>();
+
+        /**
+         * Adds a set's result index to the group.
+         *
+         * @param dir   the set's results directory
+         * @param index the set's open result index
+         */
+        void join(Path dir, ResultIndex index) {
+            indexes.put(dir, index);
+        }
+
+        /**
+         * Finds another set of the group that has saved a result for a
+         * GUID since the group started.
+         *
+         * @param dir       results directory of the asking set
+         * @param algorithm algorithm URI
+         * @param guid      normalised GetRecord URL
+         * @return the other set's results directory and save time, or
+         *         {@code null} if no other set has assessed the GUID
+         */
+        Map.Entry<Path, Instant> findResult(Path dir, String algorithm, String guid) {
+            for (Map.Entry<Path, ResultIndex> entry : indexes.entrySet()) {
+                if (entry.getKey().equals(dir)) {
+                    continue;
+                }
+                Instant savedAt = entry.getValue().savedAt(algorithm, guid);
+                if (savedAt != null && !savedAt.isBefore(startedAt)) {
+                    return Map.entry(entry.getKey(), savedAt);
+                }
             }
-            logInfo(FOUNDGUIDS + " in " + filename, guids.size());
-            String lang = extractLangFromFilename(filename);
-            String subDir = deriveSubdirectory(filename);
-            processGuids(guids, lang, subDir);
-            logInfo(PROCCOMP + " (" + filename + ")");
-        } finally {
-            guidsFilename = previousFilename;
+            return null;
         }
     }
 
@@ -401,7 +1038,32 @@ public class RunBenchmarkAssessment {
             throws IOException, InterruptedException {
 
         logInfo("Processing single GUID: %s", guid);
-        processOneGuid(guid, 0, null, null, benchmarkRunner);
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        try (Pipeline pipeline = new Pipeline();
+                Pipeline.SetLane lane = pipeline.openLane(guid, 1)) {
+            ACTIVE_SETS.put(lane, finished);
+            try {
+                if (shuttingDown) {
+                    throw new IOException(SHUTTING_DOWN);
+                }
+                GuidTask task = newTask(guid, 0, null, null);
+                lane.submit(task, e -> {
+                    // failures are rethrown from task.done below
+                });
+                task.done.get();
+            } finally {
+                ACTIVE_SETS.remove(lane);
+                finished.complete(null);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) {
+                throw ioe;
+            }
+            if (e.getCause() instanceof CancellationException ce) {
+                throw new IOException(ce.getMessage(), ce);
+            }
+            throw new IOException(e.getCause());
+        }
         logInfo(PROCCOMP);
     }
 
@@ -410,215 +1072,1898 @@ public class RunBenchmarkAssessment {
     // -----------------------------------------------------------------------
 
     /**
-     * Reads GUIDs from the file identified by {@link #guidsFilename}.
-     * The classpath (resources) is checked first, then the current
-     * working directory.
+     * Opens a GUID file as a lazily read stream of {@link GuidEntry
+     * entries}. The classpath (resources) is checked first, then the
+     * current working directory. Lines are trimmed, and blank lines and
+     * {@code #} comments are dropped as they are read, so the file is
+     * never held in memory as a whole.
+     *
+     * <p>
+     * The caller must close the stream. Read errors after opening
+     * surface as {@link UncheckedIOException}.
+     * </p>
      *
-     * @param filename the name of the file to read (ignored if using the
-     *                 default {@code guidsFilename} which is already set to the
-     *                 default)
-     * @return an immutable list of GUID / GetRecord URL strings
-     * @throws IOException if the file cannot be found or read
+     * @param filename name of the file to read
+     * @return a stream of GUID file entries
+     * @throws IOException if the file cannot be found or opened
      */
-    private List<String> readGuidsFromResource(String filename) throws IOException {
+    private Stream<GuidEntry> openEntries(String filename) throws IOException {
+        return openLines(filename)
+                .map(String::trim)
+                .filter(l -> !l.isBlank() && !l.startsWith("#"))
+                .map(GuidEntry::parse);
+    }
 
-        try (InputStream is = getClass()
-                .getClassLoader()
-                .getResourceAsStream(guidsFilename)) {
-
-            if (is != null) {
-                try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(
-                                is, StandardCharsets.UTF_8))) {
-                    return reader.lines()
-                            .map(String::trim)
-                            .filter(l -> !l.isBlank()
-                                    && !l.startsWith("#"))
-                            .toList();
+    /**
+     * One line of a GUID file as written by {@link GetOaiPmhIdentifiers}:
+     * a GetRecord URL, optionally followed by the record's header
+     * datestamp and a {@code deleted} marker, separated by tabs. Files
+     * with bare URLs are read as entries without a datestamp.
+     *
+     * @param guid      GUID or GetRecord URL
+     * @param changedAt instant from which the record counts as changed,
+     *                  or {@code null} if unknown
+     * @param deleted   {@code true} if the repository reports the record
+     *                  as deleted
+     */
+    record GuidEntry(String guid, Instant changedAt, boolean deleted) {
+
+        /**
+         * Parses a trimmed, non-comment line. A datestamp with day
+         * granularity ({@code YYYY-MM-DD}) is taken as the end of that
+         * day, so a record changed later on the day of its last
+         * assessment is not missed. An unreadable datestamp is ignored.
+         *
+         * @param line the line to parse
+         * @return the entry
+         */
+        static GuidEntry parse(String line) {
+            String[] columns = line.split("\t", -1);
+            String guid = columns[0].trim();
+            Instant changedAt = null;
+            if (columns.length > 1 && !columns[1].isBlank()) {
+                String datestamp = columns[1].trim();
+                try {
+                    changedAt = datestamp.length() == 10
+                            ? LocalDate.parse(datestamp).plusDays(1)
+                                    .atStartOfDay(ZoneOffset.UTC).toInstant()
+                            : Instant.parse(datestamp);
+                } catch (DateTimeParseException e) {
+                    logSevere("Ignoring unreadable datestamp '%s' for %s", datestamp, guid);
                 }
             }
+            boolean deleted = columns.length > 2 && "deleted".equalsIgnoreCase(columns[2].trim());
+            return new GuidEntry(guid, changedAt, deleted);
         }
+    }
 
-        Path guidsPath = Paths.get(guidsFilename);
-        if (Files.exists(guidsPath)) {
-            return Files.readAllLines(
-                    guidsPath, StandardCharsets.UTF_8)
-                    .stream()
-                    .map(String::trim)
-                    .filter(l -> !l.isBlank() && !l.startsWith("#"))
-                    .toList();
+    /**
+     * Reads the {@code # Count:} value from the comment header that
+     * {@link GetOaiPmhIdentifiers} writes at the top of a GUID file.
+     * Only the leading comment lines are read.
+     *
+     * @param filename name of the file to read
+     * @return the declared number of GUIDs, or {@link Long#MAX_VALUE}
+     *         if the header has none
+     * @throws IOException if the file cannot be found or opened
+     */
+    private long readDeclaredCount(String filename) throws IOException {
+        String count = readHeaderValue(filename, "Count");
+        if (count != null) {
+            try {
+                return Long.parseLong(count);
+            } catch (NumberFormatException e) {
+                // treated as undeclared
+            }
         }
-
-        throw new FileNotFoundException(
-                "Could not find " + guidsFilename
-                        + " in resources or current directory");
+        return Long.MAX_VALUE;
     }
 
-    // -----------------------------------------------------------------------
-    // GUID processing
-    // -----------------------------------------------------------------------
-
     /**
-     * Submits all GUIDs to the Champion API using a fixed thread pool
-     * of five workers and awaits completion for up to ten minutes.
+     * Reads a {@code # Key: value} line from the comment header at the
+     * top of a GUID file. Only the leading comment lines are read.
      *
-     * @param guids  list of GetRecord URLs to submit
-     * @param set    language / set name used for error-file naming
-     *               (may be {@code null})
-     * @param subDir subdirectory inside {@value #OUTPUT_DIR} for
-     *               results (may be {@code null})
-     * @throws InterruptedException if the executor is interrupted
-     *                              while waiting
+     * @param filename name of the file to read
+     * @param key      header key, e.g. {@code "Count"}
+     * @return the trimmed value, or {@code null} if the header has none
+     * @throws IOException if the file cannot be found or opened
      */
-    private void processGuids(
-            List<String> guids,
-            String set,
-            String subDir) throws InterruptedException {
-
-        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-
-            for (int i = 0; i < guids.size(); i++) {
-                final String rawGuid = guids.get(i);
-                final int index = i;
-
-                if (rawGuid == null || rawGuid.isBlank()) {
-                    logInfo("Skipping blank GUID at index %d", index);
-                    continue;
+    private String readHeaderValue(String filename, String key) throws IOException {
+        String prefix = "# " + key + ":";
+        try (Stream<String> lines = openLines(filename)) {
+            Iterator<String> it = lines.iterator();
+            while (it.hasNext()) {
+                String line = it.next().trim();
+                if (!line.startsWith("#")) {
+                    break;
                 }
+                if (line.startsWith(prefix)) {
+                    return line.substring(prefix.length()).trim();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return null;
+    }
+
+    /**
+     * Opens a file from the classpath or, failing that, the current
+     * working directory as a lazily read stream of raw lines.
+     *
+     * @param filename name of the file to read
+     * @return a stream of lines, to be closed by the caller
+     * @throws IOException if the file cannot be found or opened
+     */
+    private Stream<String> openLines(String filename) throws IOException {
+        InputStream is = getClass()
+                .getClassLoader()
+                .getResourceAsStream(filename);
+
+        if (is != null) {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(is, StandardCharsets.UTF_8));
+            return reader.lines().onClose(() -> {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        Path guidsPath = Paths.get(filename);
+        if (!Files.exists(guidsPath)) {
+            throw new FileNotFoundException(
+                    "Could not find " + filename
+                            + " in resources or current directory");
+        }
+        return Files.lines(guidsPath, StandardCharsets.UTF_8);
+    }
+
+    // -----------------------------------------------------------------------
+    // GUID processing
+    // -----------------------------------------------------------------------
+
+    /**
+     * Submits all GUIDs to the Champion API through a bounded lane of a
+     * {@link Pipeline} and returns once every GUID, including deferred
+     * retries, has finished. GUIDs are pulled from the stream only as
+     * the lane has room for them, so the first requests start while
+     * the rest of the input is still unread and memory use does not
+     * depend on the number of GUIDs.
+     *
+     * <p>
+     * The results directory is claimed with a {@link ResultsDirLock} for
+     * the whole set; if another run holds it, an {@link IOException} is
+     * thrown before anything is written. Every finished GUID is appended
+     * to the {@link ProgressJournal} in the results directory. In
+     * {@link #setResume(boolean) resume mode}
+     * GUIDs the journal records as completed are skipped, and in
+     * {@link #setIncremental(boolean) incremental mode} so are records
+     * unchanged since their result file was written. Records marked as
+     * deleted are always skipped, and so are GUIDs whose result was saved
+     * with the same algorithm less than the
+     * {@link AssessmentSettings#configureResultTtl(double) result TTL} ago, according to
+     * the directory's {@link ResultIndex}. Skipped GUIDs do not count as
+     * submitted.
+     * </p>
+     *
+     * <p>
+     * A GUID that another set of the {@code group} has assessed since
+     * the group started is not assessed again: that set's result is
+     * linked into the results directory and recorded in the index and
+     * journal (see {@link SetGroup}).
+     * </p>
+     *
+     * <p>
+     * The first {@link AssessmentSettings#configureCanary(int, double, int) canary} GUIDs,
+     * at most the lane's declared {@link Pipeline.SetLane#size() size},
+     * are assessed on their own before the rest are dispatched. If too
+     * many of them fail, or later too many of the most recent GUIDs, the
+     * set is aborted: its lane is {@link Pipeline.SetLane#cancel()
+     * cancelled} and an {@link IOException} is thrown. A GUID counts as
+     * failed if it ends with an error or its saved response is not a 2xx.
+     * If the calling thread is interrupted, the lane is cancelled the same
+     * way. Either way the set's completed, failed and cancelled GUIDs are
+     * logged.
+     * </p>
+     *
+     * @param entries stream of GUID file entries to submit
+     * @param set    language / set name used for error-file naming
+     *               (may be {@code null})
+     * @param subDir subdirectory inside {@value #OUTPUT_DIR} for
+     *               results (may be {@code null})
+     * @param lane   pipeline lane of this set
+     * @param group  sets processed together with this one (may be
+     *               {@code null})
+     * @return the number of GUIDs submitted
+     * @throws IOException          if reading the GUID stream fails or
+     *                              the set is aborted; GUIDs already
+     *                              submitted are finished first
+     * @throws InterruptedException if interrupted while submitting or
+     *                              waiting; the set is cancelled
+     */
+    int processGuids(
+            Stream<GuidEntry> entries,
+            String set,
+            String subDir,
+            Pipeline.SetLane lane,
+            SetGroup group) throws IOException, InterruptedException {
+
+        int index = 0;
+        int skipped = 0;
+        int unchanged = 0;
+        int deleted = 0;
+        int fresh = 0;
+        int assessedElsewhere = 0;
+        String name = set != null ? set : subDir;
+        // A canary larger than the set would never fill, and so never trip.
+        ErrorRateMonitor health = new ErrorRateMonitor((int) Math.min(settings.canarySize(), lane.size()),
+                settings.abortErrorRate(), settings.errorWindow());
+        int canaryLeft = health.canarySize();
+        Duration ttl = settings.resultTtl();
+        Instant freshAfter = Instant.now().minus(ttl);
+        Queue<GuidEntry> unprocessed = new ConcurrentLinkedQueue<>();
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        ACTIVE_SETS.put(lane, finished);
+        try (ResultsDirLock dirLock = ResultsDirLock.acquire(resolveOutputDir(subDir));
+                ProgressJournal journal = ProgressJournal.open(resolveOutputDir(subDir), resume);
+                ResultIndex results = ResultIndex.open(resolveOutputDir(subDir))) {
+            if (shuttingDown) {
+                throw new IOException(SHUTTING_DOWN);
+            }
+            if (group != null) {
+                group.join(resolveOutputDir(subDir), results);
+            }
+            if (resume) {
+                logInfo("Resuming: %d GUID(s) already completed in %s",
+                        journal.completedCount(), resolveOutputDir(subDir));
+            }
+            Iterator<GuidEntry> it = entries.iterator();
+            try {
+                while (it.hasNext() && !lane.isCancelled() && !shuttingDown) {
+                    GuidEntry entry = it.next();
+                    String rawGuid = entry.guid();
+                    if (rawGuid == null || rawGuid.isBlank()) {
+                        logInfo("Skipping blank GUID at index %d", index++);
+                        continue;
+                    }
+                    if (entry.deleted()) {
+                        deleted++;
+                        continue;
+                    }
+                    String guid = normaliseGuid(rawGuid);
+                    if (journal.isCompleted(guid)) {
+                        skipped++;
+                        continue;
+                    }
+                    if (!ttl.isZero() && isFresh(results.savedAt(benchmarkAlgorithm, guid), freshAfter, guid, subDir)) {
+                        fresh++;
+                        continue;
+                    }
+                    if (incremental && isUpToDate(guid, entry.changedAt(), subDir)) {
+                        unchanged++;
+                        continue;
+                    }
+                    if (group != null && linkFromGroup(group, guid, subDir, journal)) {
+                        assessedElsewhere++;
+                        continue;
+                    }
+                    GuidTask task = newTask(guid, index++, set, subDir);
+                    lane.submit(task, e -> {
+                        if (e instanceof CancellationException) {
+                            unprocessed.add(entry);
+                            return;
+                        }
+                        boolean ok = e == null && task.statusCode / 100 == 2;
+                        journal.record(task.guid, ok);
+                        if (ok) {
+                            results.record(benchmarkAlgorithm, task.guid);
+                        }
+                        if (e != null) {
+                            logSevere(PROCERROR, task.guid, e.getMessage());
+                        }
+                        if (health.record(e != null || task.statusCode / 100 != 2)) {
+                            lane.cancel();
+                        }
+                    });
+                    if (--canaryLeft == 0) {
+                        logInfo("Waiting for the %d canary GUID(s) of %s...",
+                                health.canarySize(), name);
+                        lane.awaitCompletion();
+                        if (!health.isTripped()) {
+                            logInfo("Canary passed: %d of %d GUID(s) failed",
+                                    health.canaryFailures(), health.canarySize());
+                        }
+                    }
+                }
+            } catch (UncheckedIOException e) {
+                logSevere("Error reading GUIDs after %d line(s): %s", index, e.getMessage());
+                lane.awaitCompletion();
+                logOutcomes(name, lane);
+                throw e.getCause();
+            } catch (InterruptedException e) {
+                lane.cancel();
+                logOutcomes(name, lane);
+                throw e;
+            }
+
+            if (skipped > 0) {
+                logInfo("Skipped %d GUID(s) completed by a previous run", skipped);
+            }
+            if (assessedElsewhere > 0) {
+                logInfo("Linked %d GUID(s) assessed by another set", assessedElsewhere);
+            }
+            if (fresh > 0) {
+                logInfo("Skipped %d GUID(s) assessed within the last %.1f day(s)",
+                        fresh, ttl.toSeconds() / 86_400.0);
+            }
+            if (unchanged > 0) {
+                logInfo("Skipped %d record(s) unchanged since their last assessment", unchanged);
+            }
+            if (deleted > 0) {
+                logInfo("Skipped %d record(s) marked as deleted", deleted);
+            }
+            if (index > 0) {
+                logInfo(TASKWAIT);
+            }
+            try {
+                lane.awaitCompletion();
+            } catch (InterruptedException e) {
+                lane.cancel();
+                throw e;
+            } finally {
+                logOutcomes(name, lane);
+            }
+            if (shuttingDown) {
+                Path pending = savePending(subDir, unprocessed, it);
+                throw new IOException("Interrupted by shutdown; unprocessed GUIDs saved to " + pending);
+            }
+            if (health.isTripped()) {
+                String reason = health.isCanaryFailed()
+                        ? String.format("%d of the first %d GUID(s) failed",
+                                health.canaryFailures(), health.canarySize())
+                        : String.format("%.0f%% of the last %d GUID(s) failed",
+                                health.windowErrorRate() * 100, settings.errorWindow());
+                logSevere("Aborted %s after %d GUID(s): %s; check benchmark.algorithm"
+                        + " and benchmark.runner", name, index, reason);
+                throw new IOException("Aborted: " + reason);
+            }
+            if (index > 0) {
+                logInfo(TASKSUCCESS);
+            }
+        } finally {
+            ACTIVE_SETS.remove(lane);
+            finished.complete(null);
+        }
+        return index;
+    }
+
+    /**
+     * Writes the GUIDs a shutdown left unprocessed to {@value #PENDING_FILE}
+     * in a set's results directory, in GUID file format with the
+     * algorithm and incremental setting in the header, for
+     * {@link #resumePending()}. These are the GUIDs that were cancelled
+     * followed by those not yet read; records marked as deleted are left
+     * out.
+     *
+     * @param subDir    subdirectory inside {@value #OUTPUT_DIR} (may be
+     *                  {@code null})
+     * @param cancelled entries of the cancelled GUIDs
+     * @param rest      the set's entries not yet read
+     * @return the file written
+     * @throws IOException if the file cannot be written
+     */
+    private Path savePending(String subDir, Queue<GuidEntry> cancelled, Iterator<GuidEntry> rest)
+            throws IOException {
+        Path dir = resolveOutputDir(subDir);
+        Files.createDirectories(dir);
+        Path pending = dir.resolve(PENDING_FILE);
+        Path tmp = newTempFile(dir, "pending");
+        int count = 0;
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                out.write("# GUIDs left unprocessed by shutdown\n");
+                out.write("# Algorithm: " + benchmarkAlgorithm + "\n");
+                out.write("# Incremental: " + incremental + "\n");
+                out.write("# Written: " + Instant.now() + "\n");
+                for (GuidEntry entry : cancelled) {
+                    writePendingEntry(out, entry);
+                    count++;
+                }
+                while (rest.hasNext()) {
+                    GuidEntry entry = rest.next();
+                    if (entry.deleted() || entry.guid() == null || entry.guid().isBlank()) {
+                        continue;
+                    }
+                    writePendingEntry(out, entry);
+                    count++;
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            moveIntoPlace(tmp, pending);
+        } finally {
+            deleteQuietly(tmp);
+        }
+        logInfo("Saved %d unprocessed GUID(s) to %s", count, pending);
+        return pending;
+    }
+
+    /**
+     * Writes one entry as a GUID file line.
+     *
+     * @param out   writer for the file
+     * @param entry the entry to write
+     * @throws IOException if writing fails
+     */
+    private static void writePendingEntry(BufferedWriter out, GuidEntry entry) throws IOException {
+        out.write(entry.guid());
+        if (entry.changedAt() != null) {
+            out.write("\t" + entry.changedAt());
+        }
+        out.write("\n");
+    }
+
+    /**
+     * Logs how the GUIDs admitted to a set's lane ended.
+     *
+     * @param name set name for the log
+     * @param lane the set's lane
+     */
+    private static void logOutcomes(String name, Pipeline.SetLane lane) {
+        if (lane.completed() + lane.failed() + lane.cancelled() > 0) {
+            logInfo("%s: %d GUID(s) completed, %d failed, %d cancelled",
+                    name, lane.completed(), lane.failed(), lane.cancelled());
+        }
+    }
+
+    /**
+     * Links the result of a GUID that another set of the group has
+     * assessed into a set's results directory with
+     * {@link #linkResult(Path, Path)}. The copy is recorded in the set's
+     * {@link ResultIndex} with the save time the other set's index holds
+     * for it, so it counts as fresh there too, and as completed in the
+     * set's journal. Failures are logged.
+     *
+     * @param group   sets processed together with this one
+     * @param guid    normalised GetRecord URL
+     * @param subDir  subdirectory inside {@value #OUTPUT_DIR} of the set
+     *                (may be {@code null})
+     * @param journal progress journal of the set
+     * @return {@code true} if the result was linked; {@code false} if no
+     *         other set has assessed the GUID or linking failed, so the
+     *         set should assess it itself
+     */
+    private boolean linkFromGroup(SetGroup group, String guid, String subDir, ProgressJournal journal) {
+        Path dir = resolveOutputDir(subDir);
+        Map.Entry<Path, Instant> found = group.findResult(dir, benchmarkAlgorithm, guid);
+        if (found == null) {
+            return false;
+        }
+        String filename = sanitiseIdentifier(guid) + ".json";
+        try {
+            linkResult(found.getKey().resolve(filename), dir.resolve(filename));
+        } catch (IOException e) {
+            logSevere("Could not link result for %s from %s: %s", guid, found.getKey(), e.getMessage());
+            return false;
+        }
+        ResultIndex.recordIn(dir, benchmarkAlgorithm, guid, found.getValue());
+        journal.record(guid, true);
+        return true;
+    }
+
+    /**
+     * Makes a result file available under a second path: as a hard link
+     * where the file system supports it, otherwise as a copy. The new
+     * file appears atomically and replaces any existing one.
+     *
+     * @param source existing result file
+     * @param target path to link it to
+     * @throws IOException if neither linking nor copying succeeds
+     */
+    private static void linkResult(Path source, Path target) throws IOException {
+        Path outputDir = target.getParent();
+        Files.createDirectories(outputDir);
+        Path link = outputDir.resolve("." + target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try {
+                Files.createLink(link, source);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(source, link);
+            }
+            moveIntoPlace(link, target);
+        } catch (IOException e) {
+            deleteQuietly(link);
+            throw e;
+        }
+    }
+
+    /**
+     * Checks whether a GUID's result is recent enough to be reused: its
+     * index entry is within the TTL and the result file is still there.
+     *
+     * @param savedAt    save time from the {@link ResultIndex}, or
+     *                   {@code null}
+     * @param freshAfter oldest save time that counts as fresh
+     * @param guid       normalised GetRecord URL
+     * @param subDir     results subdirectory (may be {@code null})
+     * @return {@code true} if the GUID can be skipped
+     */
+    private static boolean isFresh(Instant savedAt, Instant freshAfter, String guid, String subDir) {
+        return savedAt != null && savedAt.isAfter(freshAfter)
+                && Files.exists(resolveOutputDir(subDir).resolve(sanitiseIdentifier(guid) + ".json"));
+    }
+
+    /**
+     * Checks whether a record's result file was written after the record
+     * last changed.
+     *
+     * @param guid      normalised GetRecord URL
+     * @param changedAt instant from which the record counts as changed,
+     *                  or {@code null} if unknown
+     * @param subDir    subdirectory inside {@value #OUTPUT_DIR} for
+     *                  results (may be {@code null})
+     * @return {@code true} if a result file exists and is not older than
+     *         {@code changedAt}; {@code false} if either is missing
+     */
+    private static boolean isUpToDate(String guid, Instant changedAt, String subDir) {
+        if (changedAt == null) {
+            return false;
+        }
+        Path result = resolveOutputDir(subDir).resolve(sanitiseIdentifier(guid) + ".json");
+        try {
+            return !Files.getLastModifiedTime(result).toInstant().isBefore(changedAt);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Producer/consumer pipeline shared by the sets of one run.
+     *
+     * <p>
+     * Tasks are taken from a {@link FairQueue}: each set feeds its own
+     * {@link SetLane} and the queue's policy decides which lane is served
+     * next, while each runner's concurrency limit bounds the requests in
+     * flight to it across all lanes. In {@link ExecutionMode#VIRTUAL_THREADS}
+     * mode a fixed set of worker threads, one per slot of the runners'
+     * combined concurrency ceiling, runs blocking attempts. In {@link ExecutionMode#ASYNC} mode
+     * a single dispatcher thread starts non-blocking attempts as slots
+     * become free.
+     * </p>
+     *
+     * <p>
+     * Each lane is the scope of its set's tasks: cancelling it ends them
+     * all, and closing the pipeline cancels every lane still open.
+     * </p>
+     */
+    final class Pipeline implements AutoCloseable {
+
+        private final FairQueue<GuidTask> queue = new FairQueue<>(settings.fairnessPolicy());
+        private final Set<SetLane> lanes = ConcurrentHashMap.newKeySet();
+        private final ExecutorService workers;
+
+        Pipeline() {
+            this.workers = Executors.newVirtualThreadPerTaskExecutor();
+            if (settings.executionMode() == ExecutionMode.ASYNC) {
+                workers.execute(this::dispatch);
+                return;
+            }
+            int workerCount = concurrencyCeiling();
+            for (int i = 0; i < workerCount; i++) {
+                workers.execute(this::work);
+            }
+        }
+
+        /**
+         * Adds a lane for one set.
+         *
+         * @param name set name; also selects the round-robin weight from
+         *             {@code benchmark.sets.weights}
+         * @param size number of GUIDs in the set, for smallest-first
+         *             ordering
+         * @return the new lane, to be closed when the set is done
+         */
+        SetLane openLane(String name, long size) {
+            SetLane lane = new SetLane(queue.addLane(settings.setWeights().getOrDefault(name, 1), size), size);
+            lanes.add(lane);
+            return lane;
+        }
+
+        /**
+         * Puts an admitted task back on its lane after a delay.
+         *
+         * @param task    the GUID task
+         * @param delayMs backoff in milliseconds
+         */
+        void retryLater(GuidTask task, long delayMs) {
+            RETRY_SCHEDULER.schedule(() -> requeue(task), delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Puts a task back on its lane straight away, without counting
+         * an attempt, to wait for the circuit to close.
+         *
+         * @param task the GUID task
+         */
+        void requeue(GuidTask task) {
+            if (!task.done.isDone()) {
+                queue.put(task.lane.lane, task);
+            }
+        }
+
+        private void work() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    GuidTask task = queue.take();
+                    if (!task.done.isDone() && !dropForShutdown(task)) {
+                        runAttempt(task, this);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void dispatch() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    GuidTask task = queue.take();
+                    if (!task.done.isDone() && !dropForShutdown(task)) {
+                        startAttemptAsync(task, this);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Once shutdown has begun, ends a task taken from the queue with
+         * a {@link CancellationException} instead of sending it; only
+         * the requests already in flight get the grace period.
+         *
+         * @param task the GUID task taken from the queue
+         * @return {@code true} if the task was dropped
+         */
+        private static boolean dropForShutdown(GuidTask task) {
+            if (!shuttingDown) {
+                return false;
+            }
+            task.done.completeExceptionally(
+                    new CancellationException("Shutting down before GUID was processed"));
+            return true;
+        }
+
+        /**
+         * Cancels the lanes still open and stops the workers. Tasks still
+         * queued are failed so that callers waiting on them are released.
+         */
+        @Override
+        public void close() {
+            lanes.forEach(SetLane::cancel);
+            workers.shutdownNow();
+            workers.close();
+            fail(queue.drain());
+        }
+
+        private void fail(List<GuidTask> tasks) {
+            for (GuidTask task : tasks) {
+                task.done.completeExceptionally(
+                        new IOException("Run ended before GUID was processed", task.lastException));
+            }
+        }
+
+        /**
+         * Bounded entry point of one set into the pipeline, and the scope
+         * of the set's tasks.
+         *
+         * <p>
+         * At most {@code capacity} tasks of the set are admitted at a
+         * time, counting queued, in-flight and backoff-waiting tasks;
+         * {@link #submit} blocks when that many are outstanding. The set
+         * is complete when all admission permits are free again. The lane
+         * counts how its tasks end, and {@link #cancel()} ends those still
+         * outstanding at once.
+         * </p>
+         */
+        final class SetLane implements AutoCloseable {
+
+            private final FairQueue.Lane<GuidTask> lane;
+            private final int capacity;
+            private final Semaphore admission;
+            private final Set<GuidTask> admitted = ConcurrentHashMap.newKeySet();
+            private final AtomicInteger completedCount = new AtomicInteger();
+            private final AtomicInteger failedCount = new AtomicInteger();
+            private final AtomicInteger cancelledCount = new AtomicInteger();
+            private volatile boolean cancelled;
+            private final long size;
+
+            private SetLane(FairQueue.Lane<GuidTask> lane, long size) {
+                this.lane = lane;
+                this.size = size;
+                this.capacity = Math.max(settings.queueCapacity(), concurrencyCeiling());
+                this.admission = new Semaphore(capacity);
+            }
+
+            /**
+             * Admits a task, blocking while the lane is full. If a task for
+             * the same algorithm and GUID is already in flight, from this
+             * or any other run, the task is not queued but follows that
+             * one (see {@link #follow(GuidTask, GuidTask)}).
+             *
+             * @param task     the GUID task
+             * @param onFinish called with the failure, or {@code null}, once
+             *                 the task has finished and before its permit is
+             *                 returned, so it has run by the time
+             *                 {@link #awaitCompletion()} returns
+             * @throws InterruptedException if interrupted while waiting
+             */
+            void submit(GuidTask task, Consumer<Throwable> onFinish) throws InterruptedException {
+                admission.acquire();
+                task.lane = this;
+                admitted.add(task);
+                task.finished = task.done.whenComplete((v, e) -> {
+                    admitted.remove(task);
+                    if (e == null) {
+                        completedCount.incrementAndGet();
+                    } else if (e instanceof CancellationException) {
+                        cancelledCount.incrementAndGet();
+                    } else {
+                        failedCount.incrementAndGet();
+                    }
+                    try {
+                        onFinish.accept(e);
+                    } finally {
+                        admission.release();
+                    }
+                });
+                if (cancelled) {
+                    // Admitted while cancel() was releasing the lane.
+                    task.done.completeExceptionally(
+                            new CancellationException("Set cancelled before GUID was processed"));
+                    return;
+                }
+                dispatch(task);
+            }
+
+            /**
+             * Queues an admitted task, or lets it follow the task already
+             * in flight for the same algorithm and GUID. The task stays
+             * registered as in flight until its set has recorded the
+             * outcome, so a task for the same GUID arriving in between
+             * follows it instead of sending the request again.
+             *
+             * @param task task admitted to this lane
+             */
+            void dispatch(GuidTask task) {
+                GuidTask leader = IN_FLIGHT.putIfAbsent(task.flightKey, task);
+                if (leader != null) {
+                    follow(task, leader);
+                    return;
+                }
+                task.finished.whenComplete((v, e) -> IN_FLIGHT.remove(task.flightKey, task));
+                queue.put(lane, task);
+            }
+
+            /**
+             * Blocks until every task admitted to this lane has finished.
+             *
+             * @throws InterruptedException if interrupted while waiting
+             */
+            void awaitCompletion() throws InterruptedException {
+                admission.acquire(capacity);
+                admission.release(capacity);
+            }
+
+            /**
+             * Ends every task of the lane that has not finished with a
+             * {@link CancellationException}, without error files. Queued
+             * and backoff-waiting tasks are skipped when they come up, and
+             * the HTTP requests of tasks in flight are cancelled. Tasks
+             * following a request of another lane stop waiting for it.
+             * Nothing more should be submitted afterwards.
+             */
+            void cancel() {
+                cancelled = true;
+                for (GuidTask task : admitted) {
+                    task.done.completeExceptionally(
+                            new CancellationException("Set cancelled before GUID was processed"));
+                    CompletableFuture<HttpResponse<Path>> exchange = task.exchange;
+                    if (exchange != null) {
+                        exchange.cancel(true);
+                    }
+                }
+            }
+
+            /**
+             * @return number of GUIDs the set declares, or
+             *         {@link Long#MAX_VALUE} if unknown
+             */
+            long size() {
+                return size;
+            }
+
+            /**
+             * @return {@code true} once {@link #cancel()} has been called
+             */
+            boolean isCancelled() {
+                return cancelled;
+            }
+
+            /**
+             * @return tasks that finished successfully
+             */
+            int completed() {
+                return completedCount.get();
+            }
+
+            /**
+             * @return tasks that finished with an error
+             */
+            int failed() {
+                return failedCount.get();
+            }
+
+            /**
+             * @return tasks ended by {@link #cancel()}
+             */
+            int cancelled() {
+                return cancelledCount.get();
+            }
+
+            /**
+             * Removes the lane from the pipeline, cancelling any of its
+             * tasks that have not finished.
+             */
+            @Override
+            public void close() {
+                lanes.remove(this);
+                cancel();
+                queue.removeLane(lane);
+            }
+        }
+    }
+
+    /**
+     * Finishes a task together with the task already in flight for the
+     * same algorithm and GUID. The follower holds no worker or
+     * concurrency slot while it waits; once the leader has saved its
+     * result, the result is linked into the follower's results
+     * directory and the follower completes with it. If the leader fails,
+     * so does the follower. If the leader is cancelled, e.g. because its
+     * own set was aborted, the follower is dispatched again on its own
+     * lane, where it either takes the leader's place or follows the task
+     * that did. A follower that has finished in the meantime, because
+     * its own lane was cancelled, is left alone.
+     *
+     * @param follower task that was not queued
+     * @param leader   task in flight for the same key
+     */
+    private static void follow(GuidTask follower, GuidTask leader) {
+        logInfo("GUID %d is already being assessed; sharing that request", follower.index + 1);
+        leader.done.whenComplete((v, e) -> {
+            if (follower.done.isDone()) {
+                return;
+            }
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause instanceof CancellationException) {
+                logInfo("Shared request for GUID %d was cancelled; resubmitting it",
+                        follower.index + 1);
+                IN_FLIGHT.remove(leader.flightKey, leader);
+                follower.lane.dispatch(follower);
+                return;
+            }
+            if (e != null) {
+                follower.done.completeExceptionally(e);
+                return;
+            }
+            String filename = sanitiseIdentifier(follower.guid) + ".json";
+            Path source = resolveOutputDir(leader.subDir).resolve(filename);
+            Path target = resolveOutputDir(follower.subDir).resolve(filename);
+            try {
+                if (!source.toAbsolutePath().equals(target.toAbsolutePath())) {
+                    linkResult(source, target);
+                }
+                follower.statusCode = leader.statusCode;
+                follower.done.complete(null);
+            } catch (IOException ioe) {
+                follower.done.completeExceptionally(ioe);
+            }
+        });
+    }
+
+    private static final int MAX_RETRIES = 3;
+    private static final long INITIAL_BACKOFF_MS = 2_000;
+
+    /**
+     * How Champion requests are executed.
+     */
+    enum ExecutionMode {
+        /**
+         * One virtual thread per concurrency slot, each blocking until
+         * its request's response has been handled.
+         */
+        VIRTUAL_THREADS,
+        /**
+         * {@link HttpClient#sendAsync} with response handling, retries
+         * and persistence as {@link CompletableFuture} stages; requests in
+         * flight hold no thread.
+         */
+        ASYNC;
+
+        /**
+         * Parses a mode name such as {@code "virtual-threads"} or
+         * {@code "async"} (case-insensitive, {@code -} or {@code _}).
+         *
+         * @param name mode name
+         * @return the mode
+         * @throws IllegalArgumentException if the name is not recognised
+         */
+        static ExecutionMode parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * Outcome of a single HTTP attempt for a GUID.
+     */
+    private enum AttemptOutcome {
+        /** The response was saved; the GUID is finished. */
+        DONE,
+        /** A transient failure occurred; the GUID may be retried. */
+        RETRY,
+        /** The request failed for a non-transient reason. */
+        FAILED,
+        /**
+         * The task's lane was cancelled, or shutdown began before the
+         * request was sent; the GUID is dropped.
+         */
+        CANCELLED
+    }
+
+    /**
+     * State carried by one GUID across its attempts. The payload is
+     * built once; each attempt leases a runner from the pool and sends
+     * the payload to it.
+     */
+    private static final class GuidTask {
+        final String guid;
+        final int index;
+        final String set;
+        final String subDir;
+        final String flightKey;
+        final String payload;
+        final RunnerPool pool;
+        RunnerPool.Lease lease;
+        AdaptiveConcurrencyLimiter slot;
+        HttpRequest request;
+        volatile CompletableFuture<HttpResponse<Path>> exchange;
+        Duration timeout;
+        Path bodyFile;
+        Instant sentAt;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> finished;
+        Pipeline.SetLane lane;
+        boolean probe;
+        int attempt;
+        int statusCode;
+        long retryAfterMs;
+        Exception lastException;
+        Instant heldSince;
+        boolean holdExpired;
+
+        GuidTask(String guid, int index, String set, String subDir, String flightKey,
+                String payload, RunnerPool pool) {
+            this.guid = guid;
+            this.index = index;
+            this.set = set;
+            this.subDir = subDir;
+            this.flightKey = flightKey;
+            this.payload = payload;
+            this.pool = pool;
+        }
+    }
+
+    /**
+     * Builds the Champion payload for a GUID and wraps it in a
+     * {@link GuidTask} bound to this instance's runner pool.
+     *
+     * @param guid   full GetRecord URL to submit as the {@code "guid"}
+     *               payload field
+     * @param index  zero-based position in the batch (for log messages)
+     * @param set    language / set name for error-file naming
+     *               (may be {@code null})
+     * @param subDir subdirectory inside {@value #OUTPUT_DIR} for
+     *               results (may be {@code null})
+     * @return the new task
+     */
+    private GuidTask newTask(String guid, int index, String set, String subDir) {
+        ObjectNode payload = mapper.createObjectNode();
+        payload.put("calculation_uri", benchmarkAlgorithm);
+        payload.put("guid", guid);
+        return new GuidTask(guid, index, set, subDir, benchmarkAlgorithm + '\t' + guid,
+                payload.toString(), runnerPool());
+    }
+
+    /**
+     * @return the runner pool for this instance's {@code benchmark.runner}
+     *         value, created on first use
+     */
+    private RunnerPool runnerPool() {
+        return RUNNER_POOLS.computeIfAbsent(benchmarkRunner, runners -> new RunnerPool(
+                RunnerPool.parseUris(runners), settings.runnerBalancing(),
+                settings.runnerFailureThreshold(), settings.runnerCooldownMs()));
+    }
+
+    /**
+     * @return the most requests a run can have in flight: the combined
+     *         concurrency ceiling of the runners, or that of a single
+     *         runner when none is configured
+     */
+    private int concurrencyCeiling() {
+        return benchmarkRunner != null ? runnerPool().maxConcurrency() : settings.maxConcurrency();
+    }
+
+    /**
+     * Chooses the runner for the next attempt of a task, waits for its
+     * rate limiter and then for a slot of its concurrency limit, and only
+     * then leases it and builds the request, so that a runner's
+     * outstanding requests are those actually in flight. No slot is held
+     * idle while the rate limiter paces the request. A retry prefers a
+     * runner other than the one used by the previous attempt.
+     *
+     * @param task the GUID task
+     * @throws InterruptedException if interrupted while waiting; no slot
+     *                              is held and no runner leased
+     */
+    private void routeAttempt(GuidTask task) throws InterruptedException {
+        RunnerPool.Runner previous = task.lease != null ? task.lease.runner() : null;
+        RunnerPool.Runner runner = task.pool.select(previous);
+        rateLimiterFor(runner.uri()).acquire();
+        runner.limiter().acquire();
+        task.slot = runner.limiter();
+        task.lease = task.pool.lease(runner);
+        if (previous != null && previous != task.lease.runner()) {
+            logInfo("Retrying GUID %d on %s", task.index + 1, task.lease.runner().uri());
+        }
+        task.timeout = attemptTimeout(task);
+        task.request = newRequest(task.lease.runner().uri(), task.payload, task.timeout);
+    }
+
+    /**
+     * Returns the timeout for a task's next attempt: the full request
+     * timeout, or with adaptive timeouts one derived from the recent p99
+     * response time by {@link #adaptiveTimeoutMs(long, int, double, long, long)}.
+     *
+     * @param task the GUID task
+     * @return the timeout
+     */
+    private Duration attemptTimeout(GuidTask task) {
+        if (!settings.adaptiveTimeouts()) {
+            return requestTimeout;
+        }
+        return Duration.ofMillis(adaptiveTimeoutMs(LATENCY.percentile(TIMEOUT_PERCENTILE),
+                task.attempt, settings.timeoutFactor(), settings.minTimeoutMs(), requestTimeout.toMillis()));
+    }
+
+    /**
+     * Computes an adaptive attempt timeout: {@code factor} times the
+     * p99 response time, doubled for each retry and kept within the
+     * bounds. The last attempt, and every attempt while the p99 is not
+     * yet known, gets the upper bound, so a slow record can always
+     * finish.
+     *
+     * @param p99Ms   p99 of recent response times; zero if unknown
+     * @param attempt zero-based attempt number
+     * @param factor  multiple of the p99 a first attempt may take
+     * @param minMs   lower bound
+     * @param maxMs   upper bound
+     * @return the timeout in milliseconds
+     */
+    static long adaptiveTimeoutMs(long p99Ms, int attempt, double factor, long minMs, long maxMs) {
+        if (p99Ms <= 0 || attempt >= MAX_RETRIES - 1) {
+            return maxMs;
+        }
+        double timeoutMs = p99Ms * factor * (1L << attempt);
+        return (long) Math.min(maxMs, Math.max(minMs, timeoutMs));
+    }
+
+    /**
+     * Builds the POST request that sends a payload to a runner.
+     *
+     * @param runner  runner URI
+     * @param payload JSON payload
+     * @param timeout time to wait for the response
+     * @return the request
+     */
+    private static HttpRequest newRequest(URI runner, String payload, Duration timeout) {
+        return HttpRequest.newBuilder()
+                .uri(runner)
+                .header(ACCEPT, HEADER_VALUE)
+                .header(CONTENT_TYPE, HEADER_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofString(payload))
+                .timeout(timeout)
+                .build();
+    }
+
+    /**
+     * Counts a failed attempt against the leased runner's health and,
+     * unless another runner in the pool is still healthy, against the
+     * circuit breaker. One bad instance among several is thus taken out
+     * of rotation without pausing dispatch to the others.
+     *
+     * @param task   the GUID task
+     * @param reason short description for the log
+     */
+    private static void recordRunnerFailure(GuidTask task, String reason) {
+        if (task.lease.failure(reason)) {
+            CIRCUIT_BREAKER.onCancelled(task.probe);
+        } else {
+            CIRCUIT_BREAKER.onFailure(task.probe, reason);
+        }
+    }
+
+    /**
+     * Returns the concurrency slot held by a task's attempt, if any.
+     *
+     * @param task the GUID task
+     */
+    private static void releaseSlot(GuidTask task) {
+        AdaptiveConcurrencyLimiter slot = task.slot;
+        if (slot != null) {
+            task.slot = null;
+            slot.release();
+        }
+    }
+
+    /**
+     * Returns a task's runner lease without a verdict, e.g. when the
+     * attempt ended before a response. Does nothing if the outcome has
+     * already been reported.
+     *
+     * @param task the GUID task
+     */
+    private static void releaseRunner(GuidTask task) {
+        if (task.lease != null) {
+            task.lease.cancel();
+        }
+    }
+
+    /**
+     * Performs one blocking attempt for a task while holding a
+     * concurrency slot on its runner, then settles the outcome. Waits
+     * first while {@link #CIRCUIT_BREAKER} is open, then for the runner
+     * as described in {@link #routeAttempt(GuidTask)}.
+     *
+     * @param task     the GUID task
+     * @param pipeline pipeline the task runs on, used for retries
+     */
+    private void runAttempt(GuidTask task, Pipeline pipeline) {
+        AttemptOutcome outcome;
+        task.probe = false;
+        try {
+            task.probe = CIRCUIT_BREAKER.acquirePermission();
+            routeAttempt(task);
+            try {
+                outcome = attemptOnce(task);
+            } finally {
+                releaseSlot(task);
+            }
+        } catch (IOException e) {
+            CIRCUIT_BREAKER.onCancelled(task.probe);
+            releaseRunner(task);
+            failTask(task, e);
+            return;
+        } catch (InterruptedException e) {
+            CIRCUIT_BREAKER.onCancelled(task.probe);
+            releaseRunner(task);
+            task.done.completeExceptionally(e);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        settle(task, outcome, pipeline);
+    }
 
-                final String guid = normaliseGuid(rawGuid);
-
-                CompletableFuture.runAsync(() -> {
-                    try {
-                        REQUEST_SEMAPHORE.acquire();
-                        try {
-                            processOneGuid(guid, index, set, subDir, benchmarkRunner);
-                        } finally {
-                            REQUEST_SEMAPHORE.release();
-                        }
-                    } catch (IOException ioe) {
-                        logSevere(PROCERROR, guid, ioe.getMessage());
-                        saveErrorFile(guid, set, ioe, subDir);
-                    } catch (InterruptedException ie) {
-                        logSevere(PROCERROR, guid, ie.getMessage());
-                        Thread.currentThread().interrupt();
+    /**
+     * Starts one non-blocking attempt for a task. The calling thread
+     * waits only for the circuit breaker, the runner's rate limiter and
+     * then a concurrency slot on the runner; the response is handled, the
+     * slot released and the outcome settled by stages chained to
+     * {@link HttpClient#sendAsync}.
+     *
+     * @param task     the GUID task
+     * @param pipeline pipeline the task runs on, used for retries
+     * @throws InterruptedException if interrupted while waiting; the
+     *                              task is failed
+     */
+    private void startAttemptAsync(GuidTask task, Pipeline pipeline) throws InterruptedException {
+        task.probe = false;
+        try {
+            task.probe = CIRCUIT_BREAKER.acquirePermission();
+        } catch (InterruptedException e) {
+            CIRCUIT_BREAKER.onCancelled(task.probe);
+            task.done.completeExceptionally(e);
+            throw e;
+        }
+        try {
+            routeAttempt(task);
+        } catch (InterruptedException e) {
+            CIRCUIT_BREAKER.onCancelled(task.probe);
+            releaseRunner(task);
+            task.done.completeExceptionally(e);
+            throw e;
+        }
+        if (task.done.isDone() || shuttingDown) {
+            releaseSlot(task);
+            settle(task, AttemptOutcome.CANCELLED, pipeline);
+            return;
+        }
+        try {
+            task.bodyFile = newBodyFile(task);
+        } catch (IOException e) {
+            releaseSlot(task);
+            CIRCUIT_BREAKER.onCancelled(task.probe);
+            releaseRunner(task);
+            failTask(task, e);
+            return;
+        }
+        beginAttempt(task);
+        startExchange(task)
+                .thenApplyAsync(response -> handleResponse(task, response,
+                        Duration.between(task.sentAt, Instant.now()).toMillis()),
+                        ASYNC_STAGE_EXECUTOR)
+                .whenComplete((outcome, error) -> {
+                    task.exchange = null;
+                    releaseSlot(task);
+                    deleteQuietly(task.bodyFile);
+                })
+                .whenComplete((outcome, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause == null) {
+                        settle(task, outcome, pipeline);
+                    } else if (cause instanceof CancellationException) {
+                        settle(task, AttemptOutcome.CANCELLED, pipeline);
+                    } else if (cause instanceof SSLHandshakeException
+                            || cause instanceof HttpTimeoutException) {
+                        settle(task, handleTransientFailure(task, (IOException) cause), pipeline);
+                    } else if (cause instanceof IOException ioe) {
+                        settle(task, handleRunnerFailure(task, ioe), pipeline);
+                    } else {
+                        CIRCUIT_BREAKER.onCancelled(task.probe);
+                        releaseRunner(task);
+                        failTask(task, new IOException(cause));
                     }
-                }, executor);
+                });
+    }
+
+    /**
+     * Fails a task for a non-transient reason and saves an error file.
+     *
+     * @param task  the GUID task
+     * @param error the failure
+     */
+    private void failTask(GuidTask task, IOException error) {
+        logSevere(PROCFAIL + (task.index + 1) + ": " + error.getMessage());
+        saveErrorFile(task.guid, task.set, error, task.subDir);
+        task.done.completeExceptionally(error);
+    }
+
+    /**
+     * Completes a task whose attempt is over. While
+     * {@link #CIRCUIT_BREAKER} is not closed, a failed task is put back
+     * on the pipeline without counting the attempt, so a runner outage
+     * does not use up retries or produce error files, for as long as
+     * {@link #holdBack(GuidTask)} allows. Otherwise retries
+     * are put back on the pipeline with exponential backoff (2s, 4s, ...),
+     * or after the runner's {@code Retry-After} if that is longer, as
+     * long as attempts remain and {@link #RETRY_BUDGET} allows it, and
+     * an error file is saved when they do not. The concurrency slot has
+     * already been released, so a GUID waiting out its backoff does not
+     * hold back healthy GUIDs. A task whose lane has been cancelled is
+     * neither retried nor given an error file.
+     *
+     * @param task     the GUID task
+     * @param outcome  outcome of the attempt
+     * @param pipeline pipeline the task runs on, used for retries
+     */
+    private void settle(GuidTask task, AttemptOutcome outcome, Pipeline pipeline) {
+        releaseRunner(task);
+        if (outcome == AttemptOutcome.DONE) {
+            task.done.complete(null);
+            return;
+        }
+
+        if (outcome == AttemptOutcome.CANCELLED) {
+            CIRCUIT_BREAKER.onCancelled(task.probe);
+            task.done.completeExceptionally(new CancellationException(shuttingDown
+                    ? "Shutting down before GUID was processed"
+                    : "Set cancelled before GUID was processed"));
+            return;
+        }
+        if (task.done.isDone()) {
+            // Cancelled while the attempt was reporting its outcome.
+            return;
+        }
+
+        if (!CIRCUIT_BREAKER.isClosed() && holdBack(task)) {
+            pipeline.requeue(task);
+            return;
+        }
+
+        if (outcome == AttemptOutcome.FAILED) {
+            failTask(task, (IOException) task.lastException);
+            return;
+        }
+
+        task.attempt++;
+        if (task.attempt < MAX_RETRIES && RETRY_BUDGET.tryAcquireRetry()) {
+            long backoffMs = Math.max(task.retryAfterMs,
+                    INITIAL_BACKOFF_MS * (1L << (task.attempt - 1))); // 2s, 4s, 8s...
+            task.retryAfterMs = 0;
+            logInfo("Retry %d/%d for GUID %d scheduled after %dms backoff",
+                    task.attempt, MAX_RETRIES - 1, task.index + 1, backoffMs);
+            pipeline.retryLater(task, backoffMs);
+            return;
+        }
+
+        if (task.attempt < MAX_RETRIES) {
+            logSevere(PROCFAIL + (task.index + 1) + ": retry budget exhausted after %d attempt(s)",
+                    task.attempt);
+        } else {
+            logSevere(PROCFAIL + (task.index + 1) + ": all %d attempts failed", MAX_RETRIES);
+        }
+        saveErrorFile(task.guid, task.set, task.lastException, task.subDir);
+        task.done.completeExceptionally(
+                new IOException("All retries exhausted for GUID: " + task.guid, task.lastException));
+    }
+
+    /**
+     * Decides whether a task that failed while the circuit is not closed
+     * is held back once more. A task is held back for at most
+     * {@link AssessmentSettings#configureCircuitBreaker(int, double, int, int, int, int)
+     * max-hold} from the first time; after that its attempts count
+     * again, so a runner that never recovers ends the set rather than
+     * stalling it.
+     *
+     * @param task the GUID task
+     * @return {@code true} to put the task back without counting the
+     *         attempt
+     */
+    private boolean holdBack(GuidTask task) {
+        if (task.holdExpired) {
+            return false;
+        }
+        Instant now = Instant.now();
+        if (task.heldSince == null) {
+            task.heldSince = now;
+        }
+        if (now.isBefore(task.heldSince.plusMillis(settings.circuitMaxHoldMs()))) {
+            logInfo("GUID %d held back until the runner recovers", task.index + 1);
+            return true;
+        }
+        task.holdExpired = true;
+        logInfo("GUID %d held back for %ds; its attempts count again",
+                task.index + 1, Duration.between(task.heldSince, now).toSeconds());
+        return false;
+    }
+
+    /**
+     * Sends a GUID's request once, blocking, and saves the response.
+     *
+     * @param task the GUID task
+     * @return the outcome of the attempt
+     * @throws IOException          if the response file cannot be
+     *                              created
+     * @throws InterruptedException if interrupted awaiting the response;
+     *                              the request is cancelled
+     */
+    private AttemptOutcome attemptOnce(GuidTask task)
+            throws IOException, InterruptedException {
+
+        if (task.done.isDone() || shuttingDown) {
+            return AttemptOutcome.CANCELLED;
+        }
+        task.bodyFile = newBodyFile(task);
+        beginAttempt(task);
+        try {
+            HttpResponse<Path> response = awaitResponse(startExchange(task));
+            long elapsedMs = Duration.between(task.sentAt, Instant.now()).toMillis();
+            return handleResponse(task, response, elapsedMs);
+        } catch (CancellationException e) {
+            return AttemptOutcome.CANCELLED;
+        } catch (SSLHandshakeException | HttpTimeoutException e) {
+            return handleTransientFailure(task, e);
+        } catch (IOException e) {
+            return handleRunnerFailure(task, e);
+        } finally {
+            task.exchange = null;
+            deleteQuietly(task.bodyFile);
+        }
+    }
+
+    /**
+     * Sends a task's request with {@link #send(GuidTask)} and makes the
+     * exchange cancellable through the task's lane. If the lane was
+     * cancelled in the meantime, the exchange is cancelled straight away.
+     *
+     * @param task the GUID task, with its request and body file ready
+     * @return the pending response
+     */
+    private CompletableFuture<HttpResponse<Path>> startExchange(GuidTask task) {
+        CompletableFuture<HttpResponse<Path>> exchange = send(task);
+        task.exchange = exchange;
+        if (task.done.isDone()) {
+            exchange.cancel(true);
+        }
+        return exchange;
+    }
+
+    /**
+     * Creates the empty file an attempt's response body is streamed
+     * into, next to the task's result file so that it can be renamed
+     * into place.
+     *
+     * @param task the GUID task
+     * @return the new file
+     * @throws IOException if the output directory or file cannot be
+     *                     created
+     */
+    private static Path newBodyFile(GuidTask task) throws IOException {
+        Path outputDir = resolveOutputDir(task.subDir);
+        Files.createDirectories(outputDir);
+        return newTempFile(outputDir, sanitiseIdentifier(task.guid));
+    }
+
+    /**
+     * Returns a body handler that streams the response body into the
+     * given file. The body of a retryable status is discarded, since only
+     * its status code and headers are used.
+     *
+     * @param bodyFile file to write the body to
+     * @return the body handler; the response body is {@code bodyFile}
+     */
+    private static HttpResponse.BodyHandler<Path> bodyToFile(Path bodyFile) {
+        return info -> isRetryableStatus(info.statusCode())
+                ? HttpResponse.BodySubscribers.replacing(bodyFile)
+                : HttpResponse.BodySubscribers.ofFile(bodyFile);
+    }
+
+    /**
+     * @param statusCode HTTP status code
+     * @return {@code true} for rate limiting (429), overload (503) and
+     *         gateway errors (502 / 504), which are retried rather than
+     *         saved as results
+     */
+    private static boolean isRetryableStatus(int statusCode) {
+        return statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
+
+    /**
+     * Parses a {@code Retry-After} header, given either in seconds or as
+     * an HTTP date.
+     *
+     * @param value header value (may be {@code null})
+     * @return the delay in milliseconds, capped at
+     *         {@value #MAX_RETRY_AFTER_MS}; zero if the header is absent,
+     *         in the past or cannot be parsed
+     */
+    static long retryAfterMillis(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        long millis;
+        try {
+            millis = TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value.trim(),
+                        DateTimeFormatter.RFC_1123_DATE_TIME);
+                millis = Duration.between(Instant.now(), date).toMillis();
+            } catch (DateTimeParseException e2) {
+                return 0;
             }
+        }
+        return Math.min(Math.max(0, millis), MAX_RETRY_AFTER_MS);
+    }
+
+    /**
+     * @param task the GUID task
+     * @return the rate limiter of the runner the task is sent to
+     */
+    private TokenBucket rateLimiterFor(GuidTask task) {
+        return rateLimiterFor(task.lease.runner().uri());
+    }
+
+    /**
+     * @param runner runner URI
+     * @return the rate limiter of the runner
+     */
+    private TokenBucket rateLimiterFor(URI runner) {
+        return RATE_LIMITERS.computeIfAbsent(runner.toString(),
+                uri -> new TokenBucket(settings.runnerRate(), settings.runnerBurst()));
+    }
 
-            logInfo(TASKWAIT);
-            executor.shutdown();
+    /**
+     * Records the start of an attempt: the first attempt of a GUID
+     * credits the retry budget and is logged.
+     *
+     * @param task the GUID task
+     */
+    private void beginAttempt(GuidTask task) {
+        if (task.attempt == 0) {
+            RETRY_BUDGET.onRequest();
+            HEDGE_BUDGET.onRequest();
+            logInfo("Processing GUID %d: %s", task.index + 1, task.guid);
+            logInfo("%s%s — %s", REQSEND, task.request.uri(), task.payload);
+        }
+    }
 
-            if (!executor.awaitTermination(10, TimeUnit.MINUTES)) {
-                logSevere(TASKTOOLONG);
+    /**
+     * Saves a response. Rate limiting (HTTP 429), overload (503) and
+     * gateway errors (502 / 504) are reported as
+     * {@link AttemptOutcome#RETRY} with the cause recorded on the task. A
+     * {@code Retry-After} on such a response sets the task's minimum
+     * backoff and pauses the runner's rate limiter for that long.
+     *
+     * @param task      the GUID task
+     * @param response  the runner's response, with the body in a file
+     * @param elapsedMs time the request took
+     * @return the outcome of the attempt
+     */
+    private AttemptOutcome handleResponse(GuidTask task, HttpResponse<Path> response, long elapsedMs) {
+
+        int status = response.statusCode();
+        task.statusCode = status;
+        if (isRetryableStatus(status)) {
+            if (status == 429) {
+                // Throttling says nothing about the runner's health.
+                CIRCUIT_BREAKER.onCancelled(task.probe);
+                task.lease.cancel();
+                task.lastException = new IOException("Rate limited: HTTP 429");
             } else {
-                logInfo(TASKSUCCESS);
+                task.lease.runner().limiter().onOverload("HTTP " + status);
+                recordRunnerFailure(task, "HTTP " + status);
+                task.lastException = new IOException(
+                        (status == 503 ? "Service unavailable" : "Gateway error") + ": HTTP " + status);
+            }
+            task.retryAfterMs = retryAfterMillis(
+                    response.headers().firstValue("Retry-After").orElse(null));
+            if (task.retryAfterMs > 0) {
+                rateLimiterFor(task).pause(task.retryAfterMs);
+                logSevere("Attempt %d failed for GUID %d: HTTP %d (Retry-After %dms)",
+                        task.attempt + 1, task.index + 1, status, task.retryAfterMs);
+            } else {
+                logSevere("Attempt %d failed for GUID %d: HTTP %d",
+                        task.attempt + 1, task.index + 1, status);
             }
+            return AttemptOutcome.RETRY;
         }
+
+        Path jsonOutputPath = resolveOutputDir(task.subDir)
+                .resolve(sanitiseIdentifier(task.guid) + ".json");
+
+        task.lease.runner().limiter().onSuccess(elapsedMs);
+        CIRCUIT_BREAKER.onSuccess(task.probe);
+        task.lease.success(elapsedMs);
+        LATENCY.record(elapsedMs);
+        writeResponseBodyAsJson(jsonOutputPath, response.body(),
+                task.guid, response.statusCode());
+
+        logInfo(RESPSAVED + (task.index + 1)
+                + " (Status: " + response.statusCode()
+                + ", Time: " + elapsedMs + "ms"
+                + ", Limit: " + task.lease.runner().limiter().getLimit() + ")");
+        return AttemptOutcome.DONE;
     }
 
     /**
-     * Submits a single GUID to the Champion API and saves the response.
-     * This method implements a retry mechanism for transient errors such as
-     * SSL handshake failures and timeouts, with exponential backoff between
-     * attempts.
-     * If all attempts fail, a structured error file is saved with details of the
-     * failure.
+     * Records an SSL handshake failure or timeout, both worth retrying.
+     * Timeouts also count as overload.
      *
-     * @param guid   full GetRecord URL to submit as the {@code "guid"}
-     *               payload field
-     * @param index  zero-based position in the batch (for log messages)
-     * @param set    language / set name for error-file naming
-     *               (may be {@code null})
-     * @param subDir subdirectory inside {@value #OUTPUT_DIR} for
-     *               results (may be {@code null})
-     * @param runner URI of the FAIR Champion runner instance to POST to
-     * @throws IOException          if the HTTP request or file write
-     *                              fails
-     * @throws InterruptedException if interrupted awaiting the response
+     * @param task the GUID task
+     * @param e    the failure
+     * @return {@link AttemptOutcome#RETRY}
      */
-    private static final int MAX_RETRIES = 3;
-    private static final long INITIAL_BACKOFF_MS = 2_000;
+    private AttemptOutcome handleTransientFailure(GuidTask task, IOException e) {
+        if (e instanceof HttpTimeoutException) {
+            task.lease.runner().limiter().onOverload("timeout");
+        }
+        recordRunnerFailure(task, e.getClass().getSimpleName());
+        task.lastException = e;
+        if (e instanceof HttpTimeoutException && !(e instanceof HttpConnectTimeoutException)) {
+            logSevere("Attempt %d failed for GUID %d: no response within %ds",
+                    task.attempt + 1, task.index + 1, task.timeout.toSeconds());
+        } else {
+            logSevere("Attempt %d failed for GUID %d (%s): %s",
+                    task.attempt + 1, task.index + 1,
+                    e.getClass().getSimpleName(), e.getMessage());
+        }
+        return AttemptOutcome.RETRY;
+    }
 
-    private void processOneGuid(
-            String guid,
-            int index,
-            String set,
-            String subDir,
-            String runner) throws IOException, InterruptedException {
+    /**
+     * Records a request that failed for a non-transient reason, such as
+     * a refused connection. It counts against the runner's circuit
+     * breaker and health. With a single runner it is not retried; with
+     * several, it is retried on another one.
+     *
+     * @param task the GUID task
+     * @param e    the failure
+     * @return {@link AttemptOutcome#RETRY} if other runners are
+     *         available, otherwise {@link AttemptOutcome#FAILED}
+     */
+    private AttemptOutcome handleRunnerFailure(GuidTask task, IOException e) {
+        recordRunnerFailure(task, e.getClass().getSimpleName());
+        task.lastException = e;
+        if (task.pool.size() > 1) {
+            logSevere("Attempt %d failed for GUID %d on %s (%s): %s",
+                    task.attempt + 1, task.index + 1, task.lease.runner().uri(),
+                    e.getClass().getSimpleName(), e.getMessage());
+            return AttemptOutcome.RETRY;
+        }
+        return AttemptOutcome.FAILED;
+    }
 
-        logInfo("Processing GUID %d: %s", index + 1, guid);
+    /**
+     * Extracts the {@code identifier=} value from a GetRecord URL and
+     * replaces characters that are unsafe in filenames.
+     *
+     * @param guid full GetRecord URL
+     * @return sanitised identifier used as the result filename stem
+     */
+    private static String sanitiseIdentifier(String guid) {
+        return guid
+                .replaceAll(".*[?&]identifier=([^&]+).*", "$1")
+                .replaceAll("[^a-zA-Z0-9._-]", "_");
+    }
 
-        ObjectNode payload = mapper.createObjectNode();
-        payload.put("calculation_uri", benchmarkAlgorithm);
-        payload.put("guid", guid);
-        String jsonPayload = mapper.writeValueAsString(payload);
-        logInfo("%s%s — %s", REQSEND, runner, jsonPayload);
+    // -----------------------------------------------------------------------
+    // Request hedging
+    // -----------------------------------------------------------------------
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(runner))
-                .header(ACCEPT, HEADER_VALUE)
-                .header(CONTENT_TYPE, HEADER_VALUE)
-                .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                .timeout(requestTimeout)
-                .build();
+    /**
+     * @param task the GUID task
+     * @return how long the task's request may go unanswered before it is
+     *         hedged: the configured percentile of recent response
+     *         times, or zero if hedging is off, too few responses have
+     *         been seen yet, or the request probes a half-open circuit
+     */
+    private long hedgeDelayMs(GuidTask task) {
+        return settings.hedgeEnabled() && !task.probe
+                ? LATENCY.percentile(settings.hedgePercentile()) : 0;
+    }
+
+    /**
+     * Sends a task's request without blocking, hedging it if
+     * {@link #hedgeDelayMs(GuidTask)} allows.
+     *
+     * @param task the GUID task, with its request and body file ready
+     * @return the response of the request, or of its hedge if that
+     *         answered first
+     */
+    private CompletableFuture<HttpResponse<Path>> send(GuidTask task) {
+        long hedgeAfterMs = hedgeDelayMs(task);
+        if (hedgeAfterMs > 0) {
+            return sendHedged(task, hedgeAfterMs);
+        }
+        task.sentAt = Instant.now();
+        return httpClient.sendAsync(task.request, bodyToFile(task.bodyFile));
+    }
+
+    /**
+     * Sends a task's request and, if it is still unanswered after the
+     * given delay, a duplicate to another runner (or the same one if it
+     * is the only runner), as far as {@link #HEDGE_BUDGET} and the
+     * runner's rate limit allow.
+     *
+     * @param task         the GUID task, with its request and body file
+     *                     ready
+     * @param hedgeAfterMs delay before the duplicate is sent
+     * @return the first usable response, or the outcome of the original
+     *         request if neither is usable
+     */
+    private CompletableFuture<HttpResponse<Path>> sendHedged(GuidTask task, long hedgeAfterMs) {
+        HedgedSend send = new HedgedSend(task);
+        ScheduledFuture<?> timer = RETRY_SCHEDULER.schedule(
+                () -> send.startHedge(hedgeAfterMs), hedgeAfterMs, TimeUnit.MILLISECONDS);
+        send.result.whenComplete((response, error) -> timer.cancel(false));
+        return send.result;
+    }
 
-        Exception lastException = null;
-        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
-            if (attempt > 0) {
-                long backoffMs = INITIAL_BACKOFF_MS * (1L << (attempt - 1)); // 2s, 4s, 8s...
-                logInfo("Retry %d/%d for GUID %d after %dms backoff",
-                        attempt, MAX_RETRIES - 1, index + 1, backoffMs);
-                Thread.sleep(backoffMs);
+    /**
+     * Waits for a response sent with {@link #send(GuidTask)}, cancelling
+     * the requests if interrupted.
+     *
+     * @param exchange the pending response
+     * @return the response
+     * @throws CancellationException if the exchange was cancelled
+     * @throws IOException          if the request failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static HttpResponse<Path> awaitResponse(CompletableFuture<HttpResponse<Path>> exchange)
+            throws IOException, InterruptedException {
+        try {
+            return exchange.get();
+        } catch (InterruptedException e) {
+            exchange.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof CancellationException ce) {
+                throw ce;
             }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * One attempt's request together with its hedge, if one is sent.
+     * The first usable response, i.e. one that would not be retried,
+     * completes {@link #result}, becomes the task's response and the other
+     * request is cancelled. If neither is usable, the original request's
+     * outcome is reported, so the attempt is settled as if it had not
+     * been hedged. The losing request's runner lease is settled and its
+     * body file deleted here; it is not reported to the circuit breaker
+     * or the concurrency limiter.
+     */
+    private final class HedgedSend {
+        final CompletableFuture<HttpResponse<Path>> result = new CompletableFuture<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final GuidTask task;
+        private final RunnerPool.Lease primaryLease;
+        private final Path primaryFile;
+        private final CompletableFuture<HttpResponse<Path>> primary;
+        private boolean primaryDone;
+        private HttpResponse<Path> primaryResponse;
+        private Throwable primaryError;
+        private CompletableFuture<HttpResponse<Path>> hedge;
+        private RunnerPool.Lease hedgeLease;
+        private Path hedgeFile;
+        private Instant hedgeSentAt;
+
+        HedgedSend(GuidTask task) {
+            this.task = task;
+            this.primaryLease = task.lease;
+            this.primaryFile = task.bodyFile;
+            task.sentAt = Instant.now();
+            this.primary = httpClient.sendAsync(task.request, bodyToFile(primaryFile));
+            result.whenComplete((response, error) -> {
+                if (result.isCancelled()) {
+                    primary.cancel(true);
+                    lock.lock();
+                    try {
+                        if (hedge != null) {
+                            hedge.cancel(true);
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            });
+            primary.whenComplete(this::onPrimary);
+        }
+
+        /**
+         * Sends the hedge unless the attempt is already over, or the
+         * budget or the chosen runner's rate limit does not allow it.
+         */
+        void startHedge(long waitedMs) {
+            lock.lock();
             try {
-                Instant requestStart = Instant.now();
-                HttpResponse<String> response = httpClient.send(
-                        request, HttpResponse.BodyHandlers.ofString());
-                long elapsedMs = Duration.between(requestStart, Instant.now()).toMillis();
-
-                Path outputDir = resolveOutputDir(subDir);
-                Files.createDirectories(outputDir);
-
-                String sanitisedGuid = guid
-                        .replaceAll(".*[?&]identifier=([^&]+).*", "$1")
-                        .replaceAll("[^a-zA-Z0-9._-]", "_");
-                Path jsonOutputPath = outputDir.resolve(sanitisedGuid + ".json");
-
-                if (response.statusCode() == 504 || response.statusCode() == 502) {
-                    lastException = new IOException(
-                            "Gateway error: HTTP " + response.statusCode());
-                    logSevere("Attempt %d failed for GUID %d: HTTP %d",
-                            attempt + 1, index + 1, response.statusCode());
-                    continue; // trigger next retry iteration
+                if (result.isDone() || primaryDone) {
+                    return;
+                }
+                hedgeLease = task.pool.acquire(primaryLease.runner());
+                URI runner = hedgeLease.runner().uri();
+                if (!rateLimiterFor(runner).tryAcquire() || !HEDGE_BUDGET.tryAcquireRetry()) {
+                    hedgeLease.cancel();
+                    hedgeLease = null;
+                    return;
                 }
+                try {
+                    hedgeFile = newBodyFile(task);
+                } catch (IOException e) {
+                    logSevere("Could not hedge GUID %d: %s", task.index + 1, e.getMessage());
+                    hedgeLease.cancel();
+                    hedgeLease = null;
+                    return;
+                }
+                logInfo("GUID %d unanswered after %dms; hedging to %s",
+                        task.index + 1, waitedMs, runner);
+                hedgeSentAt = Instant.now();
+                hedge = httpClient.sendAsync(newRequest(runner, task.payload, task.timeout),
+                        bodyToFile(hedgeFile));
+                hedge.whenComplete(this::onHedge);
+            } finally {
+                lock.unlock();
+            }
+        }
 
-                writeResponseBodyAsJson(jsonOutputPath, response.body(),
-                        guid, response.statusCode());
+        private void onPrimary(HttpResponse<Path> response, Throwable error) {
+            Throwable cause = unwrap(error);
+            lock.lock();
+            try {
+                primaryDone = true;
+                if (result.isDone()) {
+                    settleLoser(primaryLease, primaryFile, response, cause);
+                } else if (isUsable(response, cause)) {
+                    result.complete(response);
+                    if (hedge != null) {
+                        hedge.cancel(true);
+                    }
+                } else if (hedge == null || hedge.isDone()) {
+                    report(response, cause);
+                } else {
+                    primaryResponse = response;
+                    primaryError = cause;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
 
-                logInfo(RESPSAVED + (index + 1)
-                        + " (Status: " + response.statusCode()
-                        + ", Time: " + elapsedMs + "ms)");
-                return; // success — exit retry loop
+        private void onHedge(HttpResponse<Path> response, Throwable error) {
+            Throwable cause = unwrap(error);
+            lock.lock();
+            try {
+                if (result.isDone()) {
+                    settleLoser(hedgeLease, hedgeFile, response, cause);
+                } else if (isUsable(response, cause)) {
+                    logInfo("Hedge for GUID %d answered first (%s)",
+                            task.index + 1, hedgeLease.runner().uri());
+                    task.lease = hedgeLease;
+                    task.bodyFile = hedgeFile;
+                    task.sentAt = hedgeSentAt;
+                    result.complete(response);
+                    if (primaryDone) {
+                        settleLoser(primaryLease, primaryFile, primaryResponse, primaryError);
+                    } else {
+                        primary.cancel(true);
+                    }
+                } else {
+                    settleLoser(hedgeLease, hedgeFile, response, cause);
+                    if (primaryDone) {
+                        report(primaryResponse, primaryError);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
 
-            } catch (SSLHandshakeException | HttpTimeoutException e) {
-                // Transient errors worth retrying
-                lastException = e;
-                logSevere("Attempt %d failed for GUID %d (%s): %s",
-                        attempt + 1, index + 1,
-                        e.getClass().getSimpleName(), e.getMessage());
-            } catch (IOException e) {
-                // Non-transient — fail immediately
-                logSevere(PROCFAIL + (index + 1) + ": " + e.getMessage());
-                saveErrorFile(guid, set, e, subDir);
-                throw e;
+        private void report(HttpResponse<Path> response, Throwable cause) {
+            if (cause == null) {
+                result.complete(response);
+            } else {
+                result.completeExceptionally(cause);
             }
         }
 
-        // All retries exhausted
-        logSevere(PROCFAIL + (index + 1) + ": all %d attempts failed", MAX_RETRIES);
-        saveErrorFile(guid, set, lastException, subDir);
-        throw new IOException("All retries exhausted for GUID: " + guid, lastException);
+        private static boolean isUsable(HttpResponse<Path> response, Throwable cause) {
+            return cause == null && !isRetryableStatus(response.statusCode());
+        }
+
+        private static Throwable unwrap(Throwable error) {
+            return error instanceof CompletionException ? error.getCause() : error;
+        }
+
+        private static void settleLoser(RunnerPool.Lease lease, Path file,
+                HttpResponse<Path> response, Throwable cause) {
+            if (response != null && isRetryableStatus(response.statusCode())
+                    && response.statusCode() != 429) {
+                lease.failure("HTTP " + response.statusCode());
+            } else if (cause instanceof IOException) {
+                lease.failure(cause.getClass().getSimpleName());
+            } else {
+                lease.cancel();
+            }
+            deleteQuietly(file);
+        }
     }
 
     // -----------------------------------------------------------------------
@@ -626,42 +2971,37 @@ public class RunBenchmarkAssessment {
     // -----------------------------------------------------------------------
 
     /**
-     * Writes the raw API response body to a JSON file. If the body is
-     * already valid JSON it is written as-is; otherwise it is wrapped
-     * in a JSON envelope that captures the GUID, HTTP status code,
-     * content type hint, raw content, and a timestamp.
+     * Moves a response body saved by {@link #bodyToFile(Path)} into
+     * place as a JSON file. If the body is valid JSON it is renamed
+     * as-is; otherwise it is wrapped in a JSON envelope that captures the
+     * GUID, HTTP status code, content type hint, raw content, and a
+     * timestamp. The body is checked and wrapped as a stream, so it is
+     * never held in memory, and the result file only ever appears
+     * complete.
      *
-     * @param path         destination file path
-     * @param responseBody raw HTTP response body
-     * @param guid         the GUID that was processed
-     * @param statusCode   HTTP status code returned by the API
+     * @param path       destination file path
+     * @param bodyFile   file holding the raw HTTP response body
+     * @param guid       the GUID that was processed
+     * @param statusCode HTTP status code returned by the API
      */
     private void writeResponseBodyAsJson(
             Path path,
-            String responseBody,
+            Path bodyFile,
             String guid,
             int statusCode) {
 
         try {
-            String jsonContent;
-
-            try {
-                mapper.readTree(responseBody);
-                jsonContent = responseBody;
-            } catch (Exception e) {
-                ObjectNode wrapper = mapper.createObjectNode();
-                wrapper.put("guid", guid);
-                wrapper.put("statusCode", statusCode);
-                wrapper.put("responseType", "html");
-                wrapper.put("content", responseBody);
-                wrapper.put("timestamp", Instant.now().toString());
-                jsonContent = mapper
-                        .writerWithDefaultPrettyPrinter()
-                        .writeValueAsString(wrapper);
-            }
-
-            Files.write(path,
-                    jsonContent.getBytes(StandardCharsets.UTF_8));
+            if (isJson(bodyFile)) {
+                moveIntoPlace(bodyFile, path);
+            } else {
+                Path envelope = newTempFile(path.getParent(), "envelope");
+                try {
+                    writeEnvelope(envelope, bodyFile, guid, statusCode);
+                    moveIntoPlace(envelope, path);
+                } finally {
+                    deleteQuietly(envelope);
+                }
+            }
             logInfo("\u2713 Saved JSON response for GUID to %s",
                     path.getFileName());
 
@@ -672,6 +3012,104 @@ public class RunBenchmarkAssessment {
         }
     }
 
+    /**
+     * Checks with a streaming parser that a file holds a JSON value,
+     * reading it token by token.
+     *
+     * @param file the file to check
+     * @return {@code true} if the file is non-empty, well-formed JSON
+     * @throws IOException if the file cannot be read
+     */
+    private static boolean isJson(Path file) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(file.toFile())) {
+            if (parser.nextToken() == null) {
+                return false;
+            }
+            while (parser.nextToken() != null) {
+                // Each token is checked as it is read; values are not kept.
+            }
+            return true;
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the JSON envelope for a non-JSON response body, copying the
+     * body into the {@code content} field as a stream. Bytes that are
+     * not valid UTF-8 are replaced.
+     *
+     * @param envelope   file to write the envelope to
+     * @param bodyFile   file holding the raw response body
+     * @param guid       the GUID that was processed
+     * @param statusCode HTTP status code returned by the API
+     * @throws IOException if either file cannot be read or written
+     */
+    private static void writeEnvelope(Path envelope, Path bodyFile, String guid, int statusCode)
+            throws IOException {
+
+        try (Reader content = new InputStreamReader(
+                Files.newInputStream(bodyFile), StandardCharsets.UTF_8);
+                JsonGenerator generator = mapper.getFactory()
+                        .createGenerator(envelope.toFile(), JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            generator.writeStringField("guid", guid);
+            generator.writeNumberField("statusCode", statusCode);
+            generator.writeStringField("responseType", "html");
+            generator.writeFieldName("content");
+            generator.writeString(content, -1);
+            generator.writeStringField("timestamp", Instant.now().toString());
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Renames a file over its target, atomically where the file system
+     * supports it.
+     *
+     * @param source file to move
+     * @param target destination, replaced if it exists
+     * @throws IOException if the file cannot be moved
+     */
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target,
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Creates an empty, uniquely named hidden {@code .tmp} file. Unlike
+     * {@link Files#createTempFile}, the file gets the default permissions,
+     * so results renamed from it are readable like any other file. Also
+     * used by {@link ResultIndex} to rewrite its file.
+     *
+     * @param dir  directory to create the file in
+     * @param stem start of the file name
+     * @return the new file
+     * @throws IOException if the file cannot be created
+     */
+    static Path newTempFile(Path dir, String stem) throws IOException {
+        return Files.createFile(dir.resolve("." + stem + "." + UUID.randomUUID() + ".tmp"));
+    }
+
+    /**
+     * Deletes a file if it still exists, logging rather than throwing on
+     * failure.
+     *
+     * @param file the file to delete
+     */
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logSevere("Could not delete %s: %s", file, e.getMessage());
+        }
+    }
+
     /**
      * Saves a structured error description to a JSON file in the
      * appropriate output directory. If a file with the same name
@@ -805,6 +3243,17 @@ public class RunBenchmarkAssessment {
                 "Process a single named GUID file");
         options.addOption("g", GUID_ARG, true,
                 "Process a single GetRecord URL on the command line");
+        options.addOption("r", RESUME_ARG, false,
+                "Skip GUIDs completed by a previous, interrupted run");
+        options.addOption("i", INCREMENTAL_ARG, false,
+                "Skip records whose datestamp is not newer than their result file");
+        options.addOption("t", TTL_ARG, true,
+                "Skip GUIDs assessed with the same algorithm within this many days"
+                        + " (overrides benchmark.results.ttl.days)");
+        options.addOption("l", RATE_ARG, true,
+                "Requests per second per runner (overrides benchmark.runner.rate)");
+        options.addOption("b", BURST_ARG, true,
+                "Rate limiter burst size (overrides benchmark.runner.burst)");
         options.addOption("h", "help", false, "Show this help message");
 
         CommandLineParser parser = new DefaultParser();
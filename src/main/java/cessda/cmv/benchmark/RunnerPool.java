@@ -0,0 +1,438 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Spreads Champion requests over one or more runner instances.
+ *
+ * <p>
+ * Each runner has its own {@link AdaptiveConcurrencyLimiter}, so adding
+ * runners adds capacity and an overloaded instance only backs off its
+ * own limit. A request {@linkplain #select(Runner) selects} a runner by
+ * the pool's {@link Policy}, preferring one with a free slot, waits for
+ * a slot on it and then {@linkplain #lease(Runner) leases} it, so a
+ * runner's outstanding count holds only requests actually in flight.
+ * The request reports its outcome through the {@link Lease}. A runner
+ * that fails a number of times in a row is marked unhealthy and
+ * receives no requests for a cooldown period, after which it is tried
+ * again; one success makes it healthy. A retry can ask for a runner
+ * other than the one that failed it. When every runner is unhealthy,
+ * requests go to the one whose cooldown ends first, so a pool never
+ * refuses a request.
+ * </p>
+ */
+final class RunnerPool {
+
+    /**
+     * How a runner is chosen among the healthy ones.
+     */
+    enum Policy {
+        /** The runner with the fewest requests in flight. */
+        LEAST_OUTSTANDING,
+        /**
+         * The runner with the lowest product of requests in flight
+         * (plus one) and average latency, so slower instances get
+         * proportionally less work.
+         */
+        LATENCY_WEIGHTED;
+
+        /**
+         * Parses a policy name such as {@code "least-outstanding"} or
+         * {@code "latency-weighted"} (case-insensitive, {@code -} or
+         * {@code _}).
+         *
+         * @param name policy name
+         * @return the policy
+         * @throws IllegalArgumentException if the name is not recognised
+         */
+        static Policy parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /** Weight of the newest sample in a runner's average latency. */
+    private static final double LATENCY_ALPHA = 0.3;
+
+    /**
+     * Concurrency bounds of a runner until
+     * {@link #configureConcurrency(int, int, int)} is called; the
+     * initial two is the previous fixed value.
+     */
+    private static final int DEFAULT_MIN_CONCURRENCY = 1;
+    private static final int DEFAULT_MAX_CONCURRENCY = 16;
+    private static final int DEFAULT_INITIAL_CONCURRENCY = 2;
+
+    /** State of one runner instance. */
+    static final class Runner {
+        private final URI uri;
+        private final AdaptiveConcurrencyLimiter limiter;
+        private int outstanding;
+        private double latencyMs;
+        private int consecutiveFailures;
+        private long unhealthyUntil;
+        private boolean unhealthy;
+
+        private Runner(URI uri) {
+            this.uri = uri;
+            this.limiter = new AdaptiveConcurrencyLimiter(uri.toString(),
+                    DEFAULT_MIN_CONCURRENCY, DEFAULT_MAX_CONCURRENCY, DEFAULT_INITIAL_CONCURRENCY);
+        }
+
+        /**
+         * @return the runner's URI
+         */
+        URI uri() {
+            return uri;
+        }
+
+        /**
+         * @return the limiter of the runner's requests in flight
+         */
+        AdaptiveConcurrencyLimiter limiter() {
+            return limiter;
+        }
+    }
+
+    /**
+     * One request's hold on a runner. Only the first call to
+     * {@link #success(long)}, {@link #failure(String)} or
+     * {@link #cancel()} counts; later calls do nothing.
+     */
+    final class Lease {
+        private final Runner runner;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(Runner runner) {
+            this.runner = runner;
+        }
+
+        /**
+         * @return the leased runner
+         */
+        Runner runner() {
+            return runner;
+        }
+
+        /**
+         * Records a request the runner answered normally.
+         *
+         * @param latencyMs time the request took
+         */
+        void success(long latencyMs) {
+            if (released.compareAndSet(false, true)) {
+                onSuccess(runner, latencyMs);
+            }
+        }
+
+        /**
+         * Records a request that failed because of the runner.
+         *
+         * @param reason short description for the log
+         * @return {@code true} if another runner of the pool is healthy
+         *         and can take over, so the failure need not count
+         *         against the pool as a whole
+         */
+        boolean failure(String reason) {
+            return released.compareAndSet(false, true) && onFailure(runner, reason);
+        }
+
+        /**
+         * Returns the runner without a verdict on its health.
+         */
+        void cancel() {
+            if (released.compareAndSet(false, true)) {
+                release(runner);
+            }
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<Runner> runners = new ArrayList<>();
+
+    private Policy policy;
+    private int failureThreshold;
+    private long cooldownNanos;
+    private int next;
+
+    /**
+     * Creates a pool in which every runner starts healthy.
+     *
+     * @param uris             runner URIs (at least one)
+     * @param policy           runner selection policy
+     * @param failureThreshold consecutive failures that mark a runner
+     *                         unhealthy
+     * @param cooldownMillis   time an unhealthy runner is left alone
+     * @throws IllegalArgumentException if no URI is given
+     */
+    RunnerPool(List<URI> uris, Policy policy, int failureThreshold, long cooldownMillis) {
+        if (uris.isEmpty()) {
+            throw new IllegalArgumentException("At least one runner URI is required");
+        }
+        uris.forEach(uri -> runners.add(new Runner(uri)));
+        reconfigure(policy, failureThreshold, cooldownMillis);
+    }
+
+    /**
+     * Parses a comma-separated list of runner URIs, ignoring blanks.
+     *
+     * @param value the list, e.g. the value of {@code benchmark.runner}
+     * @return the URIs in order
+     * @throws IllegalArgumentException if an entry is not a valid URI
+     */
+    static List<URI> parseUris(String value) {
+        List<URI> uris = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (!part.isBlank()) {
+                uris.add(URI.create(part.trim()));
+            }
+        }
+        return uris;
+    }
+
+    /**
+     * Replaces the selection policy and health thresholds. Runner state
+     * is kept.
+     *
+     * @param policy           runner selection policy
+     * @param failureThreshold consecutive failures that mark a runner
+     *                         unhealthy
+     * @param cooldownMillis   time an unhealthy runner is left alone
+     */
+    void reconfigure(Policy policy, int failureThreshold, long cooldownMillis) {
+        lock.lock();
+        try {
+            this.policy = policy;
+            this.failureThreshold = Math.max(1, failureThreshold);
+            this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, cooldownMillis));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies concurrency bounds to the limiter of every runner, each of
+     * which then starts again from {@code initialLimit}.
+     *
+     * @param minLimit     floor of each runner's limit
+     * @param maxLimit     ceiling of each runner's limit
+     * @param initialLimit starting limit of each runner
+     */
+    void configureConcurrency(int minLimit, int maxLimit, int initialLimit) {
+        runners.forEach(runner -> runner.limiter.reconfigure(minLimit, maxLimit, initialLimit));
+    }
+
+    /**
+     * @return the sum of the runners' concurrency ceilings, i.e. the most
+     *         requests the pool can have in flight
+     */
+    int maxConcurrency() {
+        int total = 0;
+        for (Runner runner : runners) {
+            total += runner.limiter.getMaxLimit();
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of runners in the pool
+     */
+    int size() {
+        return runners.size();
+    }
+
+    /**
+     * Leases a runner for one request, without waiting for a slot on it.
+     *
+     * @param avoid runner to pass over if any other healthy one is
+     *              available, e.g. the one that failed the previous
+     *              attempt; may be {@code null}
+     * @return the lease
+     */
+    Lease acquire(Runner avoid) {
+        return lease(select(avoid));
+    }
+
+    /**
+     * Chooses a runner for one request without leasing it. Healthy
+     * runners with a free concurrency slot come first, so requests
+     * wait on a full runner only while every other one is full too.
+     *
+     * @param avoid runner to pass over if any other healthy one is
+     *              available, e.g. the one that failed the previous
+     *              attempt; may be {@code null}
+     * @return the runner
+     */
+    Runner select(Runner avoid) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            Runner chosen = choose(now, avoid, true);
+            if (chosen == null) {
+                chosen = choose(now, avoid, false);
+            }
+            if (chosen == null) {
+                chosen = choose(now, null, true);
+            }
+            if (chosen == null) {
+                chosen = choose(now, null, false);
+            }
+            if (chosen == null) {
+                chosen = runners.get(0);
+                for (Runner runner : runners) {
+                    if (runner.unhealthyUntil - chosen.unhealthyUntil < 0) {
+                        chosen = runner;
+                    }
+                }
+            }
+            return chosen;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Leases a runner chosen by {@link #select(Runner)}, once the request
+     * holds a slot on it.
+     *
+     * @param runner a runner of this pool
+     * @return the lease
+     */
+    Lease lease(Runner runner) {
+        lock.lock();
+        try {
+            runner.outstanding++;
+            return new Lease(runner);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Picks the best healthy runner other than {@code avoid}, starting
+     * the scan at a rotating position so that ties are spread evenly. A
+     * runner without latency samples is weighted with the average of the
+     * others.
+     */
+    private Runner choose(long now, Runner avoid, boolean withRoom) {
+        double measured = 0;
+        int samples = 0;
+        for (Runner runner : runners) {
+            if (runner.latencyMs > 0) {
+                measured += runner.latencyMs;
+                samples++;
+            }
+        }
+        double defaultLatency = samples == 0 ? 1 : measured / samples;
+
+        Runner best = null;
+        double bestScore = Double.MAX_VALUE;
+        int n = runners.size();
+        for (int i = 0; i < n; i++) {
+            Runner runner = runners.get((next + i) % n);
+            if (runner == avoid || runner.unhealthy && runner.unhealthyUntil - now > 0
+                    || withRoom && !runner.limiter.hasRoom()) {
+                continue;
+            }
+            double score = policy == Policy.LATENCY_WEIGHTED
+                    ? (runner.outstanding + 1)
+                            * (runner.latencyMs > 0 ? runner.latencyMs : defaultLatency)
+                    : runner.outstanding;
+            if (score < bestScore) {
+                best = runner;
+                bestScore = score;
+            }
+        }
+        next = (next + 1) % n;
+        return best;
+    }
+
+    private void onSuccess(Runner runner, long latencyMs) {
+        lock.lock();
+        try {
+            runner.outstanding--;
+            runner.latencyMs = runner.latencyMs == 0
+                    ? latencyMs
+                    : LATENCY_ALPHA * latencyMs + (1 - LATENCY_ALPHA) * runner.latencyMs;
+            runner.consecutiveFailures = 0;
+            if (runner.unhealthy) {
+                runner.unhealthy = false;
+                runner.unhealthyUntil = 0;
+                RunBenchmarkAssessment.logInfo("Runner %s is healthy again", runner.uri);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean onFailure(Runner runner, String reason) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            runner.outstanding--;
+            runner.consecutiveFailures++;
+            if (runner.consecutiveFailures >= failureThreshold) {
+                if (!runner.unhealthy || runner.unhealthyUntil - now <= 0) {
+                    RunBenchmarkAssessment.logSevere(
+                            "Runner %s marked unhealthy after %d consecutive failure(s) (%s); "
+                                    + "trying it again in %ds",
+                            runner.uri, runner.consecutiveFailures, reason,
+                            TimeUnit.NANOSECONDS.toSeconds(cooldownNanos));
+                }
+                runner.unhealthy = true;
+                runner.unhealthyUntil = now + cooldownNanos;
+            }
+            for (Runner other : runners) {
+                if (other != runner && (!other.unhealthy || other.unhealthyUntil - now <= 0)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Runner runner) {
+        lock.lock();
+        try {
+            runner.outstanding--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param runner a runner of this pool
+     * @return the runner's requests in flight
+     */
+    int outstanding(Runner runner) {
+        lock.lock();
+        try {
+            return runner.outstanding;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package cessda.cmv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token-bucket rate limiter for the requests sent to one runner.
+ *
+ * <p>
+ * Tokens are added at {@code rate} per second up to {@code burst}; each
+ * request takes one. A caller that finds the bucket empty reserves the
+ * next token and sleeps until it is due, so waiting callers are served in
+ * arrival order and no lock is held while sleeping. A rate of zero or
+ * less disables the limit. {@link #pause(long)} empties the bucket until
+ * a given time, e.g. when the runner sends {@code Retry-After}.
+ * </p>
+ */
+final class TokenBucket {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private double rate;
+    private double burst;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param rate  requests per second; zero or less for no limit
+     * @param burst bucket size (at least 1)
+     */
+    TokenBucket(double rate, int burst) {
+        this.lastRefill = System.nanoTime();
+        reconfigure(rate, burst);
+    }
+
+    /**
+     * Replaces the rate and bucket size and refills the bucket. A pause
+     * in force is kept.
+     *
+     * @param rate  requests per second; zero or less for no limit
+     * @param burst bucket size (at least 1)
+     */
+    void reconfigure(double rate, int burst) {
+        lock.lock();
+        try {
+            this.rate = rate;
+            this.burst = Math.max(1, burst);
+            this.tokens = this.burst;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a token, sleeping until one is available.
+     *
+     * @throws InterruptedException if interrupted while sleeping
+     */
+    void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Takes a token only if one is available now, for requests that are
+     * worth sending only without delay.
+     *
+     * @return {@code true} if a token was taken
+     */
+    boolean tryAcquire() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (lastRefill - now > 0) {
+                return false;
+            }
+            if (rate <= 0) {
+                return true;
+            }
+            tokens = Math.min(burst, tokens + (now - lastRefill) * rate / 1e9);
+            lastRefill = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Empties the bucket and holds back all requests for the given time.
+     * A shorter pause never cuts a longer one short.
+     *
+     * @param millis length of the pause
+     */
+    void pause(long millis) {
+        lock.lock();
+        try {
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            if (until - lastRefill > 0) {
+                lastRefill = until;
+            }
+            tokens = Math.min(tokens, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a token, possibly one that only becomes available later.
+     *
+     * @return nanoseconds until the token is due; zero if it is
+     *         available now
+     */
+    long reserve() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            long paused = Math.max(0, lastRefill - now);
+            if (rate <= 0) {
+                return paused;
+            }
+            if (paused == 0) {
+                tokens = Math.min(burst, tokens + (now - lastRefill) * rate / 1e9);
+                lastRefill = now;
+            }
+            tokens -= 1;
+            return tokens >= 0 ? paused : paused + (long) (-tokens / rate * 1e9);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -9,6 +9,7 @@ package cessda.cmv.benchmark.controller;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -16,6 +17,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import cessda.cmv.benchmark.service.BenchmarkService;
+import cessda.cmv.benchmark.service.ShuttingDownException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -56,6 +58,7 @@ public class BenchmarkController {
             @ApiResponse(responseCode = "200", description = "Identifiers fetched successfully",
                 content = @Content(schema = @Schema(example =
                     "{\"status\":\"ok\",\"message\":\"Fetched identifiers for 10 set(s)\"}"))),
+            @ApiResponse(responseCode = "400", description = "Invalid 'from' or 'until' datestamp"),
             @ApiResponse(responseCode = "500", description = "Fetch failed")
         }
     )
@@ -80,12 +83,33 @@ public class BenchmarkController {
 
         @Parameter(description = "Fetch identifiers for a single named set only. " +
                    "When supplied, the 'sets' parameter is ignored.")
-        @RequestParam(required = false) String fetchSet
+        @RequestParam(required = false) String fetchSet,
+
+        @Parameter(description = "When true, fetch all sets in one pass over the whole " +
+                   "repository, routing each record to its sets by setSpec. " +
+                   "Ignored when 'fetchSet' is set. Default: false")
+        @RequestParam(required = false, defaultValue = "false") boolean singlePass,
+
+        @Parameter(description = "When true, fetch only records changed since the previous " +
+                   "harvest of each set and merge them into its guids file. Default: false")
+        @RequestParam(required = false, defaultValue = "false") boolean incremental,
+
+        @Parameter(description = "Fetch only records changed since this OAI-PMH datestamp " +
+                   "(YYYY-MM-DD or YYYY-MM-DDThh:mm:ssZ) and merge them into the guids files.")
+        @RequestParam(required = false) String from,
+
+        @Parameter(description = "Fetch only records changed up to this OAI-PMH datestamp " +
+                   "and merge them into the guids files.")
+        @RequestParam(required = false) String until
 
     ) {
         try {
-            String message = service.fetchIdentifiers(baseUrl, verb, metadataPrefix, sets, fetchSet);
+            String message = service.fetchIdentifiers(baseUrl, verb, metadataPrefix, sets,
+                    fetchSet, singlePass, incremental, from, until);
             return ResponseEntity.ok(response("ok", message));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(response("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(response("error", e.getMessage()));
@@ -106,7 +130,8 @@ public class BenchmarkController {
             @ApiResponse(responseCode = "200", description = "Assessment completed",
                 content = @Content(schema = @Schema(example =
                     "{\"status\":\"ok\",\"message\":\"Processed all default set files\"}"))),
-            @ApiResponse(responseCode = "500", description = "Assessment failed")
+            @ApiResponse(responseCode = "500", description = "Assessment failed"),
+            @ApiResponse(responseCode = "503", description = "Shutting down; not accepting new runs")
         }
     )
     @PostMapping("/run-assessment")
@@ -130,12 +155,24 @@ public class BenchmarkController {
 
         @Parameter(description = "When true, process guids_*.txt files for all default sets " +
                    "(de, el, en, fi, fr, hr, nl, sl, sl-SI, sv). Default: false")
-        @RequestParam(required = false, defaultValue = "false") boolean processAll
+        @RequestParam(required = false, defaultValue = "false") boolean processAll,
+
+        @Parameter(description = "When true, skip GUIDs recorded as completed in the " +
+                   "progress journal of an earlier, interrupted run. Default: false")
+        @RequestParam(required = false, defaultValue = "false") boolean resume,
+
+        @Parameter(description = "When true, skip records whose OAI-PMH datestamp is not " +
+                   "newer than their existing result file. Default: false")
+        @RequestParam(required = false, defaultValue = "false") boolean incremental
 
     ) {
         try {
-            String message = service.runAssessment(benchmarkAlgorithmUri, guidFile, guid, processAll);
+            String message = service.runAssessment(
+                    benchmarkAlgorithmUri, guidFile, guid, processAll, resume, incremental);
             return ResponseEntity.ok(response("ok", message));
+        } catch (ShuttingDownException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(response("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(response("error", e.getMessage()));
@@ -10,8 +10,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import cessda.cmv.benchmark.GenerateManifest;
@@ -43,6 +47,26 @@ public class BenchmarkService {
     @Value("${benchmark.results-dir:/results}")
     private String resultsDir;
 
+    /** Concurrent requests to the OAI-PMH endpoint while fetching identifiers. */
+    @Value("${benchmark.harvest.max-connections:4}")
+    private int harvestConnections;
+
+    /** Minimum time in milliseconds between the starts of two OAI-PMH requests. */
+    @Value("${benchmark.harvest.request-delay-ms:0}")
+    private long harvestDelayMs;
+
+    /**
+     * Whether runs interrupted by a shutdown are resumed once the application
+     * is ready; turned off in the {@code test} profile.
+     */
+    @Value("${benchmark.shutdown.resume-on-start:true}")
+    private boolean resumeOnStart;
+
+    /**
+     * Configured assessment bean; supplies the default algorithm, and the
+     * runner, timeouts and settings of every run.
+     */
+    @Autowired
     RunBenchmarkAssessment assessment;
 
     // -------------------------------------------------------------------------
@@ -51,14 +75,24 @@ public class BenchmarkService {
 
     /**
      * Fetches identifiers from an OAI-PMH endpoint and writes guids_*.txt
-     * files to the data volume (/data).
+     * files to the data volume (/data). With {@code singlePass}, all sets
+     * are read in one unfiltered pass over the repository. With
+     * {@code incremental}, {@code from} or {@code until}, only changed
+     * records are fetched and merged into the existing files.
+     *
+     * @throws IllegalArgumentException if {@code from} or {@code until} is
+     *                                  not an OAI-PMH datestamp
      */
     public String fetchIdentifiers(
             String baseUrl,
             String verb,
             String metadataPrefix,
             String sets,
-            String fetchSet) throws IOException, InterruptedException {
+            String fetchSet,
+            boolean singlePass,
+            boolean incremental,
+            String from,
+            String until) throws IOException, InterruptedException {
 
         publishSystemProperties();
         Files.createDirectories(Paths.get(dataDir));
@@ -69,6 +103,11 @@ public class BenchmarkService {
 
         GetOaiPmhIdentifiers client =
                 new GetOaiPmhIdentifiers(resolvedBase, resolvedVerb, resolvedPrefix);
+        client.setMaxConnections(harvestConnections);
+        client.setRequestDelay(Duration.ofMillis(harvestDelayMs));
+        client.setIncremental(incremental);
+        client.setFrom(from);
+        client.setUntil(until);
 
         if (fetchSet != null && !fetchSet.isBlank()) {
             client.fetchIdentifiersForLanguage(fetchSet.trim());
@@ -80,6 +119,11 @@ public class BenchmarkService {
                 ? sets.split(",")
                 : GetOaiPmhIdentifiers.DEFAULT_SETS;
 
+        if (singlePass) {
+            client.fetchAllSetsInOnePass(resolvedSets);
+            return "Fetched identifiers for " + resolvedSets.length
+                    + " set(s) in one pass -> " + dataDir;
+        }
         client.fetchAllLanguageIdentifiers(resolvedSets);
         return "Fetched identifiers for " + resolvedSets.length + " set(s) -> " + dataDir;
     }
@@ -91,19 +135,33 @@ public class BenchmarkService {
     /**
      * Reads guids_*.txt files from the data volume, posts each GUID URL to the
      * Champion API, and writes JSON result files to the results volume.
+     *
+     * When {@code resume} is set, GUIDs recorded as completed in each set's
+     * progress journal by an earlier, interrupted run are skipped. When
+     * {@code incremental} is set, records whose datestamp is not newer than
+     * their existing result file are skipped.
+     *
+     * @throws ShuttingDownException if the application is shutting down
      */
     public String runAssessment(
             String spreadsheetUri,
             String guidFile,
             String guid,
-            boolean processAll) throws IOException, InterruptedException {
+            boolean processAll,
+            boolean resume,
+            boolean incremental) throws IOException, InterruptedException {
 
+        if (RunBenchmarkAssessment.isShuttingDown()) {
+            throw new ShuttingDownException("Shutting down; not accepting new runs");
+        }
         publishSystemProperties();
         Files.createDirectories(Paths.get(dataDir));
         Files.createDirectories(Paths.get(resultsDir));
 
         String resolvedUri = nvl(spreadsheetUri, assessment.getBenchmarkAlgorithm());
-        RunBenchmarkAssessment runner = new RunBenchmarkAssessment(resolvedUri,assessment.getBenchmarkRunner());
+        RunBenchmarkAssessment runner = assessment.withAlgorithm(resolvedUri);
+        runner.setResume(resume);
+        runner.setIncremental(incremental);
         if (guid != null && !guid.isBlank()) {
             runner.processSingleGuid(guid.trim());
             return "Processed single GUID: " + guid.trim()
@@ -129,6 +187,26 @@ public class BenchmarkService {
                 + " -> results written to " + resultsDir;
     }
 
+    /**
+     * Resumes, in the background, the runs a previous shutdown interrupted:
+     * the GUIDs they left unprocessed in each results directory are
+     * assessed with the algorithm they were started with.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedRuns() {
+        if (!resumeOnStart) {
+            return;
+        }
+        publishSystemProperties();
+        Thread.ofVirtual().name("resume-pending").start(() -> {
+            try {
+                assessment.resumePending();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
     // -------------------------------------------------------------------------
     // 3. Generate Manifest
     // -------------------------------------------------------------------------
@@ -0,0 +1,21 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark.service;
+
+/**
+ * Thrown when a new run is requested while the application is shutting
+ * down. The controller answers it with HTTP 503 so that clients can
+ * retry once the application is back.
+ */
+public class ShuttingDownException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ShuttingDownException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link AdaptiveConcurrencyLimiter}.
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    // ── Bounds ───────────────────────────────────────────────────────────────
+
+    @Test
+    void initialLimitIsClampedToBounds() {
+        assertEquals(4, new AdaptiveConcurrencyLimiter(1, 4, 10).getLimit());
+        assertEquals(2, new AdaptiveConcurrencyLimiter(2, 4, 0).getLimit());
+    }
+
+    @Test
+    void floorIsAtLeastOne() {
+        assertEquals(1, new AdaptiveConcurrencyLimiter(0, 4, 0).getLimit());
+    }
+
+    @Test
+    void reconfigureReplacesLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4, 2);
+        limiter.reconfigure(3, 8, 5);
+        assertEquals(5, limiter.getLimit());
+        assertEquals(8, limiter.getMaxLimit());
+    }
+
+    // ── Adaptation ───────────────────────────────────────────────────────────
+
+    @Test
+    void limitGrowsWhileLatencyIsFlat() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 8, 2);
+        for (int i = 0; i < 2; i++) {
+            limiter.onSuccess(1_000);
+        }
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void limitDoesNotGrowWhenLatencyRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 8, 2);
+        limiter.onSuccess(1_000);
+        limiter.onSuccess(30_000);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void limitNeverExceedsCeiling() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 3, 3);
+        for (int i = 0; i < 20; i++) {
+            limiter.onSuccess(1_000);
+        }
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void overloadHalvesLimitOncePerCoolDown() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 16, 8);
+        limiter.onOverload("HTTP 504");
+        limiter.onOverload("HTTP 504");
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void overloadNeverDropsBelowFloor() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 16, 2);
+        limiter.onOverload("HTTP 502");
+        assertEquals(2, limiter.getLimit());
+    }
+
+    // ── Acquire / release ────────────────────────────────────────────────────
+
+    @Test
+    void acquireBlocksAtLimitUntilRelease() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+        limiter.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = Thread.ofVirtual().start(() -> {
+            try {
+                limiter.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS),
+                "second acquire must block while the only slot is taken");
+        limiter.release();
+        assertTrue(acquired.await(1, TimeUnit.SECONDS),
+                "second acquire must proceed once the slot is released");
+        waiter.join();
+        assertEquals(1, limiter.getInFlight());
+    }
+}
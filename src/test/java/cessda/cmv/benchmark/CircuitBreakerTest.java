@@ -0,0 +1,112 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link CircuitBreaker}.
+ */
+class CircuitBreakerTest {
+
+    // ── Tripping ─────────────────────────────────────────────────────────────
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 1.0, 100, 60_000, 1);
+        breaker.onFailure(false, "HTTP 504");
+        breaker.onFailure(false, "HTTP 504");
+        assertTrue(breaker.isClosed());
+        breaker.onFailure(false, "HTTP 504");
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void successResetsConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 1.0, 100, 60_000, 1);
+        breaker.onFailure(false, "timeout");
+        breaker.onFailure(false, "timeout");
+        breaker.onSuccess(false);
+        breaker.onFailure(false, "timeout");
+        breaker.onFailure(false, "timeout");
+        assertTrue(breaker.isClosed());
+    }
+
+    @Test
+    void opensWhenErrorRateOverFullWindowIsReached() {
+        CircuitBreaker breaker = new CircuitBreaker(100, 0.5, 4, 60_000, 1);
+        breaker.onSuccess(false);
+        breaker.onFailure(false, "HTTP 502");
+        breaker.onSuccess(false);
+        assertTrue(breaker.isClosed(), "the rate must not apply before the window is full");
+        breaker.onFailure(false, "HTTP 502");
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    // ── Half-open probing ────────────────────────────────────────────────────
+
+    @Test
+    void successfulProbeClosesCircuit() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1.0, 10, 20, 1);
+        breaker.onFailure(false, "HTTP 504");
+
+        boolean probe = breaker.acquirePermission();
+        assertTrue(probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onSuccess(probe);
+        assertTrue(breaker.isClosed());
+        assertFalse(breaker.acquirePermission(), "a closed circuit admits without probing");
+    }
+
+    @Test
+    void failedProbeReopensCircuit() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1.0, 10, 20, 1);
+        breaker.onFailure(false, "HTTP 504");
+
+        boolean probe = breaker.acquirePermission();
+        breaker.onFailure(probe, "HTTP 504");
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void onlyConfiguredNumberOfProbesAreAdmitted() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1.0, 10, 0, 1);
+        breaker.onFailure(false, "HTTP 504");
+        boolean probe = breaker.acquirePermission();
+
+        Thread second = Thread.ofVirtual().start(() -> {
+            try {
+                breaker.acquirePermission();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertFalse(second.join(java.time.Duration.ofMillis(100)),
+                "a second caller must wait while the probe is in flight");
+
+        breaker.onSuccess(probe);
+        assertTrue(second.join(java.time.Duration.ofSeconds(5)),
+                "closing the circuit must release waiting callers");
+    }
+
+    @Test
+    void openCircuitBlocksUntilOpenPeriodEnds() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1.0, 10, 200, 1);
+        breaker.onFailure(false, "HTTP 504");
+
+        long start = System.nanoTime();
+        breaker.acquirePermission();
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitedMs >= 150, "dispatch must pause while open, waited " + waitedMs + "ms");
+    }
+}
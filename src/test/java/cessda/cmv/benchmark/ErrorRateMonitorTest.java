@@ -0,0 +1,71 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link ErrorRateMonitor}.
+ */
+class ErrorRateMonitorTest {
+
+    @Test
+    void canaryTripsAsSoonAsItsOutcomeIsCertain() {
+        ErrorRateMonitor monitor = new ErrorRateMonitor(4, 0.5, 0);
+        assertFalse(monitor.record(true));
+        assertTrue(monitor.record(true), "two of four failed must trip a 50% canary");
+        assertTrue(monitor.isCanaryFailed());
+        assertEquals(2, monitor.canaryFailures());
+    }
+
+    @Test
+    void canaryBelowThresholdPasses() {
+        ErrorRateMonitor monitor = new ErrorRateMonitor(4, 0.5, 0);
+        monitor.record(false);
+        monitor.record(true);
+        monitor.record(false);
+        monitor.record(false);
+        assertFalse(monitor.isTripped());
+        assertFalse(monitor.record(true), "without a window nothing is checked after the canary");
+    }
+
+    @Test
+    void windowTripsOnceFullAfterCanary() {
+        ErrorRateMonitor monitor = new ErrorRateMonitor(2, 0.5, 4);
+        monitor.record(false);
+        monitor.record(false);
+        monitor.record(true);
+        assertFalse(monitor.isTripped(), "the rate must not apply before the window is full");
+        assertTrue(monitor.record(true));
+        assertFalse(monitor.isCanaryFailed());
+        assertEquals(0.5, monitor.windowErrorRate());
+    }
+
+    @Test
+    void windowSlidesOverOldOutcomes() {
+        ErrorRateMonitor monitor = new ErrorRateMonitor(0, 0.75, 4);
+        monitor.record(true);
+        monitor.record(true);
+        monitor.record(false);
+        monitor.record(false);
+        monitor.record(false);
+        assertEquals(0.25, monitor.windowErrorRate(), "the oldest failure must drop out");
+        assertFalse(monitor.isTripped());
+    }
+
+    @Test
+    void trippedMonitorReportsOnlyOnce() {
+        ErrorRateMonitor monitor = new ErrorRateMonitor(1, 0.5, 0);
+        assertTrue(monitor.record(true));
+        assertFalse(monitor.record(true));
+        assertTrue(monitor.isTripped());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link FairQueue}.
+ */
+class FairQueueTest {
+
+    @Test
+    void roundRobinAlternatesBetweenEqualLanes() throws InterruptedException {
+        FairQueue<String> queue = new FairQueue<>(FairQueue.Policy.ROUND_ROBIN);
+        FairQueue.Lane<String> a = queue.addLane(1, 0);
+        FairQueue.Lane<String> b = queue.addLane(1, 0);
+        for (int i = 0; i < 3; i++) {
+            queue.put(a, "a");
+        }
+        queue.put(b, "b");
+        queue.put(b, "b");
+
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            order.add(queue.take());
+        }
+        assertEquals(List.of("a", "b", "a", "b", "a"), order);
+    }
+
+    @Test
+    void roundRobinHonoursWeights() throws InterruptedException {
+        FairQueue<String> queue = new FairQueue<>(FairQueue.Policy.ROUND_ROBIN);
+        FairQueue.Lane<String> heavy = queue.addLane(3, 0);
+        FairQueue.Lane<String> light = queue.addLane(1, 0);
+        for (int i = 0; i < 40; i++) {
+            queue.put(heavy, "heavy");
+            queue.put(light, "light");
+        }
+
+        int heavyCount = 0;
+        for (int i = 0; i < 20; i++) {
+            if ("heavy".equals(queue.take())) {
+                heavyCount++;
+            }
+        }
+        assertEquals(15, heavyCount, "a weight of 3:1 must give three quarters of the takes");
+    }
+
+    @Test
+    void smallestFirstDrainsSmallerLaneBeforeLargerOne() throws InterruptedException {
+        FairQueue<String> queue = new FairQueue<>(FairQueue.Policy.SMALLEST_FIRST);
+        FairQueue.Lane<String> large = queue.addLane(1, 1_000);
+        FairQueue.Lane<String> small = queue.addLane(1, 2);
+        queue.put(large, "large");
+        queue.put(small, "small");
+        queue.put(large, "large");
+        queue.put(small, "small");
+
+        assertEquals("small", queue.take());
+        assertEquals("small", queue.take());
+        assertEquals("large", queue.take());
+    }
+
+    @Test
+    void takeWaitsForPut() throws InterruptedException {
+        FairQueue<String> queue = new FairQueue<>(FairQueue.Policy.ROUND_ROBIN);
+        FairQueue.Lane<String> lane = queue.addLane(1, 0);
+        Thread producer = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            queue.put(lane, "late");
+        });
+        assertEquals("late", queue.take());
+        producer.join();
+    }
+
+    @Test
+    void removeLaneReturnsQueuedElements() {
+        FairQueue<String> queue = new FairQueue<>(FairQueue.Policy.ROUND_ROBIN);
+        FairQueue.Lane<String> lane = queue.addLane(1, 0);
+        queue.put(lane, "x");
+        queue.put(lane, "y");
+
+        assertEquals(List.of("x", "y"), queue.removeLane(lane));
+        assertTrue(queue.drain().isEmpty());
+    }
+
+    @Test
+    void policyNamesAreParsedLeniently() {
+        assertEquals(FairQueue.Policy.ROUND_ROBIN, FairQueue.Policy.parse("round-robin"));
+        assertEquals(FairQueue.Policy.SMALLEST_FIRST, FairQueue.Policy.parse(" Smallest_First "));
+        assertThrows(IllegalArgumentException.class, () -> FairQueue.Policy.parse("random"));
+    }
+}
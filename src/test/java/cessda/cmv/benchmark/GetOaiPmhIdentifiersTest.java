@@ -13,9 +13,22 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import org.apache.commons.cli.CommandLine;
 import org.junit.jupiter.api.AfterEach;
@@ -25,12 +38,15 @@ import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import com.sun.net.httpserver.HttpServer;
+
 /**
  * Unit tests for {@link GetOaiPmhIdentifiers}.
  *
- * <p>HTTP calls are not made; all tests exercise parsing, URL
- * construction, file writing, and CLI argument handling using
- * in-memory data or temporary files.</p>
+ * <p>Most tests exercise parsing, URL construction, file writing, and
+ * CLI argument handling using in-memory data or temporary files. Harvests
+ * run against a local {@link HttpServer}; their GUID files are written
+ * under set names unique to the test and removed afterwards.</p>
  */
 class GetOaiPmhIdentifiersTest {
 
@@ -46,9 +62,98 @@ class GetOaiPmhIdentifiersTest {
                 GetOaiPmhIdentifiers.DEFAULT_METADATA_PREFIX);
     }
 
+    private static final String RESPONSE_DATE = "2024-07-01T10:00:00.250Z";
+
+    private HttpServer endpoint;
+    private final List<String> harvestedSets = new ArrayList<>();
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+
     @AfterEach
-    void tearDown() {
+    void tearDown() throws IOException {
         client = null;
+        if (endpoint != null) {
+            endpoint.stop(0);
+        }
+        for (String set : harvestedSets) {
+            Path file = GetOaiPmhIdentifiers.resolveGuidsPath(set);
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".part"));
+        }
+    }
+
+    /**
+     * Starts a local endpoint answering each request with the page
+     * {@code pages} returns for its query, or HTTP 500 for {@code null},
+     * after {@code delayMillis}. Counts the requests in progress and
+     * records the queries in {@link #queries}.
+     */
+    private String startEndpoint(Function<String, String> pages, long delayMillis,
+            AtomicInteger inFlight, AtomicInteger peak) throws IOException {
+        endpoint = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        endpoint.setExecutor(Executors.newCachedThreadPool());
+        endpoint.createContext("/", exchange -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            String query = exchange.getRequestURI().getRawQuery();
+            queries.add(query);
+            String page = pages.apply(query);
+            byte[] body = (page != null ? page : "").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(page != null ? 200 : 500, body.length > 0 ? body.length : -1);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        endpoint.start();
+        return "http://127.0.0.1:" + endpoint.getAddress().getPort() + "/oai";
+    }
+
+    private String startEndpoint(Function<String, String> pages) throws IOException {
+        return startEndpoint(pages, 0, new AtomicInteger(), new AtomicInteger());
+    }
+
+    /** A ListIdentifiers page with the given headers and resumption token. */
+    private static String listPage(String resumptionToken, String... headers) {
+        return "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">"
+                + "<responseDate>" + RESPONSE_DATE + "</responseDate>"
+                + "<ListIdentifiers>" + String.join("", headers)
+                + (resumptionToken != null
+                        ? "<resumptionToken>" + resumptionToken + "</resumptionToken>"
+                        : "<resumptionToken/>")
+                + "</ListIdentifiers></OAI-PMH>";
+    }
+
+    /** A record header in the given {@code language:} sets. */
+    private static String header(String identifier, String datestamp, boolean deleted,
+            String... sets) {
+        StringBuilder header = new StringBuilder(deleted ? "<header status=\"deleted\">" : "<header>")
+                .append("<identifier>").append(identifier).append("</identifier>")
+                .append("<datestamp>").append(datestamp).append("</datestamp>");
+        for (String set : sets) {
+            header.append("<setSpec>language:").append(set).append("</setSpec>");
+        }
+        return header.append("</header>").toString();
+    }
+
+    /** The record lines of a set's GUID file, without the header comments. */
+    private static List<String> guidLines(String set) throws IOException {
+        return Files.readAllLines(GetOaiPmhIdentifiers.resolveGuidsPath(set)).stream()
+                .filter(line -> !line.isBlank() && !line.startsWith("#"))
+                .toList();
+    }
+
+    /** Set names unique to this test, removed with their files afterwards. */
+    private String[] uniqueSets(int count) {
+        String prefix = "harvest-test-" + System.nanoTime() + "-";
+        String[] sets = new String[count];
+        for (int i = 0; i < count; i++) {
+            sets[i] = prefix + i;
+            harvestedSets.add(sets[i]);
+        }
+        return sets;
     }
 
     // ── Constants ────────────────────────────────────────────────────────────
@@ -142,6 +247,45 @@ class GetOaiPmhIdentifiersTest {
                 "URL must still contain the identifier parameter key");
     }
 
+    // ── Record headers ───────────────────────────────────────────────────────
+
+    @Test
+    void parseHeadersKeepsDatestampAndDeletedStatus() throws Exception {
+        String xml = "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">"
+                + "<request verb=\"ListIdentifiers\">https://example.org/oai</request>"
+                + "<ListIdentifiers>"
+                + "<header><identifier>a1</identifier><datestamp>2024-05-01T12:00:00Z</datestamp>"
+                + "<setSpec>language:de</setSpec></header>"
+                + "<header status=\"deleted\"><identifier>b2</identifier>"
+                + "<datestamp>2024-06-01</datestamp></header>"
+                + "<resumptionToken/>"
+                + "</ListIdentifiers></OAI-PMH>";
+
+        List<GetOaiPmhIdentifiers.RecordHeader> headers = new ArrayList<>();
+        OaiPmhPageParser.parse(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), headers::add);
+
+        assertEquals(List.of(
+                new GetOaiPmhIdentifiers.RecordHeader("a1", "2024-05-01T12:00:00Z", false,
+                        List.of("language:de")),
+                new GetOaiPmhIdentifiers.RecordHeader("b2", "2024-06-01", true, List.of())),
+                headers);
+    }
+
+    @Test
+    void formatGuidLineAppendsDatestampAndStatus() {
+        String url = client.buildGetRecordUrl("a1");
+        assertEquals(url,
+                client.formatGuidLine(
+                        new GetOaiPmhIdentifiers.RecordHeader("a1", null, false, List.of())));
+        assertEquals(url + "\t2024-05-01",
+                client.formatGuidLine(
+                        new GetOaiPmhIdentifiers.RecordHeader("a1", "2024-05-01", false, List.of())));
+        assertEquals(url + "\t2024-05-01\tdeleted",
+                client.formatGuidLine(
+                        new GetOaiPmhIdentifiers.RecordHeader("a1", "2024-05-01", true, List.of())));
+    }
+
     // ── parseArgs ────────────────────────────────────────────────────────────
 
     @Test
@@ -196,6 +340,36 @@ class GetOaiPmhIdentifiersTest {
         assertEquals("de,en,fr", cmd.getOptionValue("sets"));
     }
 
+    @Test
+    void parseArgsRecognisesPolitenessOptions() throws IOException {
+        CommandLine cmd = GetOaiPmhIdentifiers.parseArgs(
+                new String[]{"-c", "2", "--request-delay-ms", "250"});
+        assertEquals("2", cmd.getOptionValue("max-connections"));
+        assertEquals("250", cmd.getOptionValue("request-delay-ms"));
+    }
+
+    @Test
+    void parseArgsRecognisesSinglePassOption() throws IOException {
+        CommandLine cmd = GetOaiPmhIdentifiers.parseArgs(new String[]{"-P", "-S", "de,en"});
+        assertTrue(cmd.hasOption("single-pass"));
+        assertEquals("de,en", cmd.getOptionValue("sets"));
+    }
+
+    @Test
+    void parseArgsRecognisesSelectiveHarvestOptions() throws IOException {
+        CommandLine cmd = GetOaiPmhIdentifiers.parseArgs(
+                new String[]{"-i", "--from", "2024-01-01", "--until", "2024-02-01T00:00:00Z"});
+        assertTrue(cmd.hasOption("incremental"));
+        assertEquals("2024-01-01", cmd.getOptionValue("from"));
+        assertEquals("2024-02-01T00:00:00Z", cmd.getOptionValue("until"));
+    }
+
+    @Test
+    void setFromRejectsValuesThatAreNotDatestamps() {
+        assertThrows(IllegalArgumentException.class, () -> client.setFrom("01/02/2024"));
+        assertDoesNotThrow(() -> client.setFrom(" "));
+    }
+
     @Test
     void parseArgsThrowsOnUnrecognisedOption() {
         assertThrows(IOException.class,
@@ -252,6 +426,184 @@ class GetOaiPmhIdentifiersTest {
                 () -> noOpClient.fetchAllLanguageIdentifiers(new String[]{}));
     }
 
+    @Test
+    void connectionCapHoldsAcrossClientsOfOneEndpoint() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        String baseUrl = startEndpoint(
+                query -> listPage(null, header("a1", "2024-05-01", false)), 100, inFlight, peak);
+
+        // The API creates a client per call; two calls overlap here.
+        List<Future<?>> harvests = new ArrayList<>();
+        try (ExecutorService calls = Executors.newFixedThreadPool(2)) {
+            for (int i = 0; i < 2; i++) {
+                GetOaiPmhIdentifiers perCall = new GetOaiPmhIdentifiers(
+                        baseUrl, "ListIdentifiers", "oai_ddi25");
+                perCall.setMaxConnections(2);
+                String[] sets = uniqueSets(4);
+                harvests.add(calls.submit(() -> {
+                    perCall.fetchAllLanguageIdentifiers(sets);
+                    return null;
+                }));
+            }
+            for (Future<?> harvest : harvests) {
+                harvest.get(30, TimeUnit.SECONDS);
+            }
+        }
+
+        assertEquals(2, peak.get(),
+                "Both clients together must keep to the endpoint's cap of 2");
+        for (String set : harvestedSets) {
+            assertTrue(Files.readString(GetOaiPmhIdentifiers.resolveGuidsPath(set)).contains("a1"),
+                    "Every set must still be harvested: " + set);
+        }
+    }
+
+    // ── Single pass ──────────────────────────────────────────────────────────
+
+    @Test
+    void singlePassRoutesEachRecordToTheSetsOfItsSetSpecs() throws Exception {
+        String[] sets = uniqueSets(2);
+        String baseUrl = startEndpoint(query -> query.contains("resumptionToken")
+                ? listPage(null, header("only-b", "2024-05-03", false, sets[1]))
+                : listPage("next",
+                        header("both", "2024-05-01", false, sets[0], sets[1]),
+                        header("elsewhere", "2024-05-02", false, "zz")));
+        GetOaiPmhIdentifiers harvester = new GetOaiPmhIdentifiers(
+                baseUrl, "ListIdentifiers", "oai_ddi25");
+
+        harvester.fetchAllSetsInOnePass(sets);
+
+        String both = harvester.buildGetRecordUrl("both") + "\t2024-05-01";
+        String onlyB = harvester.buildGetRecordUrl("only-b") + "\t2024-05-03";
+        assertEquals(List.of(both), guidLines(sets[0]));
+        assertEquals(List.of(both, onlyB), guidLines(sets[1]));
+    }
+
+    @Test
+    void singlePassReplacesNoFileUnlessTheWholePassSucceeds() throws Exception {
+        String[] sets = uniqueSets(2);
+        for (String set : sets) {
+            Files.writeString(GetOaiPmhIdentifiers.resolveGuidsPath(set), "previous\n");
+        }
+        String baseUrl = startEndpoint(query -> query.contains("resumptionToken")
+                ? null
+                : listPage("next", header("both", "2024-05-01", false, sets[0], sets[1])));
+        GetOaiPmhIdentifiers harvester = new GetOaiPmhIdentifiers(
+                baseUrl, "ListIdentifiers", "oai_ddi25");
+
+        assertThrows(IOException.class, () -> harvester.fetchAllSetsInOnePass(sets));
+
+        for (String set : sets) {
+            Path file = GetOaiPmhIdentifiers.resolveGuidsPath(set);
+            assertEquals("previous\n", Files.readString(file),
+                    "A failed pass must leave every set's file as it was: " + set);
+            assertTrue(Files.readString(file.resolveSibling(file.getFileName() + ".part"))
+                            .contains(harvester.buildGetRecordUrl("both")),
+                    "The pages fetched so far must be kept in every set's .part file: " + set);
+        }
+    }
+
+    @Test
+    void incrementalSinglePassMarksDeletionsWithoutSetSpecInTheSetsListingThem()
+            throws Exception {
+        String[] sets = uniqueSets(2);
+        String baseUrl = startEndpoint(query -> listPage(null,
+                header("gone", "2024-06-01", true),
+                header("new", "2024-06-02", false, sets[1])));
+        GetOaiPmhIdentifiers harvester = new GetOaiPmhIdentifiers(
+                baseUrl, "ListIdentifiers", "oai_ddi25");
+        String gone = harvester.buildGetRecordUrl("gone");
+        Files.writeString(GetOaiPmhIdentifiers.resolveGuidsPath(sets[0]),
+                "# Harvested-Until: 2024-05-31\n" + gone + "\t2024-05-01\n");
+        Files.writeString(GetOaiPmhIdentifiers.resolveGuidsPath(sets[1]),
+                "# Harvested-Until: 2024-05-31\n");
+        harvester.setIncremental(true);
+
+        harvester.fetchAllSetsInOnePass(sets);
+
+        assertEquals(List.of(gone + "\t2024-06-01\tdeleted"), guidLines(sets[0]));
+        assertEquals(List.of(harvester.buildGetRecordUrl("new") + "\t2024-06-02"),
+                guidLines(sets[1]),
+                "A deletion without setSpec must not be added to a set that does not list it");
+    }
+
+    // ── Selective harvest ────────────────────────────────────────────────────
+
+    @Test
+    void incrementalHarvestMergesChangesIntoTheExistingFile() throws Exception {
+        String set = uniqueSets(1)[0];
+        String baseUrl = startEndpoint(query -> listPage(null,
+                header("b", "2024-06-05", false, set),
+                header("c", "2024-06-06", true, set),
+                header("d", "2024-06-07", false, set)));
+        GetOaiPmhIdentifiers harvester = new GetOaiPmhIdentifiers(
+                baseUrl, "ListIdentifiers", "oai_ddi25");
+        String a = harvester.buildGetRecordUrl("a");
+        String b = harvester.buildGetRecordUrl("b");
+        String c = harvester.buildGetRecordUrl("c");
+        String d = harvester.buildGetRecordUrl("d");
+        Path file = GetOaiPmhIdentifiers.resolveGuidsPath(set);
+        Files.writeString(file, "# Harvested-Until: 2024-06-01T08:00:00Z\n"
+                + a + "\t2024-05-01\n" + b + "\t2024-05-01\n" + c + "\t2024-05-01\n");
+        harvester.setIncremental(true);
+
+        harvester.fetchIdentifiersForLanguage(set);
+
+        assertEquals(List.of(
+                a + "\t2024-05-01",
+                b + "\t2024-06-05",
+                c + "\t2024-06-06\tdeleted",
+                d + "\t2024-06-07"), guidLines(set),
+                "Changed lines are replaced in place, deletions keep their line, new records are appended");
+        assertTrue(Files.readAllLines(file).contains("# Harvested-Until: 2024-07-01T10:00:00Z"),
+                "The response date must be recorded, to the second");
+        assertTrue(queries.get(0).endsWith("&from=2024-06-01"),
+                "The harvest must continue from the day of the stored bound: " + queries.get(0));
+
+        harvester.fetchIdentifiersForLanguage(set);
+
+        assertTrue(queries.get(1).endsWith("&from=2024-07-01"),
+                "The next harvest must continue from the day of this one: " + queries.get(1));
+        assertEquals(4, guidLines(set).size(), "Merging the same changes again changes nothing");
+    }
+
+    @Test
+    void explicitFromWithoutAGuidFileHarvestsInFull() throws Exception {
+        String set = uniqueSets(1)[0];
+        String baseUrl = startEndpoint(query -> listPage(null, header("a", "2024-05-01", false, set)));
+        GetOaiPmhIdentifiers harvester = new GetOaiPmhIdentifiers(
+                baseUrl, "ListIdentifiers", "oai_ddi25");
+        harvester.setFrom("2024-06-01");
+
+        harvester.fetchIdentifiersForLanguage(set);
+
+        assertFalse(queries.get(0).contains("from="),
+                "Without a file to merge into, the set must be listed in full: " + queries.get(0));
+        assertEquals(List.of(harvester.buildGetRecordUrl("a") + "\t2024-05-01"), guidLines(set));
+    }
+
+    @Test
+    void untilWithoutFromIsAFullHarvestUpToTheBound() throws Exception {
+        String set = uniqueSets(1)[0];
+        String baseUrl = startEndpoint(query -> listPage(null, header("a", "2024-05-01", false, set)));
+        GetOaiPmhIdentifiers harvester = new GetOaiPmhIdentifiers(
+                baseUrl, "ListIdentifiers", "oai_ddi25");
+        Path file = GetOaiPmhIdentifiers.resolveGuidsPath(set);
+        Files.writeString(file, harvester.buildGetRecordUrl("later") + "\t2024-08-01\n");
+        harvester.setUntil("2024-06-30");
+
+        harvester.fetchIdentifiersForLanguage(set);
+
+        assertTrue(queries.get(0).endsWith("&until=2024-06-30"), queries.get(0));
+        assertFalse(queries.get(0).contains("from="), queries.get(0));
+        assertEquals(List.of(harvester.buildGetRecordUrl("a") + "\t2024-05-01"), guidLines(set),
+                "The listing replaces the file like a full harvest");
+        assertTrue(Files.readAllLines(file).stream().map(String::strip)
+                        .anyMatch("# Harvested-Until: 2024-06-30"::equals),
+                "The next incremental harvest continues from the until bound");
+    }
+
     // ── Parameterised: URL encoding covers all default sets ──────────────────
 
     @ParameterizedTest
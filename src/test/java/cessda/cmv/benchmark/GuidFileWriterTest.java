@@ -0,0 +1,91 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for {@link GuidFileWriter}.
+ */
+class GuidFileWriterTest {
+
+    @Test
+    void commitFillsInCountAndReplacesTarget(@TempDir Path dir) throws IOException {
+        Path target = dir.resolve("guids_de.txt");
+        Files.writeString(target, "old\n", StandardCharsets.UTF_8);
+
+        try (GuidFileWriter out = GuidFileWriter.open(target, "de")) {
+            out.append("https://example.org/oai?verb=GetRecord&identifier=a1\t2024-05-01", false);
+            out.append("https://example.org/oai?verb=GetRecord&identifier=b2\t2024-06-01\tdeleted",
+                    true);
+            assertEquals("old\n", Files.readString(target),
+                    "the target must keep its content until commit");
+            out.harvestedUntil("2024-06-02T00:00:00Z");
+            out.commit();
+            assertEquals(1, out.deleted());
+        }
+
+        List<String> lines = Files.readAllLines(target, StandardCharsets.UTF_8);
+        assertEquals("# Identifiers for set: de", lines.get(0));
+        assertEquals("# Count: 2", lines.get(2).trim());
+        assertEquals("# Harvested-Until: 2024-06-02T00:00:00Z", lines.get(3).trim());
+        assertEquals(7, lines.size());
+        assertFalse(Files.exists(dir.resolve("guids_de.txt" + GuidFileWriter.PART_SUFFIX)));
+    }
+
+    @Test
+    void closeWithoutCommitKeepsPartialFile(@TempDir Path dir) throws IOException {
+        Path target = dir.resolve("guids_en.txt");
+        Path part;
+        try (GuidFileWriter out = GuidFileWriter.open(target, "en")) {
+            out.append("https://example.org/oai?verb=GetRecord&identifier=a1", false);
+            out.flush();
+            part = out.partFile();
+        }
+
+        assertFalse(Files.exists(target));
+        assertTrue(Files.exists(part));
+        List<String> lines = Files.readAllLines(part, StandardCharsets.UTF_8);
+        assertEquals("# Count:", lines.get(2).trim(), "an unfinished file declares no count");
+        assertEquals("https://example.org/oai?verb=GetRecord&identifier=a1", lines.get(5));
+    }
+
+    @Test
+    void harvestedUntilIsReducedToWholeSeconds(@TempDir Path dir) throws IOException {
+        Path target = dir.resolve("guids_fr.txt");
+        try (GuidFileWriter out = GuidFileWriter.open(target, "fr")) {
+            out.harvestedUntil("2024-06-02T10:15:30.987654+02:00");
+            out.commit();
+        }
+
+        assertEquals("# Harvested-Until: 2024-06-02T08:15:30Z",
+                Files.readAllLines(target, StandardCharsets.UTF_8).get(3).trim());
+    }
+
+    @Test
+    void harvestedUntilThatIsNotATimeLeavesTheFieldBlank(@TempDir Path dir) throws IOException {
+        Path target = dir.resolve("guids_nl.txt");
+        try (GuidFileWriter out = GuidFileWriter.open(target, "nl")) {
+            out.harvestedUntil("not a datestamp at all");
+            out.commit();
+        }
+
+        assertEquals("# Harvested-Until:",
+                Files.readAllLines(target, StandardCharsets.UTF_8).get(3).trim());
+    }
+}
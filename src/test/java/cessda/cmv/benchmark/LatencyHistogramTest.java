@@ -0,0 +1,55 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void noEstimateUntilEnoughSamples() {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        for (int i = 1; i < LatencyHistogram.MIN_SAMPLES; i++) {
+            histogram.record(1_000);
+        }
+        assertEquals(0, histogram.percentile(95));
+        histogram.record(1_000);
+        assertTrue(histogram.percentile(95) > 0);
+    }
+
+    @Test
+    void percentilesAreWithinTenPercent() {
+        LatencyHistogram histogram = new LatencyHistogram(200);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 100L);
+        }
+        long p50 = histogram.percentile(50);
+        long p95 = histogram.percentile(95);
+        assertTrue(p50 >= 5_000 && p50 <= 5_500, "p50 was " + p50);
+        assertTrue(p95 >= 9_500 && p95 <= 10_450, "p95 was " + p95);
+        assertTrue(histogram.percentile(100) >= 10_000);
+    }
+
+    @Test
+    void oldSamplesAgeOut() {
+        LatencyHistogram histogram = new LatencyHistogram(40);
+        for (int i = 0; i < 40; i++) {
+            histogram.record(60_000);
+        }
+        for (int i = 0; i < 40; i++) {
+            histogram.record(100);
+        }
+        long p99 = histogram.percentile(99);
+        assertTrue(p99 <= 110, "p99 was " + p99 + " after the slow samples aged out");
+    }
+}
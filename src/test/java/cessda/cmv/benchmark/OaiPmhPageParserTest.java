@@ -0,0 +1,92 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import cessda.cmv.benchmark.GetOaiPmhIdentifiers.RecordHeader;
+
+/**
+ * Unit tests for {@link OaiPmhPageParser}.
+ */
+class OaiPmhPageParserTest {
+
+    private static final String OPEN = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">"
+            + "<responseDate>2026-01-01T00:00:00Z</responseDate>"
+            + "<request verb=\"ListIdentifiers\">https://example.org/oai</request>";
+
+    private static OaiPmhPageParser.Page parse(String xml, List<RecordHeader> headers)
+            throws IOException {
+        return OaiPmhPageParser.parse(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), headers::add);
+    }
+
+    @Test
+    void readsHeadersAndResumptionTokenInOnePass() throws IOException {
+        List<RecordHeader> headers = new ArrayList<>();
+        OaiPmhPageParser.Page page = parse(OPEN + "<ListIdentifiers>"
+                + "<header><identifier>a1</identifier><datestamp>2024-05-01</datestamp>"
+                + "<setSpec>language:de</setSpec><setSpec>language:en</setSpec></header>"
+                + "<header><identifier> </identifier></header>"
+                + "<resumptionToken completeListSize=\"250\" cursor=\"100\"> tok/2 </resumptionToken>"
+                + "</ListIdentifiers></OAI-PMH>", headers);
+
+        assertEquals(List.of(new RecordHeader("a1", "2024-05-01", false,
+                List.of("language:de", "language:en"))), headers,
+                "a header without an identifier must be dropped");
+        assertEquals(1, page.headers());
+        assertEquals("tok/2", page.resumptionToken());
+        assertEquals(250, page.completeListSize());
+        assertEquals(100, page.cursor());
+        assertEquals("2026-01-01T00:00:00Z", page.responseDate());
+        assertFalse(page.isError());
+    }
+
+    @Test
+    void emptyResumptionTokenEndsTheList() throws IOException {
+        OaiPmhPageParser.Page page = parse(OPEN + "<ListIdentifiers>"
+                + "<header><identifier>a1</identifier></header>"
+                + "<resumptionToken completeListSize=\"101\" cursor=\"100\"/>"
+                + "</ListIdentifiers></OAI-PMH>", new ArrayList<>());
+        assertNull(page.resumptionToken());
+        assertEquals(101, page.completeListSize());
+    }
+
+    @Test
+    void reportsOaiPmhErrors() throws IOException {
+        OaiPmhPageParser.Page empty = parse(OPEN
+                + "<error code=\"noRecordsMatch\">No matching records</error></OAI-PMH>",
+                new ArrayList<>());
+        assertFalse(empty.isError(), "an empty list is not an error");
+
+        OaiPmhPageParser.Page bad = parse(OPEN
+                + "<error code=\"badResumptionToken\">Expired</error></OAI-PMH>",
+                new ArrayList<>());
+        assertTrue(bad.isError());
+        assertEquals("badResumptionToken", bad.errorCode());
+        assertEquals("Expired", bad.errorMessage());
+    }
+
+    @Test
+    void rejectsMalformedXml() {
+        assertThrows(IOException.class,
+                () -> parse(OPEN + "<ListIdentifiers><header>", new ArrayList<>()));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for {@link ProgressJournal}.
+ */
+class ProgressJournalTest {
+
+    private static final String GUID_A = "https://example.org/oai?verb=GetRecord&identifier=a";
+    private static final String GUID_B = "https://example.org/oai?verb=GetRecord&identifier=b";
+
+    @Test
+    void recordsAreWrittenOnePerLine(@TempDir Path dir) throws Exception {
+        try (ProgressJournal journal = ProgressJournal.open(dir, false)) {
+            journal.record(GUID_A, true);
+            journal.record(GUID_B, false);
+        }
+        List<String> lines = Files.readAllLines(dir.resolve(ProgressJournal.FILENAME));
+        assertEquals(List.of("ok\t" + GUID_A, "failed\t" + GUID_B), lines);
+    }
+
+    @Test
+    void resumeSkipsOnlyCompletedGuids(@TempDir Path dir) throws Exception {
+        try (ProgressJournal journal = ProgressJournal.open(dir, false)) {
+            journal.record(GUID_A, true);
+            journal.record(GUID_B, false);
+        }
+        try (ProgressJournal journal = ProgressJournal.open(dir, true)) {
+            assertTrue(journal.isCompleted(GUID_A));
+            assertFalse(journal.isCompleted(GUID_B),
+                    "failed GUIDs must be tried again on resume");
+            assertEquals(1, journal.completedCount());
+        }
+    }
+
+    @Test
+    void newRunStartsAnEmptyJournal(@TempDir Path dir) throws Exception {
+        try (ProgressJournal journal = ProgressJournal.open(dir, false)) {
+            journal.record(GUID_A, true);
+        }
+        try (ProgressJournal journal = ProgressJournal.open(dir, false)) {
+            assertFalse(journal.isCompleted(GUID_A));
+        }
+        assertEquals(0, Files.size(dir.resolve(ProgressJournal.FILENAME)));
+    }
+
+    @Test
+    void resumeAfterTruncatedLineKeepsNewEntriesIntact(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve(ProgressJournal.FILENAME),
+                "ok\t" + GUID_A + "\nok\thttps://example.org/oai?verb=Get",
+                StandardCharsets.UTF_8);
+        try (ProgressJournal journal = ProgressJournal.open(dir, true)) {
+            journal.record(GUID_B, true);
+        }
+        try (ProgressJournal journal = ProgressJournal.open(dir, true)) {
+            assertTrue(journal.isCompleted(GUID_A));
+            assertTrue(journal.isCompleted(GUID_B));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for {@link ResultIndex}.
+ */
+class ResultIndexTest {
+
+    private static final String ALGORITHM_A = "https://example.org/algorithm/a";
+    private static final String ALGORITHM_B = "https://example.org/algorithm/b";
+    private static final String GUID = "https://example.org/oai?verb=GetRecord&identifier=a";
+
+    @Test
+    void savedResultsSurviveReopening(@TempDir Path dir) throws Exception {
+        try (ResultIndex index = ResultIndex.open(dir)) {
+            assertNull(index.savedAt(ALGORITHM_A, GUID));
+            index.record(ALGORITHM_A, GUID);
+        }
+        try (ResultIndex index = ResultIndex.open(dir)) {
+            assertNotNull(index.savedAt(ALGORITHM_A, GUID));
+            assertNull(index.savedAt(ALGORITHM_B, GUID),
+                    "a result only counts for the algorithm it was assessed with");
+        }
+    }
+
+    @Test
+    void latestEntryWins(@TempDir Path dir) throws Exception {
+        Files.write(dir.resolve(ResultIndex.FILENAME), List.of(
+                "2026-03-01T00:00:00Z\t" + ALGORITHM_A + "\t" + GUID,
+                "2026-01-01T00:00:00Z\t" + ALGORITHM_A + "\t" + GUID),
+                StandardCharsets.UTF_8);
+        try (ResultIndex index = ResultIndex.open(dir)) {
+            assertEquals(Instant.parse("2026-03-01T00:00:00Z"), index.savedAt(ALGORITHM_A, GUID));
+        }
+    }
+
+    @Test
+    void truncatedLastLineIsIgnoredAndRemoved(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve(ResultIndex.FILENAME);
+        Files.writeString(file,
+                "2026-03-01T00:00:00Z\t" + ALGORITHM_A + "\t" + GUID + "\n2026-03-02T00:0",
+                StandardCharsets.UTF_8);
+        try (ResultIndex index = ResultIndex.open(dir)) {
+            index.record(ALGORITHM_B, GUID);
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("2026-03-01T00:00:00Z\t" + ALGORITHM_A + "\t" + GUID, lines.get(0));
+    }
+
+    @Test
+    void compactedIndexKeepsTheDefaultPermissions(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve(ResultIndex.FILENAME);
+        Files.writeString(file, "2026-03-01T00:00:00Z\t" + ALGORITHM_A + "\t" + GUID + "\n2026-03-02",
+                StandardCharsets.UTF_8);
+        if (!Files.getFileStore(dir).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            return;
+        }
+        Set<PosixFilePermission> defaults = Files.getPosixFilePermissions(
+                Files.createFile(dir.resolve("plain")));
+
+        ResultIndex.open(dir).close();
+
+        assertEquals(defaults, Files.getPosixFilePermissions(file),
+                "the rewritten index must stay readable like the results beside it");
+    }
+
+    @Test
+    void recordInUpdatesAnOpenIndex(@TempDir Path dir) throws Exception {
+        Instant when = Instant.parse("2026-03-01T00:00:00Z");
+        try (ResultIndex index = ResultIndex.open(dir)) {
+            ResultIndex.recordIn(dir, ALGORITHM_A, GUID, when);
+            assertEquals(when, index.savedAt(ALGORITHM_A, GUID));
+        }
+        try (ResultIndex index = ResultIndex.open(dir)) {
+            assertEquals(when, index.savedAt(ALGORITHM_A, GUID));
+        }
+    }
+
+    @Test
+    void recordInAppendsToAClosedIndex(@TempDir Path dir) throws Exception {
+        Instant when = Instant.parse("2026-03-01T00:00:00Z");
+        ResultIndex.recordIn(dir, ALGORITHM_A, GUID, when);
+        try (ResultIndex index = ResultIndex.open(dir)) {
+            assertEquals(when, index.savedAt(ALGORITHM_A, GUID));
+        }
+    }
+
+    @Test
+    void indexCanOnlyBeOpenedOnceAtATime(@TempDir Path dir) throws Exception {
+        try (ResultIndex index = ResultIndex.open(dir)) {
+            assertThrows(IOException.class, () -> ResultIndex.open(dir));
+        }
+        ResultIndex.open(dir).close();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for {@link ResultsDirLock}.
+ */
+class ResultsDirLockTest {
+
+    @Test
+    void secondRunOnTheSameDirectoryIsRefused(@TempDir Path dir) throws Exception {
+        try (ResultsDirLock lock = ResultsDirLock.acquire(dir)) {
+            Throwable refused = claimElsewhere(dir);
+            assertInstanceOf(IOException.class, refused);
+            assertTrue(refused.getMessage().contains("in use"));
+        }
+    }
+
+    @Test
+    void directoryCanBeClaimedAgainOnceReleased(@TempDir Path dir) throws Exception {
+        ResultsDirLock.acquire(dir).close();
+        assertNull(claimElsewhere(dir));
+        try (ResultsDirLock lock = ResultsDirLock.acquire(dir)) {
+            assertTrue(dir.resolve(ResultsDirLock.FILENAME).toFile().exists());
+        }
+    }
+
+    @Test
+    void differentDirectoriesAreIndependent(@TempDir Path dir) throws Exception {
+        try (ResultsDirLock lock = ResultsDirLock.acquire(dir.resolve("guids_en"))) {
+            assertNull(claimElsewhere(dir.resolve("guids_fi")));
+        }
+    }
+
+    @Test
+    void holderMayClaimAgainAndKeepsTheLockUntilTheLastClaimCloses(@TempDir Path dir) throws Exception {
+        try (ResultsDirLock outer = ResultsDirLock.acquire(dir)) {
+            try (ResultsDirLock inner = ResultsDirLock.acquire(dir)) {
+                assertInstanceOf(IOException.class, claimElsewhere(dir));
+            }
+            assertInstanceOf(IOException.class, claimElsewhere(dir),
+                    "closing the inner claim does not release the lock");
+        }
+        assertNull(claimElsewhere(dir));
+    }
+
+    /**
+     * Claims and releases the directory on another thread.
+     *
+     * @return the failure, or {@code null} if the claim succeeded
+     */
+    private static Throwable claimElsewhere(Path dir) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (ResultsDirLock lock = ResultsDirLock.acquire(dir)) {
+                return (Throwable) null;
+            } catch (IOException e) {
+                return e;
+            }
+        }).join();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link RetryBudget}.
+ */
+class RetryBudgetTest {
+
+    @Test
+    void reserveIsAvailableUpFront() {
+        RetryBudget budget = new RetryBudget(0.1, 3);
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry(),
+                "budget must be empty once the reserve is spent");
+    }
+
+    @Test
+    void requestsRefillBudgetAtConfiguredRatio() {
+        RetryBudget budget = new RetryBudget(0.1, 5);
+        while (budget.tryAcquireRetry()) {
+            // drain the reserve
+        }
+        for (int i = 0; i < 9; i++) {
+            budget.onRequest();
+        }
+        assertFalse(budget.tryAcquireRetry(), "nine requests must not fund a retry");
+        budget.onRequest();
+        assertTrue(budget.tryAcquireRetry(), "ten requests must fund one retry");
+    }
+
+    @Test
+    void balanceIsCappedAtReserve() {
+        RetryBudget budget = new RetryBudget(1.0, 2);
+        for (int i = 0; i < 100; i++) {
+            budget.onRequest();
+        }
+        assertEquals(2, budget.available());
+    }
+
+    @Test
+    void zeroReserveAndRatioDisablesRetries() {
+        RetryBudget budget = new RetryBudget(0, 0);
+        budget.onRequest();
+        assertFalse(budget.tryAcquireRetry());
+    }
+}
@@ -0,0 +1,554 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Behavioural tests for the request pipeline of
+ * {@link RunBenchmarkAssessment}, against a stub Champion runner on a
+ * local {@link HttpServer}.
+ *
+ * <p>
+ * The runner answers every request with a small JSON result, holding
+ * each response back until {@link #release} is counted down. Results
+ * are written below {@code results/} in the working directory, in
+ * subdirectories named per test and removed afterwards.
+ * </p>
+ */
+class RunBenchmarkAssessmentPipelineTest {
+
+    private static final String ALGORITHM = "https://example.org/algorithm";
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    // ── Fixture ──────────────────────────────────────────────────────────────
+
+    private HttpServer runner;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private volatile int status = 200;
+    private final List<String> logged = new CopyOnWriteArrayList<>();
+    private final Handler logCapture = new Handler() {
+        @Override
+        public void publish(LogRecord logRecord) {
+            logged.add(logRecord.getMessage());
+        }
+
+        @Override
+        public void flush() {
+            // nothing buffered
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    };
+    private final ExecutorService runs = Executors.newCachedThreadPool();
+    private final String prefix = "pipeline-test-" + System.nanoTime() + "-";
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        runner = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        runner.setExecutor(Executors.newCachedThreadPool());
+        runner.createContext("/", exchange -> {
+            received.add(mapper.readTree(exchange.getRequestBody()).get("guid").asText());
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"score\": 1}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        runner.start();
+        Logger.getLogger(RunBenchmarkAssessment.class.getName()).addHandler(logCapture);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Logger.getLogger(RunBenchmarkAssessment.class.getName()).removeHandler(logCapture);
+        release.countDown();
+        runs.shutdownNow();
+        runner.stop(0);
+        // Puts the limits shared by all runs back to their defaults.
+        assessment(new AssessmentSettings());
+        Path results = Paths.get("results");
+        if (Files.isDirectory(results)) {
+            try (Stream<Path> dirs = Files.list(results)) {
+                for (Path dir : dirs.filter(d -> d.getFileName().toString().contains(prefix)).toList()) {
+                    deleteTree(dir);
+                }
+            }
+        }
+    }
+
+    // ── Admission and completion ─────────────────────────────────────────────
+
+    @Test
+    void laneAdmitsAtMostItsCapacityAndReturnsOnceEveryGuidFinished() throws Exception {
+        AssessmentSettings settings = new AssessmentSettings();
+        settings.configureConcurrency(1, 1, 1, 3);
+        release = new CountDownLatch(1);
+        AtomicInteger pulled = new AtomicInteger();
+        Stream<RunBenchmarkAssessment.GuidEntry> entries = IntStream.range(0, 10)
+                .mapToObj(i -> {
+                    pulled.incrementAndGet();
+                    return entry("a" + i);
+                });
+
+        SetRun run = start(assessment(settings), prefix + "admission", entries);
+        awaitCondition(() -> received.size() == 1 && pulled.get() == 4, "first request sent");
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        assertEquals(4, pulled.get(), "three GUIDs admitted, the fourth waiting for room");
+        assertEquals(1, received.size(), "one request in flight at a concurrency limit of one");
+        assertFalse(run.result.isDone());
+
+        release.countDown();
+        assertEquals(10, run.get());
+        assertEquals(10, received.size());
+        assertEquals(10, run.lane.completed());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(Files.exists(resultFile(prefix + "admission", "a" + i)),
+                    "every result is saved by the time the set returns");
+        }
+    }
+
+    @Test
+    void eachRunnerAddsItsOwnConcurrencyLimit() throws Exception {
+        AssessmentSettings settings = new AssessmentSettings();
+        settings.configureConcurrency(1, 1, 1, 4);
+        release = new CountDownLatch(1);
+        String base = "http://localhost:" + runner.getAddress().getPort();
+        RunBenchmarkAssessment assessment = new RunBenchmarkAssessment(ALGORITHM,
+                base + "/a," + base + "/b", 5, 10, settings);
+
+        SetRun run = start(assessment, prefix + "runners",
+                IntStream.range(0, 4).mapToObj(i -> entry("r" + i)));
+        awaitCondition(() -> received.size() == 2, "one request sent to each runner");
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertEquals(2, received.size(), "one request in flight per runner at a limit of one");
+
+        release.countDown();
+        assertEquals(4, run.get());
+    }
+
+    @Test
+    void cancelledLaneDropsQueuedGuidsAndAdmitsNoMore() throws Exception {
+        AssessmentSettings settings = new AssessmentSettings();
+        settings.configureConcurrency(1, 1, 1, 3);
+        release = new CountDownLatch(1);
+        AtomicInteger pulled = new AtomicInteger();
+        Stream<RunBenchmarkAssessment.GuidEntry> entries = IntStream.range(0, 10)
+                .mapToObj(i -> {
+                    pulled.incrementAndGet();
+                    return entry("c" + i);
+                });
+
+        SetRun run = start(assessment(settings), prefix + "cancel", entries);
+        awaitCondition(() -> received.size() == 1 && pulled.get() == 4, "first request sent");
+        run.cancel();
+        run.get();
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        assertEquals(1, received.size(), "no request is sent after the lane is cancelled");
+        assertEquals(4, run.lane.cancelled());
+        assertEquals(0, run.lane.completed());
+        assertFalse(Files.exists(resultFile(prefix + "cancel", "c0")));
+    }
+
+    @Test
+    void secondRunOnTheSameResultsDirectoryIsRefused() throws Exception {
+        release = new CountDownLatch(1);
+        SetRun first = start(assessment(new AssessmentSettings()), prefix + "locked",
+                Stream.of(entry("l1")));
+        awaitCondition(() -> received.size() == 1, "first run's request sent");
+        SetRun second = start(assessment(new AssessmentSettings()), prefix + "locked",
+                Stream.of(entry("l2")));
+
+        ExecutionException refused = assertThrows(ExecutionException.class, second::get);
+        assertInstanceOf(IOException.class, refused.getCause());
+        release.countDown();
+        first.get();
+
+        assertEquals(List.of(guid("l1")), received);
+        assertEquals(List.of(ProgressJournal.OK + "\t" + guid("l1")),
+                Files.readAllLines(Paths.get("results", prefix + "locked", ProgressJournal.FILENAME)),
+                "the refused run leaves the journal alone");
+    }
+
+    @Test
+    void savedErrorResponseIsJournalledAsFailed() throws Exception {
+        status = 400;
+
+        start(assessment(new AssessmentSettings()), prefix + "journal",
+                Stream.of(entry("j1"))).get();
+
+        assertTrue(Files.exists(resultFile(prefix + "journal", "j1")), "the error body is saved");
+        assertEquals(List.of(ProgressJournal.FAILED + "\t" + guid("j1")),
+                Files.readAllLines(Paths.get("results", prefix + "journal", ProgressJournal.FILENAME)),
+                "a non-2xx response must be tried again on resume");
+    }
+
+    // ── Runner outage ────────────────────────────────────────────────────────
+
+    @Test
+    void canaryAgainstRunnerRefusingConnectionsAbortsTheSet() throws Exception {
+        AssessmentSettings settings = new AssessmentSettings();
+        settings.configureCircuitBreaker(1, 1.0, 1, 1, 1, 1);
+        settings.configureCanary(2, 0.5, 0);
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            closedPort = socket.getLocalPort();
+        }
+        RunBenchmarkAssessment assessment = new RunBenchmarkAssessment(ALGORITHM,
+                "http://localhost:" + closedPort + "/assess", 5, 10, settings);
+
+        SetRun run = start(assessment, prefix + "refused",
+                IntStream.range(0, 5).mapToObj(i -> entry("o" + i)));
+
+        ExecutionException aborted = assertThrows(ExecutionException.class, run::get,
+                "GUIDs held back by the open circuit must eventually count as failed");
+        assertInstanceOf(IOException.class, aborted.getCause());
+        assertTrue(run.lane.failed() >= 1);
+        assertTrue(logged.stream().anyMatch(m -> m.contains("its attempts count again")));
+    }
+
+    @Test
+    void canaryIsCappedAtTheDeclaredSizeOfTheSet() throws Exception {
+        AssessmentSettings settings = new AssessmentSettings();
+        settings.configureCanary(20, 0.5, 0);
+        status = 400;
+
+        SetRun run = start(assessment(settings), prefix + "small", 3,
+                Stream.of(entry("m1"), entry("m2"), entry("m3")));
+
+        ExecutionException aborted = assertThrows(ExecutionException.class, run::get,
+                "a set smaller than the canary is judged on all of its GUIDs");
+        assertInstanceOf(IOException.class, aborted.getCause());
+    }
+
+    @Test
+    void resumeAfterAnAbortedSetSendsTheFailedGuidsAgain() throws Exception {
+        AssessmentSettings settings = new AssessmentSettings();
+        settings.configureCanary(2, 0.5, 0);
+        settings.configureConcurrency(1, 1, 1, 1);
+        status = 400;
+        List<RunBenchmarkAssessment.GuidEntry> entries =
+                IntStream.range(0, 5).mapToObj(i -> entry("b" + i)).toList();
+
+        SetRun aborted = start(assessment(settings), prefix + "abort", entries.stream());
+        assertThrows(ExecutionException.class, aborted::get);
+        List<String> failed = List.copyOf(received);
+        assertFalse(failed.isEmpty());
+
+        received.clear();
+        status = 200;
+        RunBenchmarkAssessment resumed = assessment(settings);
+        resumed.setResume(true);
+        assertEquals(5, start(resumed, prefix + "abort", entries.stream()).get());
+
+        assertTrue(received.containsAll(failed),
+                "GUIDs that failed before the abort must be sent again: " + received);
+        assertEquals(5, received.size());
+    }
+
+    // ── Cross-set deduplication ──────────────────────────────────────────────
+
+    @Test
+    void guidListedBySeveralSetsIsAssessedOnceAndLinkedIntoEach() throws Exception {
+        Path first = writeGuidFile("guids_" + prefix + "xa.txt", "x1", "shared");
+        Path second = writeGuidFile("guids_" + prefix + "xb.txt", "shared", "x2");
+
+        assessment(new AssessmentSettings()).processSetFiles(
+                List.of(first.toString(), second.toString()));
+
+        assertEquals(3, received.size());
+        assertEquals(1, Collections.frequency(received, guid("shared")));
+        assertTrue(Files.exists(resultFile("guids_" + prefix + "xa", "shared")));
+        assertTrue(Files.exists(resultFile("guids_" + prefix + "xb", "shared")),
+                "the result is linked into the second set");
+        assertTrue(Files.exists(resultFile("guids_" + prefix + "xb", "x2")));
+        try (ResultIndex index = ResultIndex.open(Paths.get("results", "guids_" + prefix + "xb"))) {
+            assertNotNull(index.savedAt(ALGORITHM, guid("shared")),
+                    "the linked result is recorded in the second set's index");
+        }
+    }
+
+    @Test
+    void setReachingAGuidAnotherSetHasAssessedLinksThatResult() throws Exception {
+        RunBenchmarkAssessment assessment = assessment(new AssessmentSettings());
+        RunBenchmarkAssessment.SetGroup group = new RunBenchmarkAssessment.SetGroup();
+        assertEquals(1, start(assessment, prefix + "ga", group, Stream.of(entry("shared"))).get());
+
+        assertEquals(1, start(assessment, prefix + "gb", group,
+                Stream.of(entry("shared"), entry("g2"))).get(), "only g2 is submitted");
+        assertEquals(List.of(guid("shared"), guid("g2")), received);
+        assertTrue(Files.exists(resultFile(prefix + "gb", "shared")),
+                "the result of the finished set is linked");
+    }
+
+    @Test
+    void guidOfAnAbortedSetIsAssessedByTheNextSetListingIt() throws Exception {
+        AssessmentSettings settings = new AssessmentSettings();
+        settings.configureCanary(1, 0.5, 0);
+        settings.configureConcurrency(1, 1, 1, 1);
+        RunBenchmarkAssessment assessment = assessment(settings);
+        RunBenchmarkAssessment.SetGroup group = new RunBenchmarkAssessment.SetGroup();
+        status = 400;
+        SetRun aborted = start(assessment, prefix + "aa", group,
+                Stream.of(entry("a0"), entry("shared")));
+        assertThrows(ExecutionException.class, aborted::get);
+        assertFalse(received.contains(guid("shared")));
+
+        status = 200;
+        assertEquals(1, start(assessment, prefix + "ab", group, Stream.of(entry("shared"))).get());
+        assertTrue(received.contains(guid("shared")),
+                "a GUID the aborted set never reached must be assessed by the other set");
+        assertTrue(Files.exists(resultFile(prefix + "ab", "shared")));
+    }
+
+    // ── Result freshness ─────────────────────────────────────────────────────
+
+    @Test
+    void freshIndexEntryWithoutResultFileIsReassessed() throws Exception {
+        AssessmentSettings settings = new AssessmentSettings();
+        settings.configureResultTtl(1);
+        Path dir = Paths.get("results", prefix + "ttl");
+        Files.createDirectories(dir);
+        Files.writeString(resultFile(prefix + "ttl", "kept"), "{\"score\": 1}");
+        try (ResultIndex index = ResultIndex.open(dir)) {
+            index.record(ALGORITHM, guid("kept"));
+            index.record(ALGORITHM, guid("deleted"));
+        }
+
+        start(assessment(settings), prefix + "ttl", Stream.of(entry("kept"), entry("deleted"))).get();
+
+        assertEquals(List.of(guid("deleted")), received);
+        assertTrue(Files.exists(resultFile(prefix + "ttl", "deleted")));
+    }
+
+    // ── Single flight across runs ────────────────────────────────────────────
+
+    @Test
+    void concurrentRunsShareOneRequestPerGuid() throws Exception {
+        release = new CountDownLatch(1);
+        SetRun leader = start(assessment(new AssessmentSettings()), prefix + "leader",
+                Stream.of(entry("s1")));
+        awaitCondition(() -> received.size() == 1, "leader's request sent");
+        SetRun follower = start(assessment(new AssessmentSettings()), prefix + "follower",
+                Stream.of(entry("s1")));
+        awaitCondition(() -> logged.stream().anyMatch(m -> m.contains("already being assessed")),
+                "second run follows the first");
+
+        release.countDown();
+        leader.get();
+        follower.get();
+
+        assertEquals(List.of(guid("s1")), received);
+        assertEquals(1, leader.lane.completed());
+        assertEquals(1, follower.lane.completed());
+        assertTrue(Files.exists(resultFile(prefix + "follower", "s1")),
+                "the leader's result is linked into the follower's directory");
+        assertTrue(Files.readString(Paths.get("results", prefix + "follower", ProgressJournal.FILENAME))
+                .contains(ProgressJournal.OK + "\t" + guid("s1")));
+        try (ResultIndex index = ResultIndex.open(Paths.get("results", prefix + "follower"))) {
+            assertNotNull(index.savedAt(ALGORITHM, guid("s1")),
+                    "the linked result is recorded in the follower's index");
+        }
+    }
+
+    @Test
+    void cancellingFollowerLeavesLeaderRunning() throws Exception {
+        release = new CountDownLatch(1);
+        SetRun leader = start(assessment(new AssessmentSettings()), prefix + "leader",
+                Stream.of(entry("f1")));
+        awaitCondition(() -> received.size() == 1, "leader's request sent");
+        SetRun follower = start(assessment(new AssessmentSettings()), prefix + "follower",
+                Stream.of(entry("f1")));
+        awaitCondition(() -> logged.stream().anyMatch(m -> m.contains("already being assessed")),
+                "second run follows the first");
+
+        follower.cancel();
+        follower.get();
+        assertFalse(leader.result.isDone());
+        release.countDown();
+        leader.get();
+
+        assertEquals(1, received.size());
+        assertEquals(1, follower.lane.cancelled());
+        assertEquals(1, leader.lane.completed());
+        assertTrue(Files.exists(resultFile(prefix + "leader", "f1")));
+        assertFalse(Files.exists(resultFile(prefix + "follower", "f1")),
+                "nothing is linked into a cancelled follower's directory");
+    }
+
+    @Test
+    void cancellingLeaderResubmitsFollower() throws Exception {
+        release = new CountDownLatch(1);
+        SetRun leader = start(assessment(new AssessmentSettings()), prefix + "leader",
+                Stream.of(entry("r1")));
+        awaitCondition(() -> received.size() == 1, "leader's request sent");
+        SetRun follower = start(assessment(new AssessmentSettings()), prefix + "follower",
+                Stream.of(entry("r1")));
+        awaitCondition(() -> logged.stream().anyMatch(m -> m.contains("already being assessed")),
+                "second run follows the first");
+
+        leader.cancel();
+        leader.get();
+        awaitCondition(() -> received.size() == 2, "follower's own request sent");
+        release.countDown();
+        follower.get();
+
+        assertEquals(1, leader.lane.cancelled());
+        assertEquals(1, follower.lane.completed());
+        assertFalse(Files.exists(resultFile(prefix + "leader", "r1")));
+        assertTrue(Files.exists(resultFile(prefix + "follower", "r1")));
+    }
+
+    // ── Helpers ──────────────────────────────────────────────────────────────
+
+    /**
+     * One set processed by {@code processGuids} on a pipeline of its
+     * own, on a thread of its own.
+     */
+    private static final class SetRun {
+        final RunBenchmarkAssessment.Pipeline.SetLane lane;
+        final Future<Integer> result;
+
+        SetRun(RunBenchmarkAssessment.Pipeline.SetLane lane, Future<Integer> result) {
+            this.lane = lane;
+            this.result = result;
+        }
+
+        int get() throws Exception {
+            return result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        void cancel() {
+            lane.cancel();
+        }
+    }
+
+    private SetRun start(RunBenchmarkAssessment assessment, String subDir,
+            Stream<RunBenchmarkAssessment.GuidEntry> entries) {
+        return start(assessment, subDir, Long.MAX_VALUE, entries);
+    }
+
+    private SetRun start(RunBenchmarkAssessment assessment, String subDir, long size,
+            Stream<RunBenchmarkAssessment.GuidEntry> entries) {
+        return start(assessment, subDir, size, null, entries);
+    }
+
+    private SetRun start(RunBenchmarkAssessment assessment, String subDir,
+            RunBenchmarkAssessment.SetGroup group, Stream<RunBenchmarkAssessment.GuidEntry> entries) {
+        return start(assessment, subDir, Long.MAX_VALUE, group, entries);
+    }
+
+    private SetRun start(RunBenchmarkAssessment assessment, String subDir, long size,
+            RunBenchmarkAssessment.SetGroup group, Stream<RunBenchmarkAssessment.GuidEntry> entries) {
+        RunBenchmarkAssessment.Pipeline pipeline = assessment.new Pipeline();
+        RunBenchmarkAssessment.Pipeline.SetLane lane = pipeline.openLane(subDir, size);
+        Future<Integer> result = runs.submit(() -> {
+            try (pipeline; lane) {
+                return assessment.processGuids(entries, null, subDir, lane, group);
+            }
+        });
+        return new SetRun(lane, result);
+    }
+
+    private RunBenchmarkAssessment assessment(AssessmentSettings settings) {
+        return new RunBenchmarkAssessment(ALGORITHM,
+                "http://localhost:" + runner.getAddress().getPort() + "/assess", 5, 10, settings);
+    }
+
+    private static RunBenchmarkAssessment.GuidEntry entry(String id) {
+        return new RunBenchmarkAssessment.GuidEntry(guid(id), null, false);
+    }
+
+    private static String guid(String id) {
+        return "https://example.org/oai?verb=GetRecord&metadataPrefix=oai_ddi25&identifier=" + id;
+    }
+
+    private static Path resultFile(String subDir, String id) {
+        return Paths.get("results", subDir, id + ".json");
+    }
+
+    private Path writeGuidFile(String name, String... ids) throws IOException {
+        StringBuilder lines = new StringBuilder("# Count: " + ids.length + "\n");
+        for (String id : ids) {
+            lines.append(guid(id)).append('\n');
+        }
+        return Files.writeString(tempDir.resolve(name), lines, StandardCharsets.UTF_8);
+    }
+
+    private static void awaitCondition(BooleanSupplier condition, String what)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Timed out waiting for: " + what);
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -19,7 +19,11 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.apache.commons.cli.CommandLine;
 import org.junit.jupiter.api.AfterEach;
@@ -203,29 +207,17 @@ class RunBenchmarkAssessmentTest {
                                 assessment.getBenchmarkRunner());
 
                 // processSingleFile looks up by name in resources then CWD;
-                // to keep this test hermetic we invoke the private readGuidsFromResource
-                // by setting guidsFilename via reflection and checking the list is empty.
-                var field = RunBenchmarkAssessment.class.getDeclaredField("guidsFilename");
-                field.setAccessible(true);
-
-                // Write a temp file reachable from the current dir is not reliable
-                // cross-environment; instead verify via reflection on readGuidsFromResource.
-                var readMethod = RunBenchmarkAssessment.class
-                                .getDeclaredMethod("readGuidsFromResource", String.class);
-                readMethod.setAccessible(true);
-
-                field.set(localClient, guidFile.toAbsolutePath().toString());
-
-                @SuppressWarnings("unchecked")
-                List<String> guids = (List<String>) readMethod.invoke(localClient, "guids_hr.txt");
+                // to keep this test hermetic we read the file through the private
+                // openEntries by its absolute path and check the list is empty.
+                List<String> guids = readGuids(localClient, guidFile);
                 assertTrue(guids.isEmpty(),
                                 "Comment-only file must produce an empty GUID list");
         }
 
-        // ── readGuidsFromResource: filters blank lines and comments ───────────────
+        // ── openEntries: filters blank lines and comments ────────────────────────
 
         @Test
-        void readGuidsFromResourceFiltersBlankAndCommentLines(@TempDir Path tempDir)
+        void openEntriesFiltersBlankAndCommentLines(@TempDir Path tempDir)
                         throws Exception {
                 Path guidFile = tempDir.resolve("guids_test.txt");
                 Files.writeString(guidFile,
@@ -237,24 +229,227 @@ class RunBenchmarkAssessmentTest {
                                                 + "https://example.org/oai?verb=GetRecord&identifier=b2\n",
                                 StandardCharsets.UTF_8);
 
-                RunBenchmarkAssessment localClient = new RunBenchmarkAssessment(assessment.getBenchmarkAlgorithm(),
-                                assessment.getBenchmarkRunner());
-
-                var field = RunBenchmarkAssessment.class.getDeclaredField("guidsFilename");
-                field.setAccessible(true);
-                field.set(localClient, guidFile.toAbsolutePath().toString());
-
-                var readMethod = RunBenchmarkAssessment.class
-                                .getDeclaredMethod("readGuidsFromResource", String.class);
-                readMethod.setAccessible(true);
-                @SuppressWarnings("unchecked")
-                List<String> guids = (List<String>) readMethod.invoke(localClient, "guids_hr.txt");
+                List<String> guids = readGuids(assessment, guidFile);
 
                 assertEquals(2, guids.size());
                 assertTrue(guids.get(0).contains("identifier=a1"));
                 assertTrue(guids.get(1).contains("identifier=b2"));
         }
 
+        // ── openEntries: lazy stream over the GUID file ──────────────────────────
+
+        @Test
+        void openEntriesStreamsFilteredLinesLazily(@TempDir Path tempDir)
+                        throws Exception {
+                Path guidFile = tempDir.resolve("guids_test.txt");
+                Files.writeString(guidFile,
+                                "# header\n"
+                                                + "https://example.org/oai?verb=GetRecord&identifier=a1\n"
+                                                + "\n"
+                                                + "https://example.org/oai?verb=GetRecord&identifier=b2\n",
+                                StandardCharsets.UTF_8);
+
+                try (Stream<RunBenchmarkAssessment.GuidEntry> entries = openEntries(assessment,
+                                guidFile.toAbsolutePath().toString())) {
+                        Iterator<RunBenchmarkAssessment.GuidEntry> it = entries.iterator();
+                        assertTrue(it.next().guid().contains("identifier=a1"));
+                        assertTrue(it.next().guid().contains("identifier=b2"));
+                        assertFalse(it.hasNext());
+                }
+        }
+
+        @Test
+        void openEntriesThrowsFileNotFoundForMissingFile() throws Exception {
+                var openMethod = RunBenchmarkAssessment.class.getDeclaredMethod("openEntries", String.class);
+                openMethod.setAccessible(true);
+                var e = assertThrows(java.lang.reflect.InvocationTargetException.class,
+                                () -> openMethod.invoke(assessment, "guids_nonexistent_zzz.txt"));
+                assertTrue(e.getCause() instanceof FileNotFoundException,
+                                "A missing file must be reported when the stream is opened");
+        }
+
+        /** Opens a GUID file through the private {@code openEntries}. */
+        @SuppressWarnings("unchecked")
+        private static Stream<RunBenchmarkAssessment.GuidEntry> openEntries(
+                        RunBenchmarkAssessment client, String filename) throws Exception {
+                var openMethod = RunBenchmarkAssessment.class.getDeclaredMethod("openEntries", String.class);
+                openMethod.setAccessible(true);
+                return (Stream<RunBenchmarkAssessment.GuidEntry>) openMethod.invoke(client, filename);
+        }
+
+        /** Reads the GUIDs of a file, without the datestamp and status columns. */
+        private static List<String> readGuids(RunBenchmarkAssessment client, Path file) throws Exception {
+                try (Stream<RunBenchmarkAssessment.GuidEntry> entries = openEntries(client,
+                                file.toAbsolutePath().toString())) {
+                        return entries.map(RunBenchmarkAssessment.GuidEntry::guid).toList();
+                }
+        }
+
+        // ── readDeclaredCount: set size from the file header ─────────────────────
+
+        @Test
+        void readDeclaredCountUsesHeader(@TempDir Path tempDir) throws Exception {
+                Path withHeader = tempDir.resolve("guids_a.txt");
+                Files.writeString(withHeader,
+                                "# OAI-PMH identifiers for set: a\n"
+                                                + "# Generated: 2026-01-01T00:00:00Z\n"
+                                                + "# Count: 42\n"
+                                                + "https://example.org/oai?verb=GetRecord&identifier=a1\n",
+                                StandardCharsets.UTF_8);
+                Path withoutHeader = tempDir.resolve("guids_b.txt");
+                Files.writeString(withoutHeader,
+                                "https://example.org/oai?verb=GetRecord&identifier=b1\n"
+                                                + "# Count: 7\n",
+                                StandardCharsets.UTF_8);
+
+                var method = RunBenchmarkAssessment.class.getDeclaredMethod("readDeclaredCount", String.class);
+                method.setAccessible(true);
+                assertEquals(42L, method.invoke(assessment, withHeader.toAbsolutePath().toString()));
+                assertEquals(Long.MAX_VALUE, method.invoke(assessment, withoutHeader.toAbsolutePath().toString()),
+                                "Only the leading comment block is searched");
+        }
+
+        // ── GuidEntry: datestamp and status columns ──────────────────────────────
+
+        @Test
+        void guidEntryParsesDatestampAndStatusColumns() {
+                var bare = RunBenchmarkAssessment.GuidEntry.parse(
+                                "https://example.org/oai?verb=GetRecord&identifier=a1");
+                assertEquals("https://example.org/oai?verb=GetRecord&identifier=a1", bare.guid());
+                assertNull(bare.changedAt());
+                assertFalse(bare.deleted());
+
+                var precise = RunBenchmarkAssessment.GuidEntry.parse(
+                                "https://example.org/oai?verb=GetRecord&identifier=b2\t2024-05-01T12:30:00Z");
+                assertEquals(Instant.parse("2024-05-01T12:30:00Z"), precise.changedAt());
+                assertFalse(precise.deleted());
+
+                var deleted = RunBenchmarkAssessment.GuidEntry.parse(
+                                "https://example.org/oai?verb=GetRecord&identifier=c3\t2024-05-01\tdeleted");
+                assertEquals(Instant.parse("2024-05-02T00:00:00Z"), deleted.changedAt(),
+                                "A day-granularity datestamp counts as changed until the end of the day");
+                assertTrue(deleted.deleted());
+        }
+
+        @Test
+        void openEntriesDropsDatestampColumnsFromTheGuid(@TempDir Path tempDir) throws Exception {
+                Path guidFile = tempDir.resolve("guids_test.txt");
+                Files.writeString(guidFile,
+                                "# Columns: GetRecord URL, datestamp, status (tab-separated)\n"
+                                                + "https://example.org/oai?verb=GetRecord&identifier=a1\t2024-05-01\n",
+                                StandardCharsets.UTF_8);
+
+                assertEquals(List.of("https://example.org/oai?verb=GetRecord&identifier=a1"),
+                                readGuids(assessment, guidFile));
+        }
+
+        // ── writeResponseBodyAsJson: streamed body moved into place ──────────────
+
+        @Test
+        void writeResponseBodyMovesJsonBodyIntoPlace(@TempDir Path tempDir) throws Exception {
+                Path body = tempDir.resolve(".body.tmp");
+                Files.writeString(body, "{\"score\": [1, 2, {\"a\": null}]}", StandardCharsets.UTF_8);
+                Path target = tempDir.resolve("id1.json");
+
+                var method = RunBenchmarkAssessment.class.getDeclaredMethod("writeResponseBodyAsJson",
+                                Path.class, Path.class, String.class, int.class);
+                method.setAccessible(true);
+                method.invoke(assessment, target, body, "guid-1", 200);
+
+                assertEquals("{\"score\": [1, 2, {\"a\": null}]}",
+                                Files.readString(target, StandardCharsets.UTF_8));
+                assertFalse(Files.exists(body), "The body file must be renamed, not copied");
+        }
+
+        @Test
+        void writeResponseBodyWrapsNonJsonBodyInEnvelope(@TempDir Path tempDir) throws Exception {
+                Path body = tempDir.resolve(".body.tmp");
+                Files.writeString(body, "<html>Bad \"gateway\"</html>", StandardCharsets.UTF_8);
+                Path target = tempDir.resolve("id2.json");
+
+                var method = RunBenchmarkAssessment.class.getDeclaredMethod("writeResponseBodyAsJson",
+                                Path.class, Path.class, String.class, int.class);
+                method.setAccessible(true);
+                method.invoke(assessment, target, body, "guid-2", 500);
+
+                var envelope = new com.fasterxml.jackson.databind.ObjectMapper().readTree(target.toFile());
+                assertAll(
+                                () -> assertEquals("guid-2", envelope.get("guid").asText()),
+                                () -> assertEquals(500, envelope.get("statusCode").asInt()),
+                                () -> assertEquals("html", envelope.get("responseType").asText()),
+                                () -> assertEquals("<html>Bad \"gateway\"</html>",
+                                                envelope.get("content").asText()),
+                                () -> assertTrue(envelope.has("timestamp")));
+                try (Stream<Path> files = Files.list(tempDir)) {
+                        assertEquals(List.of(target), files.filter(f -> !f.equals(body)).toList(),
+                                        "No temporary envelope file may be left behind");
+                }
+        }
+
+        @Test
+        void writeResponseBodyTreatsTruncatedJsonAsNonJson(@TempDir Path tempDir) throws Exception {
+                Path body = tempDir.resolve(".body.tmp");
+                Files.writeString(body, "{\"score\": [1, 2", StandardCharsets.UTF_8);
+                Path target = tempDir.resolve("id3.json");
+
+                var method = RunBenchmarkAssessment.class.getDeclaredMethod("writeResponseBodyAsJson",
+                                Path.class, Path.class, String.class, int.class);
+                method.setAccessible(true);
+                method.invoke(assessment, target, body, "guid-3", 200);
+
+                var envelope = new com.fasterxml.jackson.databind.ObjectMapper().readTree(target.toFile());
+                assertEquals("{\"score\": [1, 2", envelope.get("content").asText());
+        }
+
+        // ── retryAfterMillis ─────────────────────────────────────────────────────
+
+        @Test
+        void retryAfterMillisParsesSecondsAndHttpDates() {
+                assertEquals(30_000, RunBenchmarkAssessment.retryAfterMillis("30"));
+                assertEquals(0, RunBenchmarkAssessment.retryAfterMillis(null));
+                assertEquals(0, RunBenchmarkAssessment.retryAfterMillis("soon"));
+                assertEquals(600_000, RunBenchmarkAssessment.retryAfterMillis("86400"),
+                                "Retry-After must be capped");
+
+                String inAMinute = java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                                java.time.ZonedDateTime.now(java.time.ZoneOffset.UTC).plusSeconds(60));
+                long millis = RunBenchmarkAssessment.retryAfterMillis(inAMinute);
+                assertTrue(millis > 55_000 && millis <= 60_000, "HTTP date gave " + millis + "ms");
+                assertEquals(0, RunBenchmarkAssessment.retryAfterMillis("Thu, 01 Jan 2026 00:00:00 GMT"),
+                                "a date in the past means no delay");
+        }
+
+        // ── adaptiveTimeoutMs ────────────────────────────────────────────────────
+
+        @Test
+        void adaptiveTimeoutScalesP99AndGrowsOnRetries() {
+                assertEquals(15_000, RunBenchmarkAssessment.adaptiveTimeoutMs(5_000, 0, 3, 10_000, 120_000));
+                assertEquals(30_000, RunBenchmarkAssessment.adaptiveTimeoutMs(5_000, 1, 3, 10_000, 120_000),
+                                "a retry must get a longer timeout");
+                assertEquals(120_000, RunBenchmarkAssessment.adaptiveTimeoutMs(5_000, 2, 3, 10_000, 120_000),
+                                "the last attempt must get the full timeout");
+        }
+
+        @Test
+        void adaptiveTimeoutStaysWithinBounds() {
+                assertEquals(10_000, RunBenchmarkAssessment.adaptiveTimeoutMs(200, 0, 3, 10_000, 120_000));
+                assertEquals(120_000, RunBenchmarkAssessment.adaptiveTimeoutMs(90_000, 0, 3, 10_000, 120_000));
+                assertEquals(120_000, RunBenchmarkAssessment.adaptiveTimeoutMs(0, 0, 3, 10_000, 120_000),
+                                "without enough samples the full timeout applies");
+        }
+
+        // ── ExecutionMode ────────────────────────────────────────────────────────
+
+        @Test
+        void executionModeNamesAreParsedLeniently() {
+                assertEquals(RunBenchmarkAssessment.ExecutionMode.VIRTUAL_THREADS,
+                                RunBenchmarkAssessment.ExecutionMode.parse("virtual-threads"));
+                assertEquals(RunBenchmarkAssessment.ExecutionMode.ASYNC,
+                                RunBenchmarkAssessment.ExecutionMode.parse(" Async "));
+                assertThrows(IllegalArgumentException.class,
+                                () -> RunBenchmarkAssessment.ExecutionMode.parse("reactive"));
+        }
+
         // ── parseArgs ────────────────────────────────────────────────────────────
 
         @Test
@@ -343,6 +538,25 @@ class RunBenchmarkAssessmentTest {
                                 () -> RunBenchmarkAssessment.logSevere("err: %s", "detail"));
         }
 
+        // ── Shutdown ─────────────────────────────────────────────────────────────
+
+        @Test
+        void drainRefusesNewRunsUntilStartedAgain() {
+                try {
+                        RunBenchmarkAssessment.drain(Duration.ZERO);
+                        assertTrue(RunBenchmarkAssessment.isShuttingDown());
+                        IOException e = assertThrows(IOException.class,
+                                        () -> assessment.processSingleGuid(
+                                                        "https://example.org/oai?verb=GetRecord&identifier=1"));
+                        assertTrue(e.getMessage().startsWith("Shutting down"),
+                                        "a run started during shutdown must be refused");
+                } finally {
+                        assessment.start();
+                }
+                assertFalse(RunBenchmarkAssessment.isShuttingDown());
+                assertTrue(assessment.isRunning());
+        }
+
         // ── Constructor ──────────────────────────────────────────────────────────
 
         @Test
@@ -0,0 +1,136 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link RunnerPool}.
+ */
+class RunnerPoolTest {
+
+    private static final List<URI> RUNNERS = RunnerPool.parseUris(
+            "http://runner-a/assess, http://runner-b/assess,");
+
+    @Test
+    void leastOutstandingSpreadsRequestsEvenly() {
+        RunnerPool pool = new RunnerPool(RUNNERS, RunnerPool.Policy.LEAST_OUTSTANDING, 3, 30_000);
+        RunnerPool.Lease first = pool.acquire(null);
+        RunnerPool.Lease second = pool.acquire(null);
+        assertNotSame(first.runner(), second.runner());
+
+        second.success(10);
+        RunnerPool.Lease third = pool.acquire(null);
+        assertSame(second.runner(), third.runner(), "the idle runner must be chosen");
+        assertEquals(1, pool.outstanding(first.runner()));
+    }
+
+    @Test
+    void latencyWeightedPrefersTheFasterRunner() {
+        RunnerPool pool = new RunnerPool(RUNNERS, RunnerPool.Policy.LATENCY_WEIGHTED, 3, 30_000);
+        RunnerPool.Lease slow = pool.acquire(null);
+        RunnerPool.Lease fast = pool.acquire(null);
+        slow.success(1_000);
+        fast.success(100);
+
+        RunnerPool.Lease busy = pool.acquire(null);
+        assertSame(fast.runner(), busy.runner());
+        assertSame(fast.runner(), pool.acquire(null).runner(),
+                "two requests on the fast runner still cost less than one on the slow one");
+    }
+
+    @Test
+    void retryAvoidsTheRunnerThatFailed() {
+        RunnerPool pool = new RunnerPool(RUNNERS, RunnerPool.Policy.LEAST_OUTSTANDING, 3, 30_000);
+        RunnerPool.Lease failed = pool.acquire(null);
+        assertTrue(failed.failure("HTTP 503"), "the other runner can take over");
+        for (int i = 0; i < 4; i++) {
+            assertNotSame(failed.runner(), pool.acquire(failed.runner()).runner());
+        }
+    }
+
+    @Test
+    void unhealthyRunnerIsSkippedUntilItsCooldownEnds() throws Exception {
+        RunnerPool pool = new RunnerPool(RUNNERS, RunnerPool.Policy.LEAST_OUTSTANDING, 2, 1_000);
+        RunnerPool.Runner broken = pool.acquire(null).runner();
+        RunnerPool.Runner healthy = pool.acquire(broken).runner();
+        pool.acquire(healthy).failure("ConnectException");
+        pool.acquire(healthy).failure("ConnectException");
+
+        for (int i = 0; i < 4; i++) {
+            RunnerPool.Lease lease = pool.acquire(null);
+            assertSame(healthy, lease.runner(), "an unhealthy runner must not be chosen");
+            lease.success(10);
+        }
+
+        Thread.sleep(1_100);
+        RunnerPool.Lease probe = pool.acquire(healthy);
+        assertSame(broken, probe.runner(), "the runner must be tried again after its cooldown");
+        probe.success(10);
+    }
+
+    @Test
+    void singleUnhealthyRunnerIsStillUsed() {
+        RunnerPool pool = new RunnerPool(RUNNERS.subList(0, 1),
+                RunnerPool.Policy.LEAST_OUTSTANDING, 1, 60_000);
+        RunnerPool.Lease lease = pool.acquire(null);
+        assertFalse(lease.failure("HTTP 502"), "no other runner can take over");
+        assertSame(lease.runner(), pool.acquire(lease.runner()).runner());
+    }
+
+    @Test
+    void eachRunnerHasItsOwnConcurrencyLimit() {
+        RunnerPool pool = new RunnerPool(RUNNERS, RunnerPool.Policy.LEAST_OUTSTANDING, 3, 30_000);
+        pool.configureConcurrency(1, 8, 4);
+        assertEquals(16, pool.maxConcurrency(), "each runner adds its own ceiling");
+
+        RunnerPool.Runner overloaded = pool.select(null);
+        RunnerPool.Runner other = pool.select(overloaded);
+        overloaded.limiter().onOverload("HTTP 502");
+        assertEquals(2, overloaded.limiter().getLimit());
+        assertEquals(4, other.limiter().getLimit(), "another runner's limit must not be lowered");
+    }
+
+    @Test
+    void selectPrefersARunnerWithAFreeSlotAndLeasesNothing() throws Exception {
+        RunnerPool pool = new RunnerPool(RUNNERS, RunnerPool.Policy.LATENCY_WEIGHTED, 3, 30_000);
+        pool.configureConcurrency(1, 1, 1);
+        RunnerPool.Runner fast = pool.select(null);
+        RunnerPool.Runner slow = pool.select(fast);
+        pool.lease(slow).success(1_000);
+        pool.lease(fast).success(10);
+
+        fast.limiter().acquire();
+        assertSame(slow, pool.select(null), "the full runner must be passed over");
+        assertEquals(0, pool.outstanding(fast), "selecting must not lease");
+        assertEquals(0, pool.outstanding(slow));
+
+        slow.limiter().acquire();
+        assertSame(fast, pool.select(null), "with every runner full, the policy decides");
+        fast.limiter().release();
+        slow.limiter().release();
+    }
+
+    @Test
+    void policyNamesAreLenient() {
+        assertEquals(RunnerPool.Policy.LATENCY_WEIGHTED, RunnerPool.Policy.parse("latency-weighted"));
+        assertEquals(RunnerPool.Policy.LEAST_OUTSTANDING, RunnerPool.Policy.parse(" Least_Outstanding "));
+        assertThrows(IllegalArgumentException.class, () -> RunnerPool.Policy.parse("random"));
+        assertThrows(IllegalArgumentException.class, () -> new RunnerPool(List.of(),
+                RunnerPool.Policy.LEAST_OUTSTANDING, 1, 0));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * SPDX-FileCopyrightText: 2026 CESSDA ERIC (support@cessda.eu)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package cessda.cmv.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link TokenBucket}.
+ */
+class TokenBucketTest {
+
+    @Test
+    void burstIsAvailableImmediately() {
+        TokenBucket bucket = new TokenBucket(1, 3);
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        assertTrue(bucket.reserve() > 0, "the fourth request must wait for a token");
+    }
+
+    @Test
+    void waitingCallersAreSpacedAtTheConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        bucket.reserve();
+        long first = TimeUnit.NANOSECONDS.toMillis(bucket.reserve());
+        long second = TimeUnit.NANOSECONDS.toMillis(bucket.reserve());
+        assertTrue(first > 50 && first <= 100, "first wait was " + first + "ms");
+        assertTrue(second > 150 && second <= 200, "second wait was " + second + "ms");
+    }
+
+    @Test
+    void tryAcquireNeverWaits() {
+        TokenBucket bucket = new TokenBucket(1, 1);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire(), "an empty bucket must refuse the token");
+        bucket.reconfigure(0, 1);
+        bucket.pause(1_000);
+        assertFalse(bucket.tryAcquire(), "a pause must hold back even without limit");
+    }
+
+    @Test
+    void zeroRateDisablesTheLimit() {
+        TokenBucket bucket = new TokenBucket(0, 1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, bucket.reserve());
+        }
+    }
+
+    @Test
+    void pauseHoldsBackRequestsEvenWithoutLimit() {
+        TokenBucket bucket = new TokenBucket(0, 1);
+        bucket.pause(500);
+        long waitMs = TimeUnit.NANOSECONDS.toMillis(bucket.reserve());
+        assertTrue(waitMs > 400 && waitMs <= 500, "wait was " + waitMs + "ms");
+    }
+
+    @Test
+    void shorterPauseDoesNotShortenLongerOne() {
+        TokenBucket bucket = new TokenBucket(1000, 10);
+        bucket.pause(1_000);
+        bucket.pause(10);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(bucket.reserve()) > 900);
+    }
+}
@@ -30,6 +30,7 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import cessda.cmv.benchmark.service.BenchmarkService;
+import cessda.cmv.benchmark.service.ShuttingDownException;
 
 /**
  * Unit tests for {@link BenchmarkController}.
@@ -62,7 +63,8 @@ class BenchmarkControllerTest {
         @DisplayName("Returns 200 with ok status when called with no parameters")
         void defaultParametersReturn200() throws Exception {
             when(service.fetchIdentifiers(
-                    isNull(), isNull(), isNull(), isNull(), isNull()))
+                    isNull(), isNull(), isNull(), isNull(), isNull(), eq(false),
+                    eq(false), isNull(), isNull()))
                 .thenReturn("Fetched identifiers for 10 set(s) -> /data");
 
             mvc.perform(post("/api/fetch-identifiers"))
@@ -74,14 +76,15 @@ class BenchmarkControllerTest {
                     is("Fetched identifiers for 10 set(s) -> /data")));
 
             verify(service).fetchIdentifiers(
-                null, null, null, null, null);
+                null, null, null, null, null, false, false, null, null);
         }
 
         @Test
         @DisplayName("Passes fetchSet parameter to service")
         void singleSetParameterIsForwarded() throws Exception {
             when(service.fetchIdentifiers(
-                    isNull(), isNull(), isNull(), isNull(), eq("en")))
+                    isNull(), isNull(), isNull(), isNull(), eq("en"), eq(false),
+                    eq(false), isNull(), isNull()))
                 .thenReturn("Fetched identifiers for set: en -> /data/guids_en.txt");
 
             mvc.perform(post("/api/fetch-identifiers")
@@ -90,14 +93,15 @@ class BenchmarkControllerTest {
                 .andExpect(jsonPath("$.status", is("ok")));
 
             verify(service).fetchIdentifiers(
-                null, null, null, null, "en");
+                null, null, null, null, "en", false, false, null, null);
         }
 
         @Test
         @DisplayName("Passes comma-separated sets parameter to service")
         void multipleSetsParameterIsForwarded() throws Exception {
             when(service.fetchIdentifiers(
-                    isNull(), isNull(), isNull(), eq("de,en,fr"), isNull()))
+                    isNull(), isNull(), isNull(), eq("de,en,fr"), isNull(), eq(false),
+                    eq(false), isNull(), isNull()))
                 .thenReturn("Fetched identifiers for 3 set(s) -> /data");
 
             mvc.perform(post("/api/fetch-identifiers")
@@ -106,7 +110,24 @@ class BenchmarkControllerTest {
                 .andExpect(jsonPath("$.status", is("ok")));
 
             verify(service).fetchIdentifiers(
-                null, null, null, "de,en,fr", null);
+                null, null, null, "de,en,fr", null, false, false, null, null);
+        }
+
+        @Test
+        @DisplayName("Passes singlePass parameter to service")
+        void singlePassParameterIsForwarded() throws Exception {
+            when(service.fetchIdentifiers(
+                    isNull(), isNull(), isNull(), isNull(), isNull(), eq(true),
+                    eq(false), isNull(), isNull()))
+                .thenReturn("Fetched identifiers for 10 set(s) in one pass -> /data");
+
+            mvc.perform(post("/api/fetch-identifiers")
+                    .param("singlePass", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("ok")));
+
+            verify(service).fetchIdentifiers(
+                null, null, null, null, null, true, false, null, null);
         }
 
         @Test
@@ -117,6 +138,10 @@ class BenchmarkControllerTest {
                     eq("ListIdentifiers"),
                     eq("oai_dc"),
                     isNull(),
+                    isNull(),
+                    eq(false),
+                    eq(false),
+                    isNull(),
                     isNull()))
                 .thenReturn("Fetched identifiers for 10 set(s) -> /data");
 
@@ -128,11 +153,45 @@ class BenchmarkControllerTest {
                 .andExpect(jsonPath("$.status", is("ok")));
         }
 
+        @Test
+        @DisplayName("Passes selective harvest parameters to service")
+        void selectiveHarvestParametersAreForwarded() throws Exception {
+            when(service.fetchIdentifiers(
+                    isNull(), isNull(), isNull(), isNull(), isNull(), eq(false),
+                    eq(true), eq("2024-01-01"), eq("2024-02-01")))
+                .thenReturn("Fetched identifiers for 10 set(s) -> /data");
+
+            mvc.perform(post("/api/fetch-identifiers")
+                    .param("incremental", "true")
+                    .param("from", "2024-01-01")
+                    .param("until", "2024-02-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("ok")));
+
+            verify(service).fetchIdentifiers(
+                null, null, null, null, null, false, true, "2024-01-01", "2024-02-01");
+        }
+
+        @Test
+        @DisplayName("Returns 400 when the from datestamp is invalid")
+        void invalidDatestampReturns400() throws Exception {
+            when(service.fetchIdentifiers(
+                    any(), any(), any(), any(), any(), anyBoolean(),
+                    anyBoolean(), eq("yesterday"), any()))
+                .thenThrow(new IllegalArgumentException("Not an OAI-PMH datestamp: yesterday"));
+
+            mvc.perform(post("/api/fetch-identifiers")
+                    .param("from", "yesterday"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status", is("error")));
+        }
+
         @Test
         @DisplayName("Returns 500 with error status when service throws IOException")
         void serviceExceptionReturns500() throws Exception {
             when(service.fetchIdentifiers(
-                    any(), any(), any(), any(), any()))
+                    any(), any(), any(), any(), any(), anyBoolean(),
+                    anyBoolean(), any(), any()))
                 .thenThrow(new IOException("Connection refused"));
 
             mvc.perform(post("/api/fetch-identifiers"))
@@ -146,7 +205,8 @@ class BenchmarkControllerTest {
                 + "InterruptedException")
         void interruptedExceptionReturns500() throws Exception {
             when(service.fetchIdentifiers(
-                    any(), any(), any(), any(), any()))
+                    any(), any(), any(), any(), any(), anyBoolean(),
+                    anyBoolean(), any(), any()))
                 .thenThrow(new InterruptedException("Interrupted"));
 
             mvc.perform(post("/api/fetch-identifiers"))
@@ -167,7 +227,7 @@ class BenchmarkControllerTest {
         @DisplayName("Returns 200 with ok status when called with no parameters")
         void defaultParametersReturn200() throws Exception {
             when(service.runAssessment(
-                    isNull(), isNull(), isNull(), eq(false)))
+                    isNull(), isNull(), isNull(), eq(false), eq(false), eq(false)))
                 .thenReturn(
                     "Processed default file: guids_hr.txt"
                     + " -> results written to /results");
@@ -179,14 +239,14 @@ class BenchmarkControllerTest {
                     is("Processed default file: guids_hr.txt"
                         + " -> results written to /results")));
 
-            verify(service).runAssessment(null, null, null, false);
+            verify(service).runAssessment(null, null, null, false, false, false);
         }
 
         @Test
         @DisplayName("Passes processAll=true to service")
         void processAllParameterIsForwarded() throws Exception {
             when(service.runAssessment(
-                    isNull(), isNull(), isNull(), eq(true)))
+                    isNull(), isNull(), isNull(), eq(true), eq(false), eq(false)))
                 .thenReturn(
                     "Processed all default set files from /data"
                     + " -> results written to /results");
@@ -196,14 +256,14 @@ class BenchmarkControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status", is("ok")));
 
-            verify(service).runAssessment(null, null, null, true);
+            verify(service).runAssessment(null, null, null, true, false, false);
         }
 
         @Test
         @DisplayName("Passes guidFile parameter to service")
         void guidFileParameterIsForwarded() throws Exception {
             when(service.runAssessment(
-                    isNull(), eq("guids_de.txt"), isNull(), eq(false)))
+                    isNull(), eq("guids_de.txt"), isNull(), eq(false), eq(false), eq(false)))
                 .thenReturn(
                     "Processed file: /data/guids_de.txt"
                     + " -> results written to /results");
@@ -214,7 +274,7 @@ class BenchmarkControllerTest {
                 .andExpect(jsonPath("$.status", is("ok")));
 
             verify(service).runAssessment(
-                null, "guids_de.txt", null, false);
+                null, "guids_de.txt", null, false, false, false);
         }
 
         @Test
@@ -226,7 +286,7 @@ class BenchmarkControllerTest {
                 + "&identifier=abc123";
 
             when(service.runAssessment(
-                    isNull(), isNull(), eq(guidUrl), eq(false)))
+                    isNull(), isNull(), eq(guidUrl), eq(false), eq(false), eq(false)))
                 .thenReturn(
                     "Processed single GUID: " + guidUrl
                     + " -> results written to /results");
@@ -236,7 +296,7 @@ class BenchmarkControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status", is("ok")));
 
-            verify(service).runAssessment(null, null, guidUrl, false);
+            verify(service).runAssessment(null, null, guidUrl, false, false, false);
         }
 
         @Test
@@ -244,7 +304,7 @@ class BenchmarkControllerTest {
         void spreadsheetUriParameterIsForwarded() throws Exception {
             String customUri = "https://example.org/champion/assess";
             when(service.runAssessment(
-                    eq(customUri), isNull(), isNull(), eq(false)))
+                    eq(customUri), isNull(), isNull(), eq(false), eq(false), eq(false)))
                 .thenReturn("Processed default file: guids_hr.txt"
                     + " -> results written to /results");
 
@@ -254,10 +314,46 @@ class BenchmarkControllerTest {
                 .andExpect(jsonPath("$.status", is("ok")));
         }
 
+        @Test
+        @DisplayName("Passes resume=true to service")
+        void resumeParameterIsForwarded() throws Exception {
+            when(service.runAssessment(
+                    isNull(), isNull(), isNull(), eq(true), eq(true), eq(false)))
+                .thenReturn(
+                    "Processed all default set files from /data"
+                    + " -> results written to /results");
+
+            mvc.perform(post("/api/run-assessment")
+                    .param("processAll", "true")
+                    .param("resume", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("ok")));
+
+            verify(service).runAssessment(null, null, null, true, true, false);
+        }
+
+        @Test
+        @DisplayName("Passes incremental=true to service")
+        void incrementalParameterIsForwarded() throws Exception {
+            when(service.runAssessment(
+                    isNull(), isNull(), isNull(), eq(true), eq(false), eq(true)))
+                .thenReturn(
+                    "Processed all default set files from /data"
+                    + " -> results written to /results");
+
+            mvc.perform(post("/api/run-assessment")
+                    .param("processAll", "true")
+                    .param("incremental", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("ok")));
+
+            verify(service).runAssessment(null, null, null, true, false, true);
+        }
+
         @Test
         @DisplayName("Returns 500 with error status when service throws IOException")
         void serviceExceptionReturns500() throws Exception {
-            when(service.runAssessment(any(), any(), any(), anyBoolean()))
+            when(service.runAssessment(any(), any(), any(), anyBoolean(), anyBoolean(), anyBoolean()))
                 .thenThrow(new IOException("File not found: guids_hr.txt"));
 
             mvc.perform(post("/api/run-assessment"))
@@ -266,6 +362,31 @@ class BenchmarkControllerTest {
                 .andExpect(jsonPath("$.message",
                     is("File not found: guids_hr.txt")));
         }
+
+        @Test
+        @DisplayName("Returns 503 with error status while shutting down")
+        void shuttingDownReturns503() throws Exception {
+            when(service.runAssessment(any(), any(), any(), anyBoolean(), anyBoolean(), anyBoolean()))
+                .thenThrow(new ShuttingDownException("Shutting down; not accepting new runs"));
+
+            mvc.perform(post("/api/run-assessment"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.status", is("error")))
+                .andExpect(jsonPath("$.message",
+                    is("Shutting down; not accepting new runs")));
+        }
+
+        @Test
+        @DisplayName("Returns 500 with error status when service throws "
+                + "any other IllegalStateException")
+        void otherIllegalStateExceptionReturns500() throws Exception {
+            when(service.runAssessment(any(), any(), any(), anyBoolean(), anyBoolean(), anyBoolean()))
+                .thenThrow(new IllegalStateException("Unexpected state"));
+
+            mvc.perform(post("/api/run-assessment"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.status", is("error")));
+        }
     }
 
     // -------------------------------------------------------------------------
@@ -87,7 +87,7 @@ class BenchmarkServiceTest {
             try {
                 service.fetchIdentifiers(
                     "http://invalid.example.invalid",
-                    null, null, "de", null);
+                    null, null, "de", null, false, false, null, null);
             } catch (Exception ignored) {
                 // Expected: the HTTP call will fail.
             }
@@ -102,7 +102,7 @@ class BenchmarkServiceTest {
             try {
                 service.fetchIdentifiers(
                     "http://invalid.example.invalid",
-                    null, null, "de", null);
+                    null, null, "de", null, false, false, null, null);
             } catch (Exception ignored) {
                 // Expected: the HTTP call will fail.
             }
@@ -124,7 +124,7 @@ class BenchmarkServiceTest {
             try {
                 service.fetchIdentifiers(
                     "http://invalid.example.invalid",
-                    null, null, "de", null);
+                    null, null, "de", null, false, false, null, null);
             } catch (Exception ignored) {
                 // Expected: the HTTP call will fail.
             }
@@ -132,6 +132,15 @@ class BenchmarkServiceTest {
                 "data directory must be created by fetchIdentifiers");
         }
 
+        @Test
+        @DisplayName("Rejects a from bound that is not an OAI-PMH datestamp")
+        void rejectsInvalidFromDatestamp() {
+            assertThrows(IllegalArgumentException.class,
+                () -> service.fetchIdentifiers(
+                    "http://invalid.example.invalid",
+                    null, null, "de", null, false, false, "yesterday", null));
+        }
+
         @Test
         @DisplayName("Uses default OAI-PMH base URL when baseUrl is null")
         void usesDefaultBaseUrlWhenNull() {
@@ -186,7 +195,7 @@ class BenchmarkServiceTest {
             try {
                 service.runAssessment(
                     "http://invalid.example.invalid",
-                    null, null, false);
+                    null, null, false, false, false);
             } catch (Exception ignored) {
                 // Expected: the file or HTTP call will fail.
             }
@@ -214,7 +223,7 @@ class BenchmarkServiceTest {
             try {
                 service.runAssessment(
                     "http://invalid.example.invalid",
-                    "guids_test.txt", null, false);
+                    "guids_test.txt", null, false, false, false);
             } catch (IOException e) {
                 assertFalse(
                     e.getMessage().contains("Could not find"),